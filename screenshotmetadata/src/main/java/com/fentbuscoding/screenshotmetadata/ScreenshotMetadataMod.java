@@ -1,5 +1,13 @@
 package com.fentbuscoding.screenshotmetadata;
 
+import com.fentbuscoding.screenshotmetadata.capture.ExternalCaptureWatcher;
+import com.fentbuscoding.screenshotmetadata.capture.MetadataPipeline;
+import com.fentbuscoding.screenshotmetadata.capture.ModpackContextCache;
+import com.fentbuscoding.screenshotmetadata.capture.TimelapseScheduler;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.metadata.AppendJournal;
+import com.fentbuscoding.screenshotmetadata.provider.MetadataProviders;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.loader.api.FabricLoader;
 import org.slf4j.Logger;
@@ -31,6 +39,17 @@ public class ScreenshotMetadataMod implements ClientModInitializer {
 
     @Override
     public void onInitializeClient() {
+        AppendJournal.recover();
+        ExternalCaptureWatcher.applyConfig();
+        TimelapseScheduler.applyConfig();
+        ScreenshotIndex.applyConfig();
+        ScreenshotMetadataConfig.addListener(ExternalCaptureWatcher::applyConfig);
+        ScreenshotMetadataConfig.addListener(TimelapseScheduler::applyConfig);
+        ScreenshotMetadataConfig.addListener(ScreenshotIndex::applyConfig);
+        ScreenshotMetadataConfig.addListener(MetadataPipeline::applyConfig);
+        ScreenshotMetadataConfig.startWatching();
+        ModpackContextCache.init();
+        MetadataProviders.loadEntrypoints();
         LOGGER.info("{} v{} initialized.", MOD_NAME, MOD_VERSION);
     }
 }
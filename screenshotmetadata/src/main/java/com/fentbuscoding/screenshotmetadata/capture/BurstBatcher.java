@@ -0,0 +1,102 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups screenshots written within a short window into one metadata job, so a
+ * burst of F2 presses costs one queue slot, one mod-list build and one sync pass
+ * instead of one of each per shot.
+ */
+public final class BurstBatcher {
+    private static final int MAX_BATCH_SIZE = 32;
+
+    private static final Object LOCK = new Object();
+    private static final AtomicLong NEXT_BATCH_ID = new AtomicLong(1L);
+    private static Batch open;
+
+    private BurstBatcher() {
+    }
+
+    /**
+     * Adds a written screenshot to the open batch, starting a new batch (and its
+     * flush timer) if none is open.
+     */
+    public static void add(ScreenshotCapture capture, File writtenFile, long windowMillis) {
+        long estimatedBytes = PngChunks.estimateDecodedBytes(writtenFile);
+        Batch toFlush = null;
+        synchronized (LOCK) {
+            if (open == null) {
+                Batch batch = new Batch(NEXT_BATCH_ID.getAndIncrement());
+                open = batch;
+                CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS)
+                    .execute(() -> flush(batch));
+            }
+            open.entries.add(new Entry(capture, writtenFile));
+            open.estimatedBytes += estimatedBytes;
+            if (open.entries.size() >= MAX_BATCH_SIZE) {
+                toFlush = open;
+                open = null;
+            }
+        }
+        if (toFlush != null) {
+            submit(toFlush);
+        }
+    }
+
+    private static void flush(Batch batch) {
+        synchronized (LOCK) {
+            if (open != batch) {
+                // Already flushed because it filled up
+                return;
+            }
+            open = null;
+        }
+        submit(batch);
+    }
+
+    private static void submit(Batch batch) {
+        if (batch.entries.size() == 1) {
+            Entry entry = batch.entries.get(0);
+            ScreenshotProcessor.submitSingle(entry.capture, entry.writtenFile);
+            return;
+        }
+        ScreenshotMetadataMod.LOGGER.debug("Submitting burst#{} with {} screenshots", batch.id, batch.entries.size());
+        MetadataPipeline.offer("burst#" + batch.id, batch.estimatedBytes, false, () -> {
+            List<ScreenshotCapture> captures = new ArrayList<>(batch.entries.size());
+            List<File> files = new ArrayList<>(batch.entries.size());
+            for (Entry entry : batch.entries) {
+                captures.add(entry.capture);
+                files.add(entry.writtenFile);
+            }
+            ScreenshotProcessor.processBatch(captures, files);
+        }, null);
+    }
+
+    private static final class Batch {
+        private final long id;
+        private final List<Entry> entries = new ArrayList<>();
+        private long estimatedBytes;
+
+        private Batch(long id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Entry {
+        private final ScreenshotCapture capture;
+        private final File writtenFile;
+
+        private Entry(ScreenshotCapture capture, File writtenFile) {
+            this.capture = capture;
+            this.writtenFile = writtenFile;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.thumbnail.PerceptualHash;
+import com.fentbuscoding.screenshotmetadata.thumbnail.Thumbnail;
+import com.fentbuscoding.screenshotmetadata.thumbnail.ThumbnailStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Works on the image vanilla is about to encode, so nothing has to decode the PNG again:
+ * hashes it for duplicate detection and makes its thumbnail.
+ *
+ * <p>The image is freed once it is written, so a grid of its pixels is read on vanilla's
+ * IO worker: just dense enough for the thumbnail's box filter or the hash, which is far
+ * fewer pixels than the frame has. The hash is taken there too, so the chunks embedded
+ * during this encode can carry it; comparing it with earlier screenshots is left to the
+ * metadata workers. Filtering the thumbnail runs as an optional
+ * job on the {@link MetadataPipeline}, which counts the samples against its memory limit;
+ * the thumbnail is saved next to the screenshot's final name when its metadata is
+ * processed.</p>
+ */
+public final class CapturedImage {
+    // Samples per thumbnail pixel and axis, so the box filter has something to average
+    private static final int THUMBNAIL_OVERSAMPLE = 4;
+    // Samples per hash grid cell and axis
+    private static final int HASH_SAMPLE_WIDTH = 9 * 16;
+    private static final int HASH_SAMPLE_HEIGHT = 8 * 16;
+
+    private CapturedImage() {
+    }
+
+    /**
+     * Reads one pixel of the image being encoded.
+     */
+    @FunctionalInterface
+    public interface Pixels {
+        /**
+         * The pixel at (x, y) as ARGB.
+         */
+        int argb(int x, int y);
+    }
+
+    /**
+     * Hashes and starts a thumbnail for {@code path} if it is a tracked screenshot and
+     * either is turned on.
+     *
+     * @param pixels Reads the image being written; only valid during this call
+     */
+    public static void beforeEncode(Path path, int width, int height, Pixels pixels) {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        if (!config.writeThumbnails && !config.perceptualHash) {
+            return;
+        }
+        ScreenshotCapture capture = ScreenshotCaptureTracker.findByTarget(path);
+        if (capture == null || width <= 0 || height <= 0) {
+            return;
+        }
+
+        int step = Integer.MAX_VALUE;
+        if (config.writeThumbnails) {
+            step = Math.max(width, height) / (config.thumbnailSize * THUMBNAIL_OVERSAMPLE);
+        }
+        if (config.perceptualHash) {
+            step = Math.min(step, Math.min(width / HASH_SAMPLE_WIDTH, height / HASH_SAMPLE_HEIGHT));
+        }
+        step = Math.max(1, step);
+        int sampledWidth = (width + step - 1) / step;
+        int sampledHeight = (height + step - 1) / step;
+        int[] sampled;
+        try {
+            sampled = sample(pixels, sampledWidth, sampledHeight, step);
+        } catch (RuntimeException e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not read pixels of {}: {}", capture, e.getMessage());
+            return;
+        }
+
+        if (config.perceptualHash) {
+            try {
+                // Only the hash is computed here; the duplicate lookup runs on the metadata workers
+                capture.setPerceptualHash(PerceptualHash.of(sampled, sampledWidth, sampledHeight));
+            } catch (RuntimeException e) {
+                ScreenshotMetadataMod.LOGGER.debug("Could not hash {}: {}", capture, e.getMessage());
+            }
+        }
+        if (config.writeThumbnails) {
+            startThumbnail(capture, path, sampled, sampledWidth, sampledHeight, config.thumbnailSize);
+        }
+    }
+
+    private static int[] sample(Pixels pixels, int sampledWidth, int sampledHeight, int step) {
+        int[] sampled = new int[sampledWidth * sampledHeight];
+        for (int row = 0; row < sampledHeight; row++) {
+            int y = row * step;
+            int offset = row * sampledWidth;
+            for (int column = 0; column < sampledWidth; column++) {
+                sampled[offset + column] = pixels.argb(column * step, y);
+            }
+        }
+        return sampled;
+    }
+
+    private static void startThumbnail(ScreenshotCapture capture, Path path, int[] pixels, int width, int height, int size) {
+        CompletableFuture<Thumbnail> thumbnail = new CompletableFuture<>();
+        boolean accepted = MetadataPipeline.offer("thumbnail:" + path.toAbsolutePath(), pixels.length * 4L,
+            () -> {
+                try {
+                    thumbnail.complete(Thumbnail.downsample(pixels, width, height, size, size));
+                } catch (RuntimeException e) {
+                    ScreenshotMetadataMod.LOGGER.warn("Failed to make thumbnail for {}: {}", capture, e.getMessage());
+                    thumbnail.complete(null);
+                }
+            },
+            () -> thumbnail.complete(null));
+        if (!accepted) {
+            return;
+        }
+        capture.setThumbnail(thumbnail);
+    }
+
+    /**
+     * Saves the capture's thumbnail for {@code screenshotFile} once it is ready.
+     */
+    static void save(ScreenshotCapture capture, File screenshotFile) {
+        CompletableFuture<Thumbnail> thumbnail = capture.getThumbnail();
+        if (thumbnail == null) {
+            return;
+        }
+        thumbnail.thenAccept(result -> {
+            if (result == null || result.isEmpty()) {
+                return;
+            }
+            try {
+                ThumbnailStore.write(screenshotFile.toPath(), result);
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Failed to save thumbnail for {}: {}", screenshotFile.getName(), e.getMessage());
+            }
+        });
+    }
+}
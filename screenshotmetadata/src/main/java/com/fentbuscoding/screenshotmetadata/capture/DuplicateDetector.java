@@ -0,0 +1,79 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.thumbnail.PerceptualHash;
+
+/**
+ * Stores a capture's perceptual hash in its metadata and tags the screenshot as a
+ * duplicate when an earlier one looks the same. Runs on the metadata workers, since the
+ * index lookup takes the index lock.
+ *
+ * <p>Earlier screenshots are looked up in the {@link ScreenshotIndex}. A screenshot only
+ * reaches the index once its metadata is written, so the hashes of the last few captures
+ * are also kept here; otherwise the second shot of a quick burst would not see the first.</p>
+ */
+final class DuplicateDetector {
+    private static final String DUPLICATE_TAG = "duplicate";
+    private static final int RECENT_CAPACITY = 64;
+
+    private static final long[] RECENT = new long[RECENT_CAPACITY];
+    private static int recentCount;
+    private static int recentNext;
+
+    private DuplicateDetector() {
+    }
+
+    /**
+     * Writes the capture's hash into {@code metadata} and tags it if it is a duplicate.
+     * Does nothing if the capture was not hashed or the metadata already has a hash.
+     * {@code metadata} must be the screenshot's own copy, never a snapshot's shared instance.
+     *
+     * @return Whether the duplicate tag was added
+     */
+    static boolean apply(ScreenshotCapture capture, ScreenshotMetadata metadata) {
+        Long hash = capture.getPerceptualHash();
+        if (hash == null || metadata.has(MetadataKey.PERCEPTUAL_HASH)) {
+            return false;
+        }
+        metadata.setText(MetadataKey.PERCEPTUAL_HASH, PerceptualHash.toHex(hash));
+
+        // Timelapse frames are near-identical by design
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        if (!config.tagDuplicates || capture.getTimelapseFrame() != null) {
+            return false;
+        }
+        return isDuplicate(hash, config) && addTag(metadata);
+    }
+
+    private static boolean isDuplicate(long hash, ScreenshotMetadataConfig.Snapshot config) {
+        boolean duplicate = false;
+        synchronized (RECENT) {
+            for (int i = 0; i < recentCount && !duplicate; i++) {
+                duplicate = PerceptualHash.distance(RECENT[i], hash) <= config.duplicateThreshold;
+            }
+            RECENT[recentNext] = hash;
+            recentNext = (recentNext + 1) % RECENT_CAPACITY;
+            recentCount = Math.min(recentCount + 1, RECENT_CAPACITY);
+        }
+        return duplicate
+            || config.indexScreenshots && !ScreenshotIndex.findSimilar(hash, config.duplicateThreshold, 1).isEmpty();
+    }
+
+    private static boolean addTag(ScreenshotMetadata metadata) {
+        String tags = metadata.getText(MetadataKey.TAGS);
+        if (tags == null || tags.isBlank()) {
+            metadata.setText(MetadataKey.TAGS, DUPLICATE_TAG);
+            return true;
+        }
+        for (String tag : tags.split(",")) {
+            if (tag.trim().equalsIgnoreCase(DUPLICATE_TAG)) {
+                return false;
+            }
+        }
+        metadata.setText(MetadataKey.TAGS, tags + ", " + DUPLICATE_TAG);
+        return true;
+    }
+}
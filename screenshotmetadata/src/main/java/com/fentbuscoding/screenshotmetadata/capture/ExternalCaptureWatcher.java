@@ -0,0 +1,347 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in watcher that adds metadata to PNGs written by external capture tools
+ * (OBS, replay tools, ...) into configured folders.
+ *
+ * <p>Discovery is event driven through {@link WatchService}, so an idle watcher
+ * costs a single parked thread. Each new file is matched to the snapshot in the
+ * {@link SnapshotRing} nearest to its modification time and written with the same writers as
+ * in-game screenshots.</p>
+ */
+public final class ExternalCaptureWatcher {
+    private static final long SETTLE_MILLIS = 750L;
+    private static final long SELF_WRITE_IGNORE_MILLIS = 60_000L;
+    // A write that never reported back is given up on after this long
+    private static final long STALE_WRITE_MILLIS = 10L * 60_000L;
+    private static final long CLIENT_SNAPSHOT_TIMEOUT_MILLIS = 5_000L;
+    private static final String SCREENSHOTS_DIR = "screenshots";
+
+    private static final Object LOCK = new Object();
+    private static final Map<WatchKey, Path> WATCHED_DIRS = new ConcurrentHashMap<>();
+    private static final Map<Path, PendingFile> PENDING = new ConcurrentHashMap<>();
+    // Files this watcher is writing or has written, so the events of our own rewrite are not processed again
+    private static final Map<Path, OwnWrite> RECENTLY_WRITTEN = new ConcurrentHashMap<>();
+
+    private static WatchService watchService;
+    private static boolean watchEnabled;
+    private static List<String> watchFolders;
+    private static ScheduledExecutorService settleScheduler;
+    private static volatile boolean running;
+
+    private ExternalCaptureWatcher() {
+    }
+
+    /**
+     * Starts, restarts or stops the watcher to match the current config. Does nothing if
+     * the watch settings did not change since the last call.
+     */
+    public static void applyConfig() {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        synchronized (LOCK) {
+            List<String> folders = new ArrayList<>(config.externalWatchFolders);
+            if (config.watchExternalFolders == watchEnabled && folders.equals(watchFolders)) {
+                return;
+            }
+            watchEnabled = config.watchExternalFolders;
+            watchFolders = folders;
+            stopLocked();
+            if (config.watchExternalFolders) {
+                startLocked(config);
+            }
+        }
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    private static void startLocked(ScreenshotMetadataConfig.Snapshot config) {
+        Path gameDir = FabricLoader.getInstance().getGameDir();
+        Path screenshotsDir = gameDir.resolve(SCREENSHOTS_DIR).toAbsolutePath().normalize();
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Could not start external capture watcher: {}", e.getMessage());
+            return;
+        }
+
+        for (String folder : config.externalWatchFolders) {
+            if (folder == null || folder.isBlank()) {
+                continue;
+            }
+            Path dir = gameDir.resolve(folder.trim()).toAbsolutePath().normalize();
+            if (dir.equals(screenshotsDir)) {
+                // In-game screenshots are already tracked precisely; watching them would process every file twice
+                ScreenshotMetadataMod.LOGGER.warn("Ignoring watch folder {}: in-game screenshots are handled directly", dir);
+                continue;
+            }
+            if (!Files.isDirectory(dir)) {
+                ScreenshotMetadataMod.LOGGER.warn("Ignoring watch folder {}: not a directory", dir);
+                continue;
+            }
+            try {
+                WatchKey key = dir.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                WATCHED_DIRS.put(key, dir);
+                ScreenshotMetadataMod.LOGGER.info("Watching {} for external screenshots", dir);
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Could not watch folder {}: {}", dir, e.getMessage());
+            }
+        }
+
+        if (WATCHED_DIRS.isEmpty()) {
+            closeQuietly(service);
+            return;
+        }
+
+        watchService = service;
+        settleScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Screenshot Metadata Watcher Settle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+
+        Thread watchThread = new Thread(() -> watchLoop(service), "Screenshot Metadata Watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    private static void stopLocked() {
+        running = false;
+        if (watchService != null) {
+            closeQuietly(watchService);
+            watchService = null;
+        }
+        if (settleScheduler != null) {
+            settleScheduler.shutdownNow();
+            settleScheduler = null;
+        }
+        WATCHED_DIRS.clear();
+        PENDING.clear();
+    }
+
+    private static void watchLoop(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = WATCHED_DIRS.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        ScreenshotMetadataMod.LOGGER.debug("Watch event overflow in {}", dir);
+                        continue;
+                    }
+                    if (event.context() instanceof Path name) {
+                        onFileEvent(dir.resolve(name));
+                    }
+                }
+            }
+
+            if (!key.reset()) {
+                WATCHED_DIRS.remove(key);
+            }
+        }
+    }
+
+    private static void onFileEvent(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".") || !name.toLowerCase().endsWith(".png")) {
+            return;
+        }
+        if (isOwnWrite(path)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        PendingFile pending = PENDING.compute(path, (ignored, existing) -> {
+            if (existing == null) {
+                return new PendingFile(now);
+            }
+            existing.lastEventMillis = now;
+            return existing;
+        });
+        if (!pending.scheduled) {
+            pending.scheduled = true;
+            scheduleSettleCheck(path, SETTLE_MILLIS);
+        }
+    }
+
+    private static void scheduleSettleCheck(Path path, long delayMillis) {
+        ScheduledExecutorService scheduler = settleScheduler;
+        if (scheduler == null || scheduler.isShutdown()) {
+            return;
+        }
+        scheduler.schedule(() -> checkSettled(path), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for events and file size to go quiet before treating a file as fully written.
+     */
+    private static void checkSettled(Path path) {
+        PendingFile pending = PENDING.get(path);
+        if (pending == null) {
+            return;
+        }
+        File file = path.toFile();
+        long quietFor = System.currentTimeMillis() - pending.lastEventMillis;
+        long size = file.length();
+        if (quietFor < SETTLE_MILLIS || size <= 0L || size != pending.lastSize) {
+            pending.lastSize = size;
+            scheduleSettleCheck(path, Math.max(SETTLE_MILLIS - quietFor, 100L));
+            return;
+        }
+        PENDING.remove(path);
+        // Our own rewrite may have started while the events were settling
+        if (isOwnWrite(path)) {
+            return;
+        }
+        dispatch(file);
+    }
+
+    /**
+     * Whether the file's latest change is our own metadata write: one still in progress, or
+     * a finished one that left the file at the size and modification time we recorded.
+     * Expired entries are pruned on the way.
+     */
+    private static boolean isOwnWrite(Path path) {
+        long now = System.currentTimeMillis();
+        RECENTLY_WRITTEN.values().removeIf(write -> write.isExpired(now));
+        OwnWrite write = RECENTLY_WRITTEN.get(path);
+        if (write == null) {
+            return false;
+        }
+        if (write.finishedAt == 0L) {
+            return true;
+        }
+        File file = path.toFile();
+        if (file.length() == write.size && file.lastModified() == write.lastModified) {
+            return true;
+        }
+        // Changed since we wrote it, so it is a new capture saved under the same name
+        RECENTLY_WRITTEN.remove(path, write);
+        return false;
+    }
+
+    private static void dispatch(File file) {
+        Path path = file.toPath();
+        // Marked before anything is written, so the events of our rewrite are recognised as ours
+        OwnWrite write = new OwnWrite();
+        RECENTLY_WRITTEN.put(path, write);
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        long modifiedAt = file.lastModified();
+        long windowMillis = config.externalMatchWindowSeconds * 1000L;
+        long now = System.currentTimeMillis();
+        long freshDistance = Math.abs(now - modifiedAt);
+
+        MetadataSnapshot nearest = SnapshotRing.findNearest(modifiedAt, windowMillis);
+        CompletableFuture<MetadataSnapshot> snapshot;
+        if (nearest != null && Math.abs(nearest.getCapturedAtMillis() - modifiedAt) <= freshDistance) {
+            snapshot = CompletableFuture.completedFuture(nearest);
+        } else if (freshDistance <= windowMillis) {
+            snapshot = StageScheduler.within(MetadataCollector.captureOnClientThread(),
+                CLIENT_SNAPSHOT_TIMEOUT_MILLIS, "collect");
+        } else {
+            ScreenshotMetadataMod.LOGGER.debug("No metadata snapshot near {}, skipping", file.getName());
+            RECENTLY_WRITTEN.remove(path, write);
+            return;
+        }
+
+        snapshot.thenAccept(matched -> {
+            if (matched == null) {
+                ScreenshotMetadataMod.LOGGER.debug("No metadata available for external screenshot {}", file.getName());
+                RECENTLY_WRITTEN.remove(path, write);
+                return;
+            }
+            boolean accepted = MetadataPipeline.offer(file.getAbsolutePath(), PngChunks.estimateDecodedBytes(file), true,
+                () -> ScreenshotProcessor.addMetadataToScreenshot(file, matched.getMetadata(), matched.getSidecarContext())
+                    .whenComplete((ignored, error) -> {
+                        // What we left behind; a later change to the file is a new capture
+                        write.finish(file);
+                        if (error == null) {
+                            ScreenshotMetadataMod.LOGGER.info("Successfully added metadata to external screenshot: {}", file.getName());
+                        }
+                    }),
+                () -> RECENTLY_WRITTEN.remove(path, write));
+            if (!accepted) {
+                RECENTLY_WRITTEN.remove(path, write);
+            }
+        }).exceptionally(e -> {
+            ScreenshotMetadataMod.LOGGER.error("Failed to add metadata to external screenshot {}", file.getName(), e);
+            RECENTLY_WRITTEN.remove(path, write);
+            return null;
+        });
+    }
+
+    private static void closeQuietly(WatchService service) {
+        try {
+            service.close();
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not close watch service: {}", e.getMessage());
+        }
+    }
+
+    private static final class OwnWrite {
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        private volatile long size;
+        private volatile long lastModified;
+
+        private void finish(File file) {
+            size = file.length();
+            lastModified = file.lastModified();
+            finishedAt = System.currentTimeMillis();
+        }
+
+        private boolean isExpired(long now) {
+            return finishedAt != 0L
+                ? now - finishedAt >= SELF_WRITE_IGNORE_MILLIS
+                : now - startedAt >= STALE_WRITE_MILLIS;
+        }
+    }
+
+    private static final class PendingFile {
+        private volatile long lastEventMillis;
+        private volatile long lastSize = -1L;
+        private volatile boolean scheduled;
+
+        private PendingFile(long lastEventMillis) {
+            this.lastEventMillis = lastEventMillis;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.provider.MetadataProviders;
+import com.fentbuscoding.screenshotmetadata.provider.MetadataRequest;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads the current game state into the metadata written to screenshots, in two
+ * steps: {@link #captureSnapshot} runs the capture step of the needed
+ * {@link MetadataProviders providers} on the client thread, and {@link #resolveMetadata}
+ * fills the typed {@link ScreenshotMetadata} on a worker.
+ */
+public final class MetadataCollector {
+
+    private MetadataCollector() {
+    }
+
+    /**
+     * Copies the game state the request needs into a snapshot. Must run on the client
+     * thread; only primitives and references are copied, formatting is left to the worker.
+     */
+    public static MetadataSnapshot captureSnapshot(MinecraftClient client, MetadataRequest request) {
+        MetadataSnapshot snapshot = new MetadataSnapshot(System.currentTimeMillis());
+        try {
+            snapshot.captures = MetadataProviders.capture(client, request);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Error capturing metadata snapshot", e);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Captures and publishes a snapshot for a regular screenshot on the client thread,
+     * for callers running elsewhere.
+     *
+     * @return A future completing with the snapshot, or with null if no player is in a world
+     */
+    public static CompletableFuture<MetadataSnapshot> captureOnClientThread() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return client.submit(() -> {
+            if (client.player == null) {
+                return null;
+            }
+            MetadataSnapshot snapshot = captureSnapshot(client, MetadataRequest.forScreenshot(ScreenshotMetadataConfig.get()));
+            SnapshotRing.publish(snapshot);
+            return snapshot;
+        });
+    }
+
+    /**
+     * Fills the metadata model from a snapshot. Runs off the client thread; numbers are
+     * stored as they are and only formatted when a writer reads them. The capture time
+     * is written first so providers can read it.
+     */
+    static void resolveMetadata(MetadataSnapshot snapshot, ScreenshotMetadata metadata) {
+        try {
+            // Timestamp
+            metadata.setLong(MetadataKey.TIMESTAMP, snapshot.capturedAtMillis);
+            metadata.setLong(MetadataKey.LOCAL_TIME, snapshot.capturedAtMillis);
+
+            if (snapshot.captures != null) {
+                MetadataProviders.resolve(snapshot.captures, metadata);
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Error formatting metadata", e);
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.catalog.ScreenshotCatalog;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig.OverflowPolicy;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.metadata.AppendJournal;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs metadata jobs on the mod's own worker threads, so slow writes never occupy
+ * vanilla's IO worker pool.
+ *
+ * <p>The queue is bounded and what happens when it is full is chosen by
+ * {@link OverflowPolicy}. Jobs also declare the decoded size of their image; a job
+ * only starts while the in-flight total stays under the configured memory limit,
+ * except when nothing else is running. Changed pipeline settings are applied to the
+ * running pipeline by {@link #applyConfig()}, and queued jobs are drained when the
+ * client stops.</p>
+ *
+ * <p>Jobs come from vanilla's IO worker, the render thread, the {@link StageScheduler}
+ * timer and the folder watcher, none of which may stall, so they go through
+ * {@link #offer(String, long, boolean, Runnable, Runnable)}. Where the policy would wait
+ * for room, a required job is parked here until a worker frees a slot instead of holding
+ * the caller's thread. Only {@link #submit} waits, and only a producer thread of its own
+ * may call it.</p>
+ */
+public final class MetadataPipeline {
+    private static final long BLOCK_TIMEOUT_MILLIS = 30_000L;
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000L;
+
+    private static final Object LOCK = new Object();
+    private static final ArrayDeque<Job> QUEUE = new ArrayDeque<>();
+    private static final ArrayDeque<Job> PARKED = new ArrayDeque<>();
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong COMPLETED = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    private static final AtomicLong COALESCED = new AtomicLong();
+
+    private static List<Thread> workers;
+    private static int workerCount;
+    private static int nextWorkerId = 1;
+    private static boolean shuttingDown;
+    private static int capacity;
+    private static OverflowPolicy policy;
+    private static long memoryLimitBytes;
+    private static long inFlightBytes;
+    private static int running;
+
+    private MetadataPipeline() {
+    }
+
+    /**
+     * Queues a metadata job, waiting up to 30 seconds for room when the policy says so.
+     * Only for a dedicated producer thread; never call it from the render thread, vanilla's
+     * IO worker or the timer.
+     *
+     * @param key Identifies the output file; used to coalesce repeated jobs for the same file
+     * @param estimatedBytes Decoded image size, used for memory admission
+     * @param optional Whether the job may be dropped under pressure (e.g. external captures)
+     * @param action The work to run
+     * @return false if the job was rejected
+     */
+    public static boolean submit(String key, long estimatedBytes, boolean optional, Runnable action) {
+        return submit(key, estimatedBytes, optional, action, null);
+    }
+
+    /**
+     * Queues a metadata job that wants to know if it is dropped after being accepted.
+     *
+     * @param onDropped Run instead of {@code action} if the queued job is later evicted or replaced; may be null
+     * @return false if the job was rejected
+     * @throws IllegalStateException if called on the render thread
+     * @see #submit(String, long, boolean, Runnable)
+     */
+    public static boolean submit(String key, long estimatedBytes, boolean optional, Runnable action, Runnable onDropped) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client != null && client.isOnThread()) {
+            throw new IllegalStateException("MetadataPipeline.submit can block; use offer on the render thread");
+        }
+        return enqueue(new Job(key, Math.max(0L, estimatedBytes), optional, action, onDropped), true);
+    }
+
+    /**
+     * Queues a metadata job without ever waiting. Where the policy would wait for room, a
+     * required job is parked until a worker frees a slot, and is dropped (running
+     * {@code onDropped}) if that takes longer than {@link #submit} would have waited;
+     * optional jobs are rejected instead.
+     *
+     * @param optional Whether the job may be dropped under pressure (e.g. external captures)
+     * @param onDropped Run instead of {@code action} if the accepted job is later evicted, replaced or expires; may be null
+     * @return false if the job was rejected
+     */
+    public static boolean offer(String key, long estimatedBytes, boolean optional, Runnable action, Runnable onDropped) {
+        return enqueue(new Job(key, Math.max(0L, estimatedBytes), optional, action, onDropped), false);
+    }
+
+    /**
+     * Queues an optional job without ever waiting; rejected when the queue is full.
+     *
+     * @return false if the job was rejected
+     * @see #offer(String, long, boolean, Runnable, Runnable)
+     */
+    public static boolean offer(String key, long estimatedBytes, Runnable action, Runnable onDropped) {
+        return offer(key, estimatedBytes, true, action, onDropped);
+    }
+
+    private static boolean enqueue(Job job, boolean mayWait) {
+        synchronized (LOCK) {
+            ensureStarted();
+            if (shuttingDown) {
+                return reject(job, "shutting down");
+            }
+            if (policy == OverflowPolicy.COALESCE && coalesce(job)) {
+                return true;
+            }
+
+            long deadline = System.currentTimeMillis() + BLOCK_TIMEOUT_MILLIS;
+            while (QUEUE.size() >= capacity) {
+                if (policy == OverflowPolicy.COALESCE) {
+                    return reject(job, "queue full");
+                }
+                if (policy == OverflowPolicy.DROP_OLDEST_OPTIONAL && dropOldestOptional()) {
+                    break;
+                }
+                if (!mayWait) {
+                    return job.optional ? reject(job, "queue full") : park(job, deadline);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L || shuttingDown) {
+                    return reject(job, "queue full");
+                }
+                try {
+                    LOCK.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return reject(job, "interrupted");
+                }
+            }
+
+            QUEUE.addLast(job);
+            SUBMITTED.incrementAndGet();
+            LOCK.notifyAll();
+            return true;
+        }
+    }
+
+    public static int getQueueDepth() {
+        synchronized (LOCK) {
+            return QUEUE.size();
+        }
+    }
+
+    public static int getParkedCount() {
+        synchronized (LOCK) {
+            return PARKED.size();
+        }
+    }
+
+    public static int getRunningCount() {
+        synchronized (LOCK) {
+            return running;
+        }
+    }
+
+    public static long getInFlightBytes() {
+        synchronized (LOCK) {
+            return inFlightBytes;
+        }
+    }
+
+    public static long getSubmittedCount() {
+        return SUBMITTED.get();
+    }
+
+    public static long getCompletedCount() {
+        return COMPLETED.get();
+    }
+
+    public static long getFailedCount() {
+        return FAILED.get();
+    }
+
+    public static long getRejectedCount() {
+        return REJECTED.get();
+    }
+
+    public static long getCoalescedCount() {
+        return COALESCED.get();
+    }
+
+    /**
+     * One-line summary of the pipeline counters, for logs.
+     */
+    public static String describeMetrics() {
+        return String.format("queued=%d parked=%d running=%d inFlightBytes=%d submitted=%d completed=%d failed=%d rejected=%d coalesced=%d",
+            getQueueDepth(), getParkedCount(), getRunningCount(), getInFlightBytes(), getSubmittedCount(),
+            getCompletedCount(), getFailedCount(), getRejectedCount(), getCoalescedCount());
+    }
+
+    /**
+     * Applies changed pipeline settings to the running pipeline. Surplus workers leave once
+     * their current job is done; jobs already queued beyond a smaller capacity stay queued.
+     */
+    public static void applyConfig() {
+        synchronized (LOCK) {
+            if (workers == null || shuttingDown) {
+                // Not started yet, so ensureStarted() reads the new settings
+                return;
+            }
+            readConfig();
+            while (workers.size() < workerCount) {
+                startWorker();
+            }
+            unparkIntoFreeSlots();
+            LOCK.notifyAll();
+            ScreenshotMetadataMod.LOGGER.debug("Reconfigured metadata pipeline: {} worker(s), capacity {}, policy {}",
+                workerCount, capacity, policy.id);
+        }
+    }
+
+    /**
+     * Drains queued jobs and closes the catalog while the client is stopping, before the
+     * JVM starts tearing down.
+     */
+    public static void onClientStop() {
+        drain(DRAIN_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops accepting jobs and waits for queued ones to finish, up to {@code timeoutMillis}.
+     */
+    public static void drain(long timeoutMillis) {
+        List<Thread> toJoin;
+        synchronized (LOCK) {
+            if (workers == null || shuttingDown) {
+                return;
+            }
+            shuttingDown = true;
+            // Parked jobs were accepted, so they are drained like queued ones
+            while (!PARKED.isEmpty()) {
+                QUEUE.addLast(PARKED.pollFirst());
+                SUBMITTED.incrementAndGet();
+            }
+            LOCK.notifyAll();
+            toJoin = new ArrayList<>(workers);
+        }
+        // Pending back-offs and polls would only submit jobs that are now rejected
+        StageScheduler.cancelAll();
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread worker : toJoin) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L) {
+                break;
+            }
+            try {
+                worker.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        int abandoned = getQueueDepth();
+        if (abandoned > 0 || getRunningCount() > 0) {
+            ScreenshotMetadataMod.LOGGER.warn("Metadata pipeline did not drain in time, {} job(s) abandoned", abandoned);
+            toJoin.forEach(Thread::interrupt);
+        } else {
+            // Every append has finished and been synced, so nothing is left to repair
+            AppendJournal.clear();
+        }
+        ScreenshotMetadataMod.LOGGER.debug("Metadata pipeline stopped: {}", describeMetrics());
+        ScreenshotCatalog.close(Math.max(0L, deadline - System.currentTimeMillis()));
+        ScreenshotIndex.save();
+    }
+
+    private static void ensureStarted() {
+        if (workers != null) {
+            return;
+        }
+        readConfig();
+        workers = new ArrayList<>();
+        while (workers.size() < workerCount) {
+            startWorker();
+        }
+        // Fallback for exits that skip MinecraftClient#stop; a no-op once the client has drained
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drain(DRAIN_TIMEOUT_MILLIS), "Screenshot Metadata Drain"));
+        ScreenshotMetadataMod.LOGGER.debug("Started metadata pipeline: {} worker(s), capacity {}, policy {}",
+            workers.size(), capacity, policy.id);
+    }
+
+    private static void readConfig() {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        workerCount = config.metadataWorkerThreads;
+        capacity = config.metadataQueueCapacity;
+        policy = config.getOverflowPolicy();
+        memoryLimitBytes = config.metadataMemoryLimitMb * 1024L * 1024L;
+    }
+
+    private static void startWorker() {
+        Thread worker = new Thread(MetadataPipeline::runWorker, "Screenshot Metadata Worker-" + nextWorkerId++);
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+    }
+
+    private static boolean coalesce(Job job) {
+        if (job.key == null) {
+            return false;
+        }
+        for (Job queued : QUEUE) {
+            if (job.key.equals(queued.key)) {
+                queued.replaceWith(job);
+                COALESCED.incrementAndGet();
+                ScreenshotMetadataMod.LOGGER.debug("Coalesced metadata job for {}", job.key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean dropOldestOptional() {
+        for (Iterator<Job> it = QUEUE.iterator(); it.hasNext(); ) {
+            Job queued = it.next();
+            if (queued.optional) {
+                it.remove();
+                REJECTED.incrementAndGet();
+                ScreenshotMetadataMod.LOGGER.warn("Metadata queue full, dropped queued job for {}", queued.key);
+                queued.notifyDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Holds a required job until a worker frees a slot, dropping it at {@code deadline}.
+     */
+    private static boolean park(Job job, long deadline) {
+        PARKED.addLast(job);
+        ScreenshotMetadataMod.LOGGER.debug("Metadata queue full, parked job for {}", job.key);
+        StageScheduler.delay(Math.max(0L, deadline - System.currentTimeMillis()))
+            .thenRun(() -> expireParked(job));
+        return true;
+    }
+
+    private static void expireParked(Job job) {
+        synchronized (LOCK) {
+            if (!PARKED.remove(job)) {
+                return;
+            }
+            REJECTED.incrementAndGet();
+            ScreenshotMetadataMod.LOGGER.warn("Metadata job for {} dropped after waiting for room: {}", job.key, describeMetrics());
+        }
+        job.notifyDropped();
+    }
+
+    private static void unparkIntoFreeSlots() {
+        if (PARKED.isEmpty()) {
+            return;
+        }
+        while (!PARKED.isEmpty() && QUEUE.size() < capacity) {
+            QUEUE.addLast(PARKED.pollFirst());
+            SUBMITTED.incrementAndGet();
+        }
+        LOCK.notifyAll();
+    }
+
+    private static boolean reject(Job job, String reason) {
+        REJECTED.incrementAndGet();
+        ScreenshotMetadataMod.LOGGER.warn("Metadata job for {} rejected ({}): {}", job.key, reason, describeMetrics());
+        return false;
+    }
+
+    private static void runWorker() {
+        while (true) {
+            Job job;
+            synchronized (LOCK) {
+                while (true) {
+                    if (workers.size() > workerCount && !shuttingDown) {
+                        // Fewer workers were configured
+                        workers.remove(Thread.currentThread());
+                        return;
+                    }
+                    Job head = QUEUE.peekFirst();
+                    if (head == null) {
+                        if (shuttingDown) {
+                            return;
+                        }
+                    } else if (running == 0 || inFlightBytes + head.estimatedBytes <= memoryLimitBytes) {
+                        job = QUEUE.pollFirst();
+                        unparkIntoFreeSlots();
+                        running++;
+                        inFlightBytes += job.estimatedBytes;
+                        break;
+                    }
+                    try {
+                        LOCK.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            try {
+                job.action.run();
+                COMPLETED.incrementAndGet();
+            } catch (Exception e) {
+                FAILED.incrementAndGet();
+                ScreenshotMetadataMod.LOGGER.error("Metadata job for {} failed", job.key, e);
+            } finally {
+                synchronized (LOCK) {
+                    running--;
+                    inFlightBytes -= job.estimatedBytes;
+                    LOCK.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static final class Job {
+        private final String key;
+        private long estimatedBytes;
+        private boolean optional;
+        private Runnable action;
+        private Runnable onDropped;
+
+        private Job(String key, long estimatedBytes, boolean optional, Runnable action, Runnable onDropped) {
+            this.key = key;
+            this.estimatedBytes = estimatedBytes;
+            this.optional = optional;
+            this.action = action;
+            this.onDropped = onDropped;
+        }
+
+        private void replaceWith(Job newer) {
+            notifyDropped();
+            this.estimatedBytes = newer.estimatedBytes;
+            this.optional = this.optional && newer.optional;
+            this.action = newer.action;
+            this.onDropped = newer.onDropped;
+        }
+
+        private void notifyDropped() {
+            if (onDropped == null) {
+                return;
+            }
+            try {
+                onDropped.run();
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.debug("Drop callback for {} failed", key, e);
+            }
+        }
+    }
+}
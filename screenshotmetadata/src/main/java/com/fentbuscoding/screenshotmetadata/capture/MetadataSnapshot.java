@@ -0,0 +1,52 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.provider.MetadataProviders;
+
+/**
+ * Game state copied on the client thread at the moment of a capture.
+ *
+ * <p>Each {@link com.fentbuscoding.screenshotmetadata.provider.MetadataProvider} the
+ * enabled outputs need copies only primitives and references to immutable game objects
+ * (registry keys, items, strings), so taking a snapshot costs microseconds. Names are
+ * resolved on the worker that first asks for {@link #getMetadata()}, and numbers stay
+ * numbers until a writer formats them. The fields are written once by
+ * {@link MetadataCollector#captureSnapshot} before the snapshot is handed to its
+ * {@link ScreenshotCapture} (and published through {@link SnapshotRing}) and never
+ * change afterwards.</p>
+ */
+public final class MetadataSnapshot {
+    final long capturedAtMillis;
+    MetadataProviders.Captures captures;
+
+    private volatile ScreenshotMetadata metadata;
+
+    MetadataSnapshot(long capturedAtMillis) {
+        this.capturedAtMillis = capturedAtMillis;
+    }
+
+    public long getCapturedAtMillis() {
+        return capturedAtMillis;
+    }
+
+    /**
+     * The metadata for this capture, resolved on first use. Callers must not modify it.
+     */
+    public synchronized ScreenshotMetadata getMetadata() {
+        ScreenshotMetadata result = metadata;
+        if (result == null) {
+            result = new ScreenshotMetadata();
+            MetadataCollector.resolveMetadata(this, result);
+            metadata = result;
+        }
+        return result;
+    }
+
+    /**
+     * The JSON sidecar context; null when modpack context is disabled.
+     */
+    public JsonSidecarContext getSidecarContext() {
+        return getMetadata().getModpackContext();
+    }
+}
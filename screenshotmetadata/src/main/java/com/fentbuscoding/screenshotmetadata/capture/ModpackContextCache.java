@@ -0,0 +1,204 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.compat.ClientCompat;
+import com.fentbuscoding.screenshotmetadata.compat.IrisCompat;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.client.MinecraftClient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps the modpack context written to JSON sidecars (mod list, resource packs, shader
+ * pack) so it is not rebuilt for every screenshot.
+ *
+ * <p>The mod list cannot change while the game runs and is built once at startup. The
+ * enabled resource packs only change through a resource reload, so they are read on the
+ * first capture after one and reused until the next. The finished context, including its
+ * fingerprint, is shared by every screenshot taken with the same packs and shader pack.</p>
+ */
+public final class ModpackContextCache {
+    private static final int MAX_MOD_LIST_ENTRIES = 200;
+
+    private static volatile ModList modList;
+    // Written on the client thread; null until read, and again after a resource reload
+    private static volatile List<String> resourcePacks;
+    private static volatile JsonSidecarContext context;
+
+    private ModpackContextCache() {
+    }
+
+    /**
+     * Builds the mod list. Called once from mod initialization; later calls are no-ops.
+     */
+    public static void init() {
+        modListOrBuild();
+    }
+
+    /**
+     * Drops the cached resource pack list. Called when the client starts a resource reload.
+     */
+    public static void onResourceReload() {
+        if (resourcePacks != null) {
+            resourcePacks = null;
+            ScreenshotMetadataMod.LOGGER.debug("Resource reload, modpack context will be rebuilt on the next screenshot");
+        }
+    }
+
+    /**
+     * The enabled resource packs, read from the pack manager only after a reload. Must run
+     * on the client thread.
+     */
+    public static List<String> resourcePacks(MinecraftClient client) {
+        List<String> packs = resourcePacks;
+        if (packs == null) {
+            packs = Collections.unmodifiableList(collectEnabledResourcePacks(client));
+            resourcePacks = packs;
+        }
+        return packs;
+    }
+
+    /**
+     * The sidecar context for a capture taken with {@code packs}. Reuses the previous
+     * context unless the packs or the shader pack changed. Runs off the client thread.
+     */
+    public static JsonSidecarContext get(List<String> packs) {
+        List<String> capturedPacks = packs != null ? packs : List.of();
+        String shaderPack = detectShaderPack();
+        JsonSidecarContext cached = context;
+        if (cached != null
+            && cached.getResourcePacks().equals(capturedPacks)
+            && Objects.equals(cached.getShaderPack(), shaderPack)) {
+            return cached;
+        }
+
+        ModList mods = modListOrBuild();
+        JsonSidecarContext built = new JsonSidecarContext(
+            capturedPacks,
+            shaderPack,
+            mods.entries,
+            mods.count,
+            mods.truncated,
+            fingerprint(mods, capturedPacks, shaderPack)
+        );
+        context = built;
+        ScreenshotMetadataMod.LOGGER.debug("Built modpack context {} ({} mods, {} resource packs)",
+            built.getFingerprint(), mods.count, capturedPacks.size());
+        return built;
+    }
+
+    private static ModList modListOrBuild() {
+        ModList mods = modList;
+        if (mods == null) {
+            mods = buildModList();
+            modList = mods;
+        }
+        return mods;
+    }
+
+    private static ModList buildModList() {
+        List<String> modEntries = new ArrayList<>();
+        List<String> allEntries = new ArrayList<>();
+        int modCount = -1;
+        boolean modListTruncated = false;
+
+        try {
+            List<ModContainer> mods = new ArrayList<>(FabricLoader.getInstance().getAllMods());
+            mods.sort(Comparator.comparing(mod -> mod.getMetadata().getId()));
+            modCount = mods.size();
+
+            for (ModContainer mod : mods) {
+                String id = mod.getMetadata().getId();
+                String version = mod.getMetadata().getVersion().getFriendlyString();
+                String entry = id + "@" + version;
+                allEntries.add(entry);
+                if (modEntries.size() >= MAX_MOD_LIST_ENTRIES) {
+                    modListTruncated = true;
+                } else {
+                    modEntries.add(entry);
+                }
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not collect mod list", e);
+        }
+
+        return new ModList(Collections.unmodifiableList(modEntries), modCount, modListTruncated,
+            String.join("\n", allEntries));
+    }
+
+    private static List<String> collectEnabledResourcePacks(MinecraftClient client) {
+        List<String> packs = new ArrayList<>();
+        try {
+            if (client == null || client.getResourcePackManager() == null) {
+                return packs;
+            }
+
+            Collection<String> enabledIds = ClientCompat.enabledResourcePackIds(client.getResourcePackManager());
+            if (enabledIds != null) {
+                for (String id : enabledIds) {
+                    if (id != null) {
+                        packs.add(id);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not collect resource packs", e);
+        }
+        return packs;
+    }
+
+    private static String detectShaderPack() {
+        try {
+            if (IrisCompat.isLoaded()) {
+                String irisPack = IrisCompat.shaderPackName();
+                return irisPack != null ? irisPack : "Unknown";
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not detect shader pack", e);
+        }
+        return "None";
+    }
+
+    /**
+     * Short hash identifying the full mod set (including mods past the truncation limit),
+     * the resource packs in load order and the shader pack.
+     */
+    private static String fingerprint(ModList mods, List<String> packs, String shaderPack) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(mods.digestInput.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.join("\n", packs).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(shaderPack).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not fingerprint modpack context", e);
+            return null;
+        }
+    }
+
+    private static final class ModList {
+        private final List<String> entries;
+        private final int count;
+        private final boolean truncated;
+        private final String digestInput;
+
+        private ModList(List<String> entries, int count, boolean truncated, String digestInput) {
+            this.entries = entries;
+            this.count = count;
+            this.truncated = truncated;
+            this.digestInput = digestInput;
+        }
+    }
+}
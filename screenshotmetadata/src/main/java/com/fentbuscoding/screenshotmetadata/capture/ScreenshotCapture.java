@@ -0,0 +1,148 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.thumbnail.Thumbnail;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single screenshot request, tracked from the keypress until vanilla has
+ * finished writing the PNG. The id correlates log lines and lets the pipeline
+ * tell two screenshots apart even when they land in the same second.
+ */
+public final class ScreenshotCapture {
+    private final long id;
+    private final File gameDirectory;
+    private final long requestedAtMillis;
+    private final CompletableFuture<File> written = new CompletableFuture<>();
+    private volatile File targetFile;
+    private volatile MetadataSnapshot snapshot;
+    private volatile SinglePassMetadataInjector.PreparedChunks preparedChunks;
+    private volatile boolean textEmbeddedInEncode;
+    private volatile boolean xmpEmbeddedInEncode;
+    private volatile TimelapseSequence.Frame timelapseFrame;
+    private volatile CompletableFuture<Thumbnail> thumbnail;
+    private volatile Long perceptualHash;
+
+    ScreenshotCapture(long id, File gameDirectory, long requestedAtMillis) {
+        this.id = id;
+        this.gameDirectory = gameDirectory;
+        this.requestedAtMillis = requestedAtMillis;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public File getGameDirectory() {
+        return gameDirectory;
+    }
+
+    public long getRequestedAtMillis() {
+        return requestedAtMillis;
+    }
+
+    /**
+     * The file vanilla allocated for this capture, or null if the filename hook has not fired yet.
+     */
+    public File getTargetFile() {
+        return targetFile;
+    }
+
+    /**
+     * Completes with the target file once vanilla has finished encoding it to disk.
+     */
+    public CompletableFuture<File> written() {
+        return written;
+    }
+
+    /**
+     * Game state captured on the client thread when the screenshot was requested, or null
+     * if none was taken (no player in a world). Held here rather than looked up, so it
+     * stays available however long the capture waits in the pipeline.
+     */
+    public MetadataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    void setSnapshot(MetadataSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * The metadata chunks rendered for the single-pass encode, or null until they are ready.
+     */
+    SinglePassMetadataInjector.PreparedChunks getPreparedChunks() {
+        return preparedChunks;
+    }
+
+    void setPreparedChunks(SinglePassMetadataInjector.PreparedChunks preparedChunks) {
+        this.preparedChunks = preparedChunks;
+    }
+
+    /**
+     * Whether the PNG text chunks were already written while vanilla encoded the file.
+     */
+    public boolean isTextEmbeddedInEncode() {
+        return textEmbeddedInEncode;
+    }
+
+    /**
+     * Whether the embedded XMP packet was already written while vanilla encoded the file.
+     */
+    public boolean isXmpEmbeddedInEncode() {
+        return xmpEmbeddedInEncode;
+    }
+
+    void markEmbeddedInEncode(boolean text, boolean xmp) {
+        this.textEmbeddedInEncode = text;
+        this.xmpEmbeddedInEncode = xmp;
+    }
+
+    /**
+     * The timelapse frame this capture was triggered for, or null for a regular screenshot.
+     */
+    public TimelapseSequence.Frame getTimelapseFrame() {
+        return timelapseFrame;
+    }
+
+    void setTimelapseFrame(TimelapseSequence.Frame frame) {
+        this.timelapseFrame = frame;
+    }
+
+    /**
+     * The thumbnail being made from the captured image, or null if none is. Completes with
+     * null if the job was dropped.
+     */
+    public CompletableFuture<Thumbnail> getThumbnail() {
+        return thumbnail;
+    }
+
+    void setThumbnail(CompletableFuture<Thumbnail> thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
+    /**
+     * The {@code PerceptualHash} of the captured image, or null if it was not hashed.
+     */
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    void setPerceptualHash(long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+    }
+
+    void bindTargetFile(File file) {
+        this.targetFile = file;
+    }
+
+    boolean markWritten(File file) {
+        return written.complete(file);
+    }
+
+    @Override
+    public String toString() {
+        return "capture#" + id;
+    }
+}
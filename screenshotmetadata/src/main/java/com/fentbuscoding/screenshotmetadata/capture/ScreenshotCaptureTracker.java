@@ -0,0 +1,96 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correlates screenshot requests with the exact file vanilla writes for them.
+ *
+ * <p>A capture is registered when the screenshot is requested, bound to a file
+ * when {@code ScreenshotRecorder} allocates the filename, and completed when
+ * {@code NativeImage} finishes writing that file. No directory listing is needed
+ * at any step.</p>
+ */
+public final class ScreenshotCaptureTracker {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1L);
+    private static final Deque<ScreenshotCapture> UNBOUND = new ConcurrentLinkedDeque<>();
+    private static final Map<String, ScreenshotCapture> BY_FILE = new ConcurrentHashMap<>();
+
+    private ScreenshotCaptureTracker() {
+    }
+
+    /**
+     * Registers a new screenshot request. Called on the render thread when the screenshot is triggered.
+     */
+    public static ScreenshotCapture begin(File gameDirectory) {
+        ScreenshotCapture capture = new ScreenshotCapture(NEXT_ID.getAndIncrement(), gameDirectory, System.currentTimeMillis());
+        UNBOUND.addLast(capture);
+        ScreenshotMetadataMod.LOGGER.debug("Registered {}", capture);
+        return capture;
+    }
+
+    /**
+     * Binds the oldest pending capture to the filename vanilla just allocated.
+     */
+    public static void bindTargetFile(File file) {
+        if (file == null) {
+            return;
+        }
+        ScreenshotCapture capture = UNBOUND.pollFirst();
+        if (capture == null) {
+            return;
+        }
+        capture.bindTargetFile(file);
+        BY_FILE.put(key(file), capture);
+        ScreenshotMetadataMod.LOGGER.debug("Bound {} to {}", capture, file.getName());
+    }
+
+    /**
+     * Completes the capture that owns {@code file}, if any. Called after every
+     * {@code NativeImage} file write, so the untracked case must stay cheap.
+     */
+    public static void onImageWritten(File file) {
+        if (file == null || BY_FILE.isEmpty()) {
+            return;
+        }
+        ScreenshotCapture capture = BY_FILE.remove(key(file));
+        if (capture != null && capture.markWritten(file)) {
+            ScreenshotMetadataMod.LOGGER.debug("{} written to {}", capture, file.getName());
+        }
+    }
+
+    /**
+     * Returns the capture whose target is {@code path}, without completing it.
+     */
+    public static ScreenshotCapture findByTarget(Path path) {
+        if (path == null || BY_FILE.isEmpty()) {
+            return null;
+        }
+        return BY_FILE.get(path.toAbsolutePath().normalize().toString());
+    }
+
+    /**
+     * Stops tracking a capture, e.g. after its write timed out.
+     */
+    public static void discard(ScreenshotCapture capture) {
+        if (capture == null) {
+            return;
+        }
+        UNBOUND.remove(capture);
+        File target = capture.getTargetFile();
+        if (target != null) {
+            BY_FILE.remove(key(target), capture);
+        }
+    }
+
+    private static String key(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
@@ -0,0 +1,563 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.catalog.ScreenshotCatalog;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarWriter;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunkSplicer;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+import com.fentbuscoding.screenshotmetadata.metadata.PngEmbeddedMetadataWriter;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.metadata.XmpSidecarWriter;
+import com.fentbuscoding.screenshotmetadata.provider.MetadataRequest;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the metadata pipeline for a screenshot file: collect, optionally rename, then write every enabled output.
+ */
+public final class ScreenshotProcessor {
+
+    private static final String SCREENSHOTS_DIR = "screenshots";
+    private static final long DISCOVER_TIMEOUT_MILLIS = 3_000L;
+    private static final long STABILIZE_TIMEOUT_MILLIS = 2_000L;
+    private static final long STABLE_CHECK_MILLIS = 100L;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long WRITE_RETRY_DELAY_MILLIS = 200L;
+    // Failed writes of the batch running on this thread, retried later as a batch of their own
+    private static final ThreadLocal<List<RetryWrite>> BATCH_RETRIES = new ThreadLocal<>();
+    private static final AtomicLong RETRY_BATCH_IDS = new AtomicLong();
+
+    private ScreenshotProcessor() {
+    }
+
+    /**
+     * Queues {@link #process} on the metadata pipeline, grouped with other shots of a burst when enabled.
+     * Timelapse frames take the lighter path in {@link TimelapseScheduler}.
+     */
+    public static void submit(ScreenshotCapture capture, File writtenFile) {
+        TimelapseSequence.Frame frame = capture.getTimelapseFrame();
+        if (frame != null) {
+            TimelapseScheduler.submitFrame(capture, frame, writtenFile);
+            return;
+        }
+        if (writtenFile == null) {
+            // The write hook never confirmed the file; find it on the timer instead of a worker
+            ScreenshotCaptureTracker.discard(capture);
+            resolveWithoutWriteHook(capture).whenComplete((resolved, error) -> {
+                if (resolved != null) {
+                    submitSingle(capture, resolved);
+                } else {
+                    ScreenshotMetadataMod.LOGGER.warn("No screenshot file found to add metadata to for {}{}",
+                        capture, error != null ? ": " + describe(error) : "");
+                }
+            });
+            return;
+        }
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        if (config.burstMode) {
+            BurstBatcher.add(capture, writtenFile, config.burstWindowMillis);
+        } else {
+            submitSingle(capture, writtenFile);
+        }
+    }
+
+    static void submitSingle(ScreenshotCapture capture, File writtenFile) {
+        MetadataPipeline.offer(writtenFile.getAbsolutePath(), PngChunks.estimateDecodedBytes(writtenFile), false,
+            () -> process(capture, writtenFile), null);
+    }
+
+    /**
+     * Entry point on a metadata worker once the file for {@code capture} is on disk.
+     * Uses the game state captured when the screenshot was requested; the current state
+     * would put the wrong position and time on the file, so none is collected here.
+     *
+     * @param capture The tracked screenshot request
+     * @param writtenFile The written screenshot file
+     */
+    public static void process(ScreenshotCapture capture, File writtenFile) {
+        if (writtenFile == null) {
+            ScreenshotMetadataMod.LOGGER.warn("No screenshot file found to add metadata to");
+            return;
+        }
+        MetadataSnapshot snapshot = capture.getSnapshot();
+        if (snapshot == null) {
+            ScreenshotMetadataMod.LOGGER.warn("Cannot add metadata to {}: no game state was captured when it was taken",
+                writtenFile.getName());
+            return;
+        }
+        processScreenshotMetadata(capture, writtenFile, snapshot);
+    }
+
+    /**
+     * Processes a burst of screenshots in one job. In-place appends are synced together
+     * at the end, and writes that need another attempt are retried together as well.
+     */
+    static void processBatch(List<ScreenshotCapture> captures, List<File> writtenFiles) {
+        List<RetryWrite> retries = new ArrayList<>();
+        BATCH_RETRIES.set(retries);
+        PngChunkSplicer.beginDeferredSync();
+        try {
+            for (int i = 0; i < captures.size(); i++) {
+                ScreenshotCapture capture = captures.get(i);
+                try {
+                    process(capture, writtenFiles.get(i));
+                } catch (Exception e) {
+                    ScreenshotMetadataMod.LOGGER.error("Unexpected error in screenshot metadata processing", e);
+                }
+            }
+        } finally {
+            BATCH_RETRIES.remove();
+            int synced = PngChunkSplicer.endDeferredSync();
+            ScreenshotMetadataMod.LOGGER.debug("Processed burst of {} screenshots, synced {} files", captures.size(), synced);
+            scheduleRetryBatch(retries);
+        }
+    }
+
+    /**
+     * Called on the client thread when a screenshot is requested. Copies the game state
+     * into the capture so the worker never reads live game objects, and starts rendering
+     * the chunks for the single-pass encode. Screenshots are also published to the
+     * {@link SnapshotRing} for the external capture watcher.
+     */
+    public static void onCaptureRequested(ScreenshotCapture capture) {
+        capture.setTimelapseFrame(TimelapseScheduler.claimTriggeredFrame());
+        try {
+            MinecraftClient client = MinecraftClient.getInstance();
+            if (client == null || client.player == null) {
+                return;
+            }
+            // Timelapse frames only feed the sequence stream; screenshots only what their outputs read
+            ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+            MetadataRequest request = capture.getTimelapseFrame() != null
+                ? MetadataRequest.forTimelapse(config)
+                : MetadataRequest.forScreenshot(config);
+            MetadataSnapshot snapshot = MetadataCollector.captureSnapshot(client, request);
+            capture.setSnapshot(snapshot);
+            SinglePassMetadataInjector.prepare(capture);
+            if (capture.getTimelapseFrame() == null) {
+                SnapshotRing.publish(snapshot);
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not capture metadata snapshot for {}", capture, e);
+        }
+    }
+
+    /**
+     * Processes the screenshot metadata addition
+     */
+    private static void processScreenshotMetadata(ScreenshotCapture capture, File screenshotFile, MetadataSnapshot snapshot) {
+        try {
+            ScreenshotMetadataMod.LOGGER.debug("Processing screenshot metadata for {}...", capture);
+
+            // Names are resolved here, on the metadata worker; each writer formats what it reads.
+            // The snapshot is shared with the external watcher, so this screenshot's hash and
+            // tags go into a copy of its own.
+            ScreenshotMetadata metadata = snapshot.getMetadata().copy();
+            if (metadata.isEmpty()) {
+                ScreenshotMetadataMod.LOGGER.warn("No metadata collected");
+                return;
+            }
+
+            // A duplicate tag is newer than the chunks emitted during the encode
+            boolean tagged = DuplicateDetector.apply(capture, metadata);
+            screenshotFile = maybeRenameScreenshot(screenshotFile, metadata);
+            CapturedImage.save(capture, screenshotFile);
+
+            // Chunks already emitted during the vanilla encode do not need another rewrite
+            File finalFile = screenshotFile;
+            addMetadataToScreenshot(screenshotFile, metadata, snapshot.getSidecarContext(),
+                capture.isTextEmbeddedInEncode() && !tagged, capture.isXmpEmbeddedInEncode() && !tagged)
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        ScreenshotMetadataMod.LOGGER.info("Successfully added metadata to screenshot: {}", finalFile.getName());
+                    }
+                });
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Failed to process screenshot metadata", e);
+        }
+    }
+
+    /**
+     * Resolves the screenshot file when the write hook did not fire (e.g. a mapping
+     * mismatch on this Minecraft version). Prefers the allocated filename and only
+     * scans the screenshots directory when even that is unknown. Each step is polled
+     * on the {@link StageScheduler} under its own deadline.
+     */
+    private static CompletableFuture<File> resolveWithoutWriteHook(ScreenshotCapture capture) {
+        File target = capture.getTargetFile();
+        if (target != null) {
+            return awaitStable(target);
+        }
+        ScreenshotMetadataMod.LOGGER.debug("No filename was captured for {}, scanning screenshots directory", capture);
+        File gameDirectory = capture.getGameDirectory();
+        long capturedAfterMillis = capture.getRequestedAtMillis();
+        return StageScheduler.poll("discover",
+                () -> findNewestScreenshot(gameDirectory, capturedAfterMillis),
+                100L, 1000L, DISCOVER_TIMEOUT_MILLIS)
+            .handle((candidate, error) -> candidate != null
+                ? candidate
+                // Fallback: Check common locations if screenshot not found in screenshots dir
+                : findScreenshotInFallbackLocations(gameDirectory, capturedAfterMillis))
+            .thenCompose(candidate -> candidate != null
+                ? awaitStable(candidate)
+                : CompletableFuture.completedFuture(null));
+    }
+    
+    /**
+     * Finds the newest screenshot file in the screenshots directory written after the capture started
+     */
+    private static File findNewestScreenshot(File gameDirectory, long capturedAfterMillis) {
+        if (gameDirectory == null) {
+            return null;
+        }
+        File screenshotsDir = new File(gameDirectory, SCREENSHOTS_DIR);
+        if (!screenshotsDir.exists() || !screenshotsDir.isDirectory()) {
+            ScreenshotMetadataMod.LOGGER.warn("Screenshots directory not found: {}", screenshotsDir.getPath());
+            return null;
+        }
+        
+        File[] files = screenshotsDir.listFiles((dir, name) ->
+            name.toLowerCase().endsWith(".png") && !name.startsWith("."));
+
+        if (files == null || files.length == 0) {
+            return null;
+        }
+
+        return Arrays.stream(files)
+            .filter(f -> f.lastModified() >= capturedAfterMillis)
+            .max(Comparator.comparing(File::getName)
+                .thenComparingLong(File::lastModified))
+            .orElse(null);
+    }
+
+    /**
+     * Attempts to find screenshot in common fallback locations if primary method fails.
+     */
+    private static File findScreenshotInFallbackLocations(File gameDirectory, long capturedAfterMillis) {
+        if (gameDirectory == null) {
+            return null;
+        }
+        File[] fallbackDirs = {
+            gameDirectory,  // Game directory root
+            new File(System.getProperty("user.home"), "Downloads"),  // Downloads folder
+            new File(System.getProperty("java.io.tmpdir"))  // System temp directory
+        };
+
+        for (File fallbackDir : fallbackDirs) {
+            if (!fallbackDir.exists() || !fallbackDir.isDirectory()) {
+                continue;
+            }
+
+            File[] pngFiles = fallbackDir.listFiles((dir, name) ->
+                name.toLowerCase().endsWith(".png") && 
+                !name.startsWith(".") && 
+                new File(dir, name).lastModified() >= capturedAfterMillis);
+
+            if (pngFiles != null && pngFiles.length > 0) {
+                File newest = Arrays.stream(pngFiles)
+                    .max(Comparator.comparingLong(File::lastModified))
+                    .orElse(null);
+                
+                if (newest != null) {
+                    ScreenshotMetadataMod.LOGGER.debug("Found screenshot in fallback location: {}", newest.getAbsolutePath());
+                    return newest;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Completes with {@code file} once its size and modification time stop changing
+     * between two checks, or fails after {@link #STABILIZE_TIMEOUT_MILLIS}.
+     */
+    private static CompletableFuture<File> awaitStable(File file) {
+        // Only touched by the single timer thread
+        long[] previous = {-1L, -1L};
+        return StageScheduler.poll("stabilize", () -> {
+            long size = file.length();
+            long modified = file.lastModified();
+            boolean stable = size > 0L && size == previous[0] && modified == previous[1];
+            previous[0] = size;
+            previous[1] = modified;
+            return stable ? file : null;
+        }, STABLE_CHECK_MILLIS, STABLE_CHECK_MILLIS, STABILIZE_TIMEOUT_MILLIS);
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+    
+    /**
+     * Adds metadata to the screenshot using both PNG and XMP methods
+     */
+    public static CompletableFuture<Void> addMetadataToScreenshot(File screenshotFile,
+                                                                  ScreenshotMetadata metadata,
+                                                                  JsonSidecarContext sidecarContext) {
+        return addMetadataToScreenshot(screenshotFile, metadata, sidecarContext, false, false);
+    }
+
+    /**
+     * Adds metadata to the screenshot, skipping the PNG outputs that were already embedded during encoding.
+     * The sidecars are written before this returns; the returned future completes once the embedded
+     * metadata is written too, which may take further attempts scheduled on the pipeline.
+     */
+    public static CompletableFuture<Void> addMetadataToScreenshot(File screenshotFile,
+                                                ScreenshotMetadata metadata,
+                                                JsonSidecarContext sidecarContext,
+                                                boolean textAlreadyEmbedded,
+                                                boolean xmpAlreadyEmbedded) {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        // Add PNG text chunks and embedded XMP (compatible with screenshot-manager-enhanced) in one rewrite
+        boolean writeText = config.writePngMetadata && !textAlreadyEmbedded;
+        boolean writeXmp = config.writeEmbeddedXmp && !xmpAlreadyEmbedded;
+        CompletableFuture<Void> embedded = writeText || writeXmp
+            ? writeEmbeddedMetadata(screenshotFile, metadata, writeText, writeXmp, 1)
+            : CompletableFuture.completedFuture(null);
+        
+        // Create XMP sidecar file
+        if (config.writeXmpSidecar) {
+            try {
+                XmpSidecarWriter.writeSidecarFile(screenshotFile, metadata);
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.error("Failed to create XMP sidecar for {}", screenshotFile.getName(), e);
+            }
+        }
+
+        // Create JSON sidecar file for easy parsing
+        if (config.writeJsonSidecar) {
+            try {
+                JsonSidecarWriter.writeSidecarFile(screenshotFile, metadata, sidecarContext);
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.error("Failed to create JSON sidecar for {}", screenshotFile.getName(), e);
+            }
+        }
+
+        // Record the screenshot in the session catalog
+        if (config.writeCatalog) {
+            try {
+                ScreenshotCatalog.append(screenshotFile, metadata, sidecarContext);
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.error("Failed to queue catalog record for {}", screenshotFile.getName(), e);
+            }
+        }
+
+        // Index the file once the embedded metadata is in, so its size and time are final
+        if (config.indexScreenshots) {
+            embedded.whenComplete((ignored, error) -> ScreenshotIndex.update(screenshotFile, metadata));
+        }
+        return embedded;
+    }
+
+
+    private static File maybeRenameScreenshot(File screenshotFile, ScreenshotMetadata metadata) {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        if (screenshotFile == null || !config.renameScreenshots) {
+            return screenshotFile;
+        }
+        String template = config.screenshotNameTemplate;
+        if (template == null || template.isBlank()) {
+            return screenshotFile;
+        }
+
+        String baseName = applyTemplate(template, metadata);
+        baseName = sanitizeFileName(baseName);
+        if (baseName.isBlank()) {
+            return screenshotFile;
+        }
+
+        File parent = screenshotFile.getParentFile();
+        File target = new File(parent, baseName + ".png");
+        if (target.equals(screenshotFile)) {
+            return screenshotFile;
+        }
+
+        int suffix = 1;
+        while (target.exists()) {
+            target = new File(parent, baseName + "_" + suffix + ".png");
+            suffix++;
+        }
+
+        try {
+            Files.move(screenshotFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (Exception atomicFailure) {
+            try {
+                Files.move(screenshotFile.toPath(), target.toPath());
+                return target;
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.warn("Failed to rename screenshot {} to {}: {}",
+                    screenshotFile.getName(), target.getName(), e.getMessage());
+                return screenshotFile;
+            }
+        }
+    }
+
+    private static String applyTemplate(String template, ScreenshotMetadata metadata) {
+        String date = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String time = LocalTime.now().format(DateTimeFormatter.ofPattern("HH-mm-ss"));
+        String datetime = date + "_" + time;
+
+        String result = template;
+        result = result.replace("{date}", date);
+        result = result.replace("{time}", time);
+        result = result.replace("{datetime}", datetime);
+        result = result.replace("{dimension}", metadata.getText(MetadataKey.DIMENSION, "Unknown"));
+        result = result.replace("{biome}", metadata.getText(MetadataKey.BIOME, "Unknown"));
+        result = result.replace("{x}", metadata.getText(MetadataKey.X, "NA"));
+        result = result.replace("{y}", metadata.getText(MetadataKey.Y, "NA"));
+        result = result.replace("{z}", metadata.getText(MetadataKey.Z, "NA"));
+        result = result.replace("{world}", metadata.getText(MetadataKey.WORLD_NAME, "World"));
+        result = result.replace("{player}", metadata.getText(MetadataKey.USERNAME, "Player"));
+        return result;
+    }
+
+    private static String sanitizeFileName(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.replaceAll("[\\\\/:*?\"<>|]", "_").trim();
+    }
+
+    /**
+     * Writes the embedded chunks. A failed attempt is retried after a back-off on the
+     * {@link StageScheduler} as a new pipeline job, so no worker sleeps between attempts.
+     * Inside a batch the retry joins the batch's other retries instead.
+     */
+    private static CompletableFuture<Void> writeEmbeddedMetadata(File screenshotFile,
+                                                                 ScreenshotMetadata metadata,
+                                                                 boolean includeText,
+                                                                 boolean includeXmp,
+                                                                 int attempt) {
+        final boolean appendInPlace = ScreenshotMetadataConfig.get().getPngWriteStrategy()
+            == ScreenshotMetadataConfig.PngWriteStrategy.APPEND;
+        try {
+            PngEmbeddedMetadataWriter.writeMetadata(screenshotFile, metadata, includeText, includeXmp, appendInPlace);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            if (attempt >= MAX_WRITE_ATTEMPTS) {
+                ScreenshotMetadataMod.LOGGER.error("Failed to write embedded PNG metadata to {}", screenshotFile.getName());
+                return CompletableFuture.failedFuture(e);
+            }
+            ScreenshotMetadataMod.LOGGER.debug("Embedded metadata write attempt {} failed for {}: {}",
+                attempt, screenshotFile.getName(), e.getMessage());
+        }
+
+        List<RetryWrite> batchRetries = BATCH_RETRIES.get();
+        if (batchRetries != null) {
+            RetryWrite retry = new RetryWrite(screenshotFile, metadata, includeText, includeXmp, attempt + 1);
+            batchRetries.add(retry);
+            return retry.result;
+        }
+
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+        StageScheduler.delay(WRITE_RETRY_DELAY_MILLIS).whenComplete((ignored, error) -> {
+            if (error != null) {
+                retried.completeExceptionally(error);
+                return;
+            }
+            boolean accepted = MetadataPipeline.offer(screenshotFile.getAbsolutePath(),
+                PngChunks.estimateDecodedBytes(screenshotFile), false,
+                () -> writeEmbeddedMetadata(screenshotFile, metadata, includeText, includeXmp, attempt + 1)
+                    .whenComplete((done, failure) -> {
+                        if (failure != null) {
+                            retried.completeExceptionally(failure);
+                        } else {
+                            retried.complete(null);
+                        }
+                    }),
+                () -> retried.cancel(false));
+            if (!accepted) {
+                retried.completeExceptionally(new IOException("Retry rejected by the metadata pipeline"));
+            }
+        });
+        return retried;
+    }
+
+    /**
+     * Queues the failed writes of a batch as one job after the back-off, so their
+     * in-place appends are still synced together.
+     */
+    private static void scheduleRetryBatch(List<RetryWrite> retries) {
+        if (retries.isEmpty()) {
+            return;
+        }
+        long estimatedBytes = 0L;
+        for (RetryWrite retry : retries) {
+            estimatedBytes += PngChunks.estimateDecodedBytes(retry.file);
+        }
+        long batchBytes = estimatedBytes;
+        StageScheduler.delay(WRITE_RETRY_DELAY_MILLIS).whenComplete((ignored, error) -> {
+            if (error != null) {
+                retries.forEach(retry -> retry.result.completeExceptionally(error));
+                return;
+            }
+            boolean accepted = MetadataPipeline.offer("retry#" + RETRY_BATCH_IDS.incrementAndGet(), batchBytes, false,
+                () -> runRetryBatch(retries),
+                () -> retries.forEach(retry -> retry.result.cancel(false)));
+            if (!accepted) {
+                IOException rejected = new IOException("Retry rejected by the metadata pipeline");
+                retries.forEach(retry -> retry.result.completeExceptionally(rejected));
+            }
+        });
+    }
+
+    private static void runRetryBatch(List<RetryWrite> retries) {
+        List<RetryWrite> next = new ArrayList<>();
+        BATCH_RETRIES.set(next);
+        PngChunkSplicer.beginDeferredSync();
+        try {
+            for (RetryWrite retry : retries) {
+                writeEmbeddedMetadata(retry.file, retry.metadata, retry.includeText, retry.includeXmp, retry.attempt)
+                    .whenComplete((done, failure) -> {
+                        if (failure != null) {
+                            retry.result.completeExceptionally(failure);
+                        } else {
+                            retry.result.complete(null);
+                        }
+                    });
+            }
+        } finally {
+            BATCH_RETRIES.remove();
+            PngChunkSplicer.endDeferredSync();
+            scheduleRetryBatch(next);
+        }
+    }
+
+    private static final class RetryWrite {
+        private final File file;
+        private final ScreenshotMetadata metadata;
+        private final boolean includeText;
+        private final boolean includeXmp;
+        private final int attempt;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private RetryWrite(File file, ScreenshotMetadata metadata, boolean includeText, boolean includeXmp, int attempt) {
+            this.file = file;
+            this.metadata = metadata;
+            this.includeText = includeText;
+            this.includeXmp = includeXmp;
+            this.attempt = attempt;
+        }
+    }
+}
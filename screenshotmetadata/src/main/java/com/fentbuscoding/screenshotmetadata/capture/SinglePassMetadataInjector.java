@@ -0,0 +1,121 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunkInjectingChannel;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Emits the PNG text and XMP chunks while vanilla encodes a screenshot, so the
+ * file is written exactly once instead of being decoded and re-encoded afterwards.
+ *
+ * <p>The chunks are rendered on a metadata worker as soon as the screenshot is
+ * requested. The {@code NativeImage} write hooks, which all run on vanilla's IO worker
+ * for a given file, only pick up chunks that are already there; a file whose chunks are
+ * not ready gets its metadata after the write instead.</p>
+ */
+public final class SinglePassMetadataInjector {
+    private static final ThreadLocal<PendingInjection> PENDING = new ThreadLocal<>();
+
+    private SinglePassMetadataInjector() {
+    }
+
+    /**
+     * Queues rendering the metadata chunks of {@code capture}, which must already have its
+     * snapshot. Called on the client thread.
+     */
+    static void prepare(ScreenshotCapture capture) {
+        MetadataSnapshot snapshot = capture.getSnapshot();
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        if (snapshot == null || !config.singlePassPngMetadata || (!config.writePngMetadata && !config.writeEmbeddedXmp)) {
+            return;
+        }
+        boolean text = config.writePngMetadata;
+        boolean xmp = config.writeEmbeddedXmp;
+        // Optional: chunks that are dropped or late are written after the encode instead
+        MetadataPipeline.offer("chunks:" + capture, 0L, () -> {
+            try {
+                byte[] chunks = PngChunks.buildMetadataChunks(snapshot.getMetadata(), text, xmp);
+                capture.setPreparedChunks(new PreparedChunks(chunks, text, xmp));
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.debug("Could not prepare metadata chunks for {}: {}", capture, e.getMessage());
+            }
+        }, null);
+    }
+
+    /**
+     * Picks up the chunks prepared for {@code path} if it is a tracked screenshot and they
+     * are ready. Never resolves or serializes metadata itself.
+     */
+    public static void beginWrite(Path path) {
+        PENDING.remove();
+        ScreenshotCapture capture = ScreenshotCaptureTracker.findByTarget(path);
+        if (capture == null || !ScreenshotMetadataConfig.get().singlePassPngMetadata) {
+            return;
+        }
+        PreparedChunks prepared = capture.getPreparedChunks();
+        if (prepared == null) {
+            ScreenshotMetadataMod.LOGGER.debug("Metadata chunks for {} not ready, adding them after the write", capture);
+            return;
+        }
+        if (capture.getPerceptualHash() != null) {
+            // The hash was only just taken and is not in the prepared chunks
+            return;
+        }
+        PENDING.set(new PendingInjection(capture, prepared));
+    }
+
+    /**
+     * Wraps the encoder's output channel when chunks were prepared for the current write.
+     */
+    public static WritableByteChannel wrapChannel(WritableByteChannel channel) {
+        PendingInjection pending = PENDING.get();
+        if (pending == null || pending.channel != null) {
+            return channel;
+        }
+        pending.channel = new PngChunkInjectingChannel(channel, pending.prepared.chunks);
+        return pending.channel;
+    }
+
+    /**
+     * Records on the capture which chunks actually reached the file.
+     */
+    public static void endWrite() {
+        PendingInjection pending = PENDING.get();
+        PENDING.remove();
+        if (pending == null || pending.channel == null || !pending.channel.hasInjected()) {
+            return;
+        }
+        pending.capture.markEmbeddedInEncode(pending.prepared.text, pending.prepared.xmp);
+        ScreenshotMetadataMod.LOGGER.debug("Embedded metadata chunks for {} during encode", pending.capture);
+    }
+
+    /**
+     * Encoded chunks ready to be written during the encode, and which outputs they hold.
+     */
+    static final class PreparedChunks {
+        private final byte[] chunks;
+        private final boolean text;
+        private final boolean xmp;
+
+        private PreparedChunks(byte[] chunks, boolean text, boolean xmp) {
+            this.chunks = chunks;
+            this.text = text;
+            this.xmp = xmp;
+        }
+    }
+
+    private static final class PendingInjection {
+        private final ScreenshotCapture capture;
+        private final PreparedChunks prepared;
+        private PngChunkInjectingChannel channel;
+
+        private PendingInjection(ScreenshotCapture capture, PreparedChunks prepared) {
+            this.capture = capture;
+            this.prepared = prepared;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of recent screenshot snapshots, which the external capture watcher
+ * searches for the one taken closest to a new file. Publishing never allocates or blocks;
+ * a slot is simply overwritten once the ring wraps around.
+ *
+ * <p>Only a lookup aid: each {@link ScreenshotCapture} holds its own snapshot, so a busy
+ * ring can never take away the game state of a screenshot that is still pending.
+ * Timelapse frames are not published here.</p>
+ */
+public final class SnapshotRing {
+    private static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    private static final AtomicReferenceArray<MetadataSnapshot> SLOTS = new AtomicReferenceArray<>(SIZE);
+    private static final AtomicLong NEXT_SLOT = new AtomicLong();
+
+    private SnapshotRing() {
+    }
+
+    /**
+     * Publishes a snapshot for {@link #findNearest}.
+     */
+    public static void publish(MetadataSnapshot snapshot) {
+        SLOTS.set((int) (NEXT_SLOT.getAndIncrement() & MASK), snapshot);
+    }
+
+    /**
+     * Finds the snapshot captured closest to {@code timestampMillis}, within {@code windowMillis}.
+     */
+    public static MetadataSnapshot findNearest(long timestampMillis, long windowMillis) {
+        MetadataSnapshot nearest = null;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < SIZE; i++) {
+            MetadataSnapshot snapshot = SLOTS.get(i);
+            if (snapshot == null) {
+                continue;
+            }
+            long distance = Math.abs(snapshot.getCapturedAtMillis() - timestampMillis);
+            if (distance <= windowMillis && distance < bestDistance) {
+                nearest = snapshot;
+                bestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,137 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Timer for the waiting parts of the metadata flow: polling for a file, letting it
+ * settle and backing off between write attempts.
+ *
+ * <p>A wait is a task scheduled on one shared daemon thread instead of a sleeping
+ * worker, so a slow or stuck file never pins a metadata worker. Every stage gets a
+ * deadline; when it passes the stage fails with a {@link TimeoutException} and its
+ * pending timer is cancelled. The actual IO still runs on {@link MetadataPipeline}.</p>
+ */
+public final class StageScheduler {
+    private static final double BACKOFF_MULTIPLIER = 1.5;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Screenshot Metadata Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Set<CompletableFuture<?>> IN_FLIGHT = ConcurrentHashMap.newKeySet();
+
+    private StageScheduler() {
+    }
+
+    /**
+     * Completes after {@code delayMillis}; cancelling the result cancels the timer.
+     */
+    public static CompletableFuture<Void> delay(long delayMillis) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        schedule(result, () -> result.complete(null), delayMillis);
+        return track(result);
+    }
+
+    /**
+     * Fails {@code future} with a {@link TimeoutException} naming {@code stage} if it is
+     * not done within {@code timeoutMillis}.
+     */
+    public static <T> CompletableFuture<T> within(CompletableFuture<T> future, long timeoutMillis, String stage) {
+        schedule(future, () -> {
+            if (future.completeExceptionally(new TimeoutException(stage + " timed out after " + timeoutMillis + " ms"))) {
+                ScreenshotMetadataMod.LOGGER.debug("Metadata stage '{}' timed out after {} ms", stage, timeoutMillis);
+            }
+        }, timeoutMillis);
+        return track(future);
+    }
+
+    /**
+     * Calls {@code probe} on the timer thread, first right away and then after a delay
+     * that starts at {@code intervalMillis} and grows up to {@code maxIntervalMillis},
+     * until it returns a non-null value; fails once {@code timeoutMillis} have passed.
+     * Probes must be cheap (a stat or a directory listing); they never sleep.
+     */
+    public static <T> CompletableFuture<T> poll(String stage,
+                                                Supplier<T> probe,
+                                                long intervalMillis,
+                                                long maxIntervalMillis,
+                                                long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pollAttempt(result, probe, 0L, intervalMillis, maxIntervalMillis);
+        return within(result, timeoutMillis, stage);
+    }
+
+    /**
+     * Cancels every pending wait. Called when the pipeline shuts down so no timer outlives it.
+     */
+    public static void cancelAll() {
+        int cancelled = 0;
+        for (CompletableFuture<?> future : IN_FLIGHT) {
+            if (future.cancel(false)) {
+                cancelled++;
+            }
+        }
+        TIMER.shutdownNow();
+        if (cancelled > 0) {
+            ScreenshotMetadataMod.LOGGER.debug("Cancelled {} pending metadata stage(s)", cancelled);
+        }
+    }
+
+    private static <T> void pollAttempt(CompletableFuture<T> result,
+                                        Supplier<T> probe,
+                                        long delayMillis,
+                                        long nextDelayMillis,
+                                        long maxDelayMillis) {
+        schedule(result, () -> {
+            if (result.isDone()) {
+                return;
+            }
+            T value;
+            try {
+                value = probe.get();
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (value != null) {
+                result.complete(value);
+                return;
+            }
+            long following = Math.min((long) (nextDelayMillis * BACKOFF_MULTIPLIER), maxDelayMillis);
+            pollAttempt(result, probe, nextDelayMillis, following, maxDelayMillis);
+        }, delayMillis);
+    }
+
+    private static void schedule(CompletableFuture<?> owner, Runnable task, long delayMillis) {
+        if (owner.isDone()) {
+            return;
+        }
+        ScheduledFuture<?> scheduled;
+        try {
+            scheduled = TIMER.schedule(task, Math.max(0L, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // Timer already shut down
+            owner.cancel(false);
+            return;
+        }
+        owner.whenComplete((value, error) -> scheduled.cancel(false));
+    }
+
+    private static <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (IN_FLIGHT.add(future)) {
+            future.whenComplete((value, error) -> IN_FLIGHT.remove(future));
+        }
+        return future;
+    }
+}
@@ -0,0 +1,185 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.util.ScreenshotRecorder;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes screenshots on a fixed schedule of world ticks.
+ *
+ * <p>Frames are aligned to multiples of the interval in world time, so a sequence
+ * stops while a singleplayer game is paused and frames from two sequences with the
+ * same interval line up. Timelapse frames skip renaming and the per-file sidecars;
+ * their metadata goes to the sequence stream written by {@link TimelapseSequence}.
+ * When too many frames are still being processed the next one is skipped rather than
+ * queued, and every skipped frame is recorded in the stream.</p>
+ */
+public final class TimelapseScheduler {
+    private static final String SCREENSHOTS_DIR = "screenshots";
+    private static final AtomicLong NEXT_SEQUENCE_ID = new AtomicLong(1L);
+
+    private static volatile boolean enabled;
+    private static volatile int intervalTicks = 100;
+    private static volatile int maxPendingFrames = 4;
+
+    // Client thread only
+    private static TimelapseSequence active;
+    private static long nextFrameTick;
+    private static int nextFrameIndex;
+    private static TimelapseSequence.Frame triggeredFrame;
+
+    private TimelapseScheduler() {
+    }
+
+    /**
+     * Re-reads the timelapse settings; a running sequence ends when disabled or when its interval changes.
+     */
+    public static void applyConfig() {
+        ScreenshotMetadataConfig.Snapshot config = ScreenshotMetadataConfig.get();
+        enabled = config.timelapseEnabled;
+        intervalTicks = config.timelapseIntervalTicks;
+        maxPendingFrames = config.timelapseMaxPendingFrames;
+    }
+
+    /**
+     * Whether a sequence is currently being recorded.
+     */
+    public static boolean isRunning() {
+        return active != null;
+    }
+
+    /**
+     * Called at the end of every client tick.
+     */
+    public static void onClientTick(MinecraftClient client) {
+        try {
+            tick(client);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Timelapse tick failed, stopping sequence", e);
+            stop();
+        }
+    }
+
+    private static void tick(MinecraftClient client) {
+        if (client == null || client.world == null || client.player == null) {
+            stop();
+            return;
+        }
+        if (!enabled || (active != null && active.getIntervalTicks() != intervalTicks)) {
+            stop();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        long worldTick = client.world.getTime();
+        int interval = intervalTicks;
+        if (active == null) {
+            File screenshotsDir = new File(client.runDirectory, SCREENSHOTS_DIR);
+            active = new TimelapseSequence(NEXT_SEQUENCE_ID.getAndIncrement(), screenshotsDir, interval, worldTick);
+            nextFrameIndex = 0;
+            nextFrameTick = alignUp(worldTick, interval);
+            ScreenshotMetadataMod.LOGGER.info("Started {} every {} ticks, writing {}",
+                active, interval, active.getStreamFile().getName());
+        }
+        if (worldTick < nextFrameTick - interval) {
+            // World time went backwards (another world or server), re-align without counting drops
+            nextFrameTick = alignUp(worldTick, interval);
+        }
+        if (worldTick < nextFrameTick) {
+            return;
+        }
+
+        // Aligned ticks that passed without a tick of ours (client lag) are missed frames
+        int missed = (int) Math.min(Integer.MAX_VALUE, (worldTick - nextFrameTick) / interval);
+        if (missed > 0) {
+            active.recordDropped(nextFrameIndex, nextFrameTick, missed, "missed_ticks");
+            nextFrameIndex += missed;
+        }
+        int index = nextFrameIndex++;
+        long frameTick = nextFrameTick + (long) missed * interval;
+        nextFrameTick = frameTick + interval;
+
+        if (active.getPendingFrames() >= maxPendingFrames) {
+            active.recordDropped(index, frameTick, 1, "pipeline_behind");
+            return;
+        }
+        trigger(client, active.beginFrame(index, frameTick));
+    }
+
+    private static void trigger(MinecraftClient client, TimelapseSequence.Frame frame) {
+        triggeredFrame = frame;
+        try {
+            ScreenshotRecorder.saveScreenshot(client.runDirectory, client.getFramebuffer(),
+                message -> ScreenshotMetadataMod.LOGGER.debug("Timelapse frame {}: {}", frame.getIndex(), message.getString()));
+        } finally {
+            if (triggeredFrame != null) {
+                // The capture hook never claimed the frame, so no screenshot is coming for it
+                triggeredFrame = null;
+                frame.getSequence().dropFrame(frame, "capture_failed");
+            }
+        }
+    }
+
+    /**
+     * Hands the frame being triggered to the capture created for it. Called on the client
+     * thread from the screenshot hook; returns null for screenshots the user took.
+     */
+    static TimelapseSequence.Frame claimTriggeredFrame() {
+        TimelapseSequence.Frame frame = triggeredFrame;
+        triggeredFrame = null;
+        return frame;
+    }
+
+    /**
+     * Queues a written timelapse frame. Frames are optional pipeline jobs, so under
+     * pressure they are the first to go and show up as dropped in the stream.
+     */
+    static void submitFrame(ScreenshotCapture capture, TimelapseSequence.Frame frame, File writtenFile) {
+        TimelapseSequence sequence = frame.getSequence();
+        if (writtenFile == null) {
+            ScreenshotCaptureTracker.discard(capture);
+            sequence.dropFrame(frame, "write_timeout");
+            return;
+        }
+        boolean accepted = MetadataPipeline.offer(writtenFile.getAbsolutePath(),
+            PngChunks.estimateDecodedBytes(writtenFile), true,
+            () -> processFrame(capture, frame, writtenFile),
+            () -> sequence.dropFrame(frame, "evicted"));
+        if (!accepted) {
+            sequence.dropFrame(frame, "pipeline_full");
+        }
+    }
+
+    private static void processFrame(ScreenshotCapture capture, TimelapseSequence.Frame frame, File writtenFile) {
+        TimelapseSequence sequence = frame.getSequence();
+        try {
+            MetadataSnapshot snapshot = capture.getSnapshot();
+            ScreenshotMetadata metadata = snapshot != null ? snapshot.getMetadata() : null;
+            sequence.completeFrame(frame, writtenFile, metadata);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Failed to record timelapse frame {}", frame.getIndex(), e);
+            sequence.dropFrame(frame, "error");
+        }
+    }
+
+    private static void stop() {
+        if (active == null) {
+            return;
+        }
+        active.finish();
+        active = null;
+        triggeredFrame = null;
+    }
+
+    private static long alignUp(long tick, int interval) {
+        long remainder = Math.floorMod(tick, (long) interval);
+        return remainder == 0L ? tick : tick + (interval - remainder);
+    }
+}
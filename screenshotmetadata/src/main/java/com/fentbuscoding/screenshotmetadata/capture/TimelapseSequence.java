@@ -0,0 +1,261 @@
+package com.fentbuscoding.screenshotmetadata.capture;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * One running timelapse and its metadata stream.
+ *
+ * <p>Instead of a full XMP and JSON sidecar per frame, every sequence writes a single
+ * {@code timelapse_<start>.jsonl} file next to the screenshots. The first line describes
+ * the sequence; each frame line carries only the metadata keys that changed since the
+ * line before it, so the first frame holds the full set and later frames are a handful
+ * of keys. Frames that were skipped are written as {@code dropped} lines and the final
+ * line totals both.</p>
+ */
+public final class TimelapseSequence {
+    private static final Gson GSON = new Gson();
+    private static final int FORMAT_VERSION = 1;
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
+
+    private final long id;
+    private final File streamFile;
+    private final int intervalTicks;
+    private final Map<String, String> previous = new HashMap<>();
+
+    private BufferedWriter writer;
+    private int pending;
+    private int framesWritten;
+    private int framesDropped;
+    private boolean finishing;
+    private boolean closed;
+
+    TimelapseSequence(long id, File screenshotsDir, int intervalTicks, long startTick) {
+        this.id = id;
+        this.intervalTicks = intervalTicks;
+        this.streamFile = new File(screenshotsDir,
+            "timelapse_" + LocalDateTime.now().format(FILE_NAME_FORMAT) + ".jsonl");
+
+        JsonObject header = new JsonObject();
+        header.addProperty("type", "sequence");
+        header.addProperty("version", FORMAT_VERSION);
+        header.addProperty("started", Instant.now().toString());
+        header.addProperty("intervalTicks", intervalTicks);
+        header.addProperty("startTick", startTick);
+        header.addProperty("modVersion", ScreenshotMetadataMod.MOD_VERSION);
+        writeLine(header);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public File getStreamFile() {
+        return streamFile;
+    }
+
+    public int getIntervalTicks() {
+        return intervalTicks;
+    }
+
+    /**
+     * Frames captured but not yet written to the stream.
+     */
+    public synchronized int getPendingFrames() {
+        return pending;
+    }
+
+    public synchronized int getFramesWritten() {
+        return framesWritten;
+    }
+
+    public synchronized int getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * Registers a frame that is about to be captured.
+     */
+    synchronized Frame beginFrame(int index, long tick) {
+        pending++;
+        return new Frame(this, index, tick);
+    }
+
+    /**
+     * Appends a frame, writing only the entries that differ from the previous frame.
+     */
+    synchronized void completeFrame(Frame frame, File file, ScreenshotMetadata frameMetadata) {
+        JsonObject line = new JsonObject();
+        line.addProperty("type", "frame");
+        line.addProperty("frame", frame.index);
+        line.addProperty("tick", frame.tick);
+        line.addProperty("file", file.getName());
+
+        JsonObject changed = new JsonObject();
+        JsonArray removed = new JsonArray();
+        if (frameMetadata != null) {
+            Map<String, String> metadata = frameMetadata.asMap();
+            for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                if (!Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                    changed.addProperty(entry.getKey(), entry.getValue());
+                }
+            }
+            for (String key : previous.keySet()) {
+                if (!metadata.containsKey(key)) {
+                    removed.add(key);
+                }
+            }
+            previous.clear();
+            previous.putAll(metadata);
+        }
+        line.add("changed", changed);
+        if (!removed.isEmpty()) {
+            line.add("removed", removed);
+        }
+
+        framesWritten++;
+        writeLine(line);
+        release();
+    }
+
+    /**
+     * Records a frame that was captured but could not be processed.
+     */
+    synchronized void dropFrame(Frame frame, String reason) {
+        recordDropped(frame.index, frame.tick, 1, reason);
+        release();
+    }
+
+    /**
+     * Records frames that were never captured, e.g. because the pipeline was behind.
+     */
+    synchronized void recordDropped(int index, long tick, int count, String reason) {
+        if (count <= 0) {
+            return;
+        }
+        framesDropped += count;
+        JsonObject line = new JsonObject();
+        line.addProperty("type", "dropped");
+        line.addProperty("frame", index);
+        line.addProperty("tick", tick);
+        if (count > 1) {
+            line.addProperty("count", count);
+        }
+        line.addProperty("reason", reason);
+        writeLine(line);
+        ScreenshotMetadataMod.LOGGER.debug("Timelapse #{} dropped {} frame(s) at tick {}: {}", id, count, tick, reason);
+    }
+
+    /**
+     * Stops the sequence; the stream is closed once the frames still in flight are written.
+     */
+    synchronized void finish() {
+        finishing = true;
+        if (pending == 0) {
+            close();
+        }
+    }
+
+    private void release() {
+        pending = Math.max(0, pending - 1);
+        if (finishing && pending == 0) {
+            close();
+        }
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        JsonObject footer = new JsonObject();
+        footer.addProperty("type", "end");
+        footer.addProperty("ended", Instant.now().toString());
+        footer.addProperty("frames", framesWritten);
+        footer.addProperty("dropped", framesDropped);
+        writeLine(footer);
+        closed = true;
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Failed to close timelapse stream {}: {}", streamFile.getName(), e.getMessage());
+        }
+        writer = null;
+
+        if (framesDropped > 0) {
+            ScreenshotMetadataMod.LOGGER.warn("Timelapse #{} finished: {} frame(s) written, {} dropped because capture fell behind ({})",
+                id, framesWritten, framesDropped, streamFile.getName());
+        } else {
+            ScreenshotMetadataMod.LOGGER.info("Timelapse #{} finished: {} frame(s) written ({})",
+                id, framesWritten, streamFile.getName());
+        }
+    }
+
+    private void writeLine(JsonObject line) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(streamFile.getParentFile().toPath());
+                writer = Files.newBufferedWriter(streamFile.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(GSON.toJson(line));
+            writer.newLine();
+            // One flush per line keeps the stream readable if the game exits mid-sequence
+            writer.flush();
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Failed to write timelapse stream {}: {}", streamFile.getName(), e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "timelapse#" + id;
+    }
+
+    /**
+     * A frame the scheduler triggered, attached to its {@link ScreenshotCapture}.
+     */
+    public static final class Frame {
+        private final TimelapseSequence sequence;
+        private final int index;
+        private final long tick;
+
+        private Frame(TimelapseSequence sequence, int index, long tick) {
+            this.sequence = sequence;
+            this.index = index;
+            this.tick = tick;
+        }
+
+        public TimelapseSequence getSequence() {
+            return sequence;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.fentbuscoding.screenshotmetadata.catalog;
+
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+
+import java.nio.file.Path;
+
+/**
+ * One screenshot record read back from a catalog file.
+ */
+public final class CatalogEntry {
+    private final Path screenshot;
+    private final ScreenshotMetadata metadata;
+
+    CatalogEntry(Path screenshot, ScreenshotMetadata metadata) {
+        this.screenshot = screenshot;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Where the screenshot was when it was recorded.
+     */
+    public Path getScreenshot() {
+        return screenshot;
+    }
+
+    /**
+     * The recorded metadata, with numbers and flags restored to their typed slots and the
+     * modpack context attached if one was recorded.
+     */
+    public ScreenshotMetadata getMetadata() {
+        return metadata;
+    }
+}
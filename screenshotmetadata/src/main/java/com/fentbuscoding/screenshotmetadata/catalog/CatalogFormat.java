@@ -0,0 +1,111 @@
+package com.fentbuscoding.screenshotmetadata.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of a catalog file.
+ *
+ * <p>A file starts with {@link #MAGIC} and a version byte, followed by records. Every
+ * record is framed as a 4-byte big-endian length, the CRC32 of the body, and the body:
+ * a type byte and its payload. A reader stops at the first record that is cut short or
+ * fails its checksum, so a crash mid-append loses at most that record.</p>
+ *
+ * <ul>
+ *   <li>{@link #RECORD_STRING}: adds a string to the file's dictionary; ids count up
+ *   from 0 in file order.</li>
+ *   <li>{@link #RECORD_CONTEXT}: a modpack context (fingerprint, shader pack, mod count,
+ *   truncation flag, resource packs, mods); ids count up from 0 in file order.</li>
+ *   <li>{@link #RECORD_SCREENSHOT}: the screenshot path, the context id plus one (0 for
+ *   none), and its entries. An entry is the {@code MetadataKey} ordinal plus one (0 for an
+ *   entry outside the schema, followed by its name), a value tag and the value.</li>
+ * </ul>
+ *
+ * <p>Numbers are unsigned LEB128 varints (zigzag for signed values) and strings are a
+ * varint byte length followed by UTF-8.</p>
+ */
+final class CatalogFormat {
+    static final byte[] MAGIC = {'S', 'M', 'C', 'A', 'T', 'L', 'O', 'G'};
+    static final int VERSION = 1;
+    static final String EXTENSION = ".smcat";
+
+    /** Length and CRC32 in front of every record body. */
+    static final int FRAME_BYTES = 8;
+    /** Upper bound for one record body; anything larger is treated as corruption. */
+    static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    static final int RECORD_STRING = 1;
+    static final int RECORD_CONTEXT = 2;
+    static final int RECORD_SCREENSHOT = 3;
+
+    static final int VALUE_TEXT = 0;
+    static final int VALUE_DICTIONARY = 1;
+    static final int VALUE_LONG = 2;
+    static final int VALUE_FLOAT = 3;
+    static final int VALUE_FALSE = 4;
+    static final int VALUE_TRUE = 5;
+
+    /** Longest text value that goes into the dictionary; longer text is written inline. */
+    static final int MAX_DICTIONARY_LENGTH = 64;
+
+    private CatalogFormat() {
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeSignedVarint(ByteArrayOutputStream out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    static long readVarint(ByteBuffer in) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    static long readSignedVarint(ByteBuffer in) {
+        long raw = readVarint(in);
+        return (raw >>> 1) ^ -(raw & 1L);
+    }
+
+    static int readLength(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length < 0L || length > in.remaining()) {
+            throw new IllegalArgumentException("Length " + length + " past end of record");
+        }
+        return (int) length;
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = readLength(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,173 @@
+package com.fentbuscoding.screenshotmetadata.catalog;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the screenshot records of a catalog file back into {@link ScreenshotMetadata}.
+ */
+public final class CatalogReader {
+    private static final MetadataKey[] KEYS = MetadataKey.values();
+
+    private CatalogReader() {
+    }
+
+    /**
+     * Passes every intact screenshot record of {@code file} to {@code consumer}, in the
+     * order they were appended. Reading stops quietly at a torn or corrupt record.
+     *
+     * @param baseDir Folder that relative screenshot paths are resolved against
+     * @return The number of records read
+     * @throws IOException if the file cannot be read or is not a catalog
+     */
+    public static int read(Path file, Path baseDir, Consumer<CatalogEntry> consumer) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int headerLength = CatalogFormat.MAGIC.length + 1;
+        if (bytes.length < headerLength
+            || !Arrays.equals(bytes, 0, CatalogFormat.MAGIC.length, CatalogFormat.MAGIC, 0, CatalogFormat.MAGIC.length)) {
+            throw new IOException("Not a screenshot catalog: " + file.getFileName());
+        }
+        int version = bytes[CatalogFormat.MAGIC.length];
+        if (version != CatalogFormat.VERSION) {
+            throw new IOException("Unsupported catalog version " + version + ": " + file.getFileName());
+        }
+        in.position(headerLength);
+
+        List<String> dictionary = new ArrayList<>();
+        List<JsonSidecarContext> contexts = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        int count = 0;
+        while (in.remaining() >= CatalogFormat.FRAME_BYTES) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > CatalogFormat.MAX_RECORD_BYTES || length > in.remaining()) {
+                ScreenshotMetadataMod.LOGGER.debug("Catalog {} ends with a partial record", file.getFileName());
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, in.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                ScreenshotMetadataMod.LOGGER.warn("Catalog {} has a corrupt record at byte {}, ignoring the rest",
+                    file.getFileName(), in.position() - CatalogFormat.FRAME_BYTES);
+                break;
+            }
+            ByteBuffer record = in.slice(in.position(), length);
+            in.position(in.position() + length);
+            try {
+                switch (record.get()) {
+                    case CatalogFormat.RECORD_STRING -> dictionary.add(CatalogFormat.readString(record));
+                    case CatalogFormat.RECORD_CONTEXT -> contexts.add(readContext(record));
+                    case CatalogFormat.RECORD_SCREENSHOT -> {
+                        consumer.accept(readScreenshot(record, baseDir, dictionary, contexts));
+                        count++;
+                    }
+                    default -> {
+                        // Record type from a newer version; skip it
+                    }
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Catalog {} has an unreadable record, ignoring the rest: {}",
+                    file.getFileName(), e.getMessage());
+                break;
+            }
+        }
+        return count;
+    }
+
+    private static CatalogEntry readScreenshot(ByteBuffer record,
+                                               Path baseDir,
+                                               List<String> dictionary,
+                                               List<JsonSidecarContext> contexts) {
+        String storedPath = CatalogFormat.readString(record);
+        Path path = Path.of(storedPath);
+        Path screenshot = path.isAbsolute() || baseDir == null ? path : baseDir.resolve(path);
+
+        ScreenshotMetadata metadata = new ScreenshotMetadata();
+        int contextRef = (int) CatalogFormat.readVarint(record);
+        if (contextRef > 0) {
+            metadata.setModpackContext(contexts.get(contextRef - 1));
+        }
+        long count = CatalogFormat.readVarint(record);
+        for (long i = 0; i < count; i++) {
+            int keyRef = (int) CatalogFormat.readVarint(record);
+            if (keyRef == 0) {
+                String name = CatalogFormat.readString(record);
+                int tag = record.get();
+                metadata.putExtra(name, readText(record, tag, dictionary));
+                continue;
+            }
+            MetadataKey key = keyRef <= KEYS.length ? KEYS[keyRef - 1] : null;
+            int tag = record.get();
+            switch (tag) {
+                case CatalogFormat.VALUE_LONG -> {
+                    long value = CatalogFormat.readSignedVarint(record);
+                    if (key != null) {
+                        metadata.setLong(key, value);
+                    }
+                }
+                case CatalogFormat.VALUE_FLOAT -> {
+                    float value = Float.intBitsToFloat(record.getInt());
+                    if (key != null) {
+                        metadata.setFloat(key, value);
+                    }
+                }
+                case CatalogFormat.VALUE_TRUE, CatalogFormat.VALUE_FALSE -> {
+                    if (key != null) {
+                        metadata.setBoolean(key, tag == CatalogFormat.VALUE_TRUE);
+                    }
+                }
+                default -> {
+                    String value = readText(record, tag, dictionary);
+                    if (key != null) {
+                        metadata.setText(key, value);
+                    }
+                }
+            }
+        }
+        return new CatalogEntry(screenshot, metadata);
+    }
+
+    private static String readText(ByteBuffer record, int tag, List<String> dictionary) {
+        return switch (tag) {
+            case CatalogFormat.VALUE_TEXT -> CatalogFormat.readString(record);
+            case CatalogFormat.VALUE_DICTIONARY -> dictionary.get((int) CatalogFormat.readVarint(record));
+            default -> throw new IllegalArgumentException("Unknown value tag " + tag);
+        };
+    }
+
+    private static JsonSidecarContext readContext(ByteBuffer record) {
+        String fingerprint = record.get() != 0 ? CatalogFormat.readString(record) : null;
+        String shaderPack = record.get() != 0 ? CatalogFormat.readString(record) : null;
+        int modCount = (int) CatalogFormat.readSignedVarint(record);
+        boolean truncated = record.get() != 0;
+        List<String> resourcePacks = readStrings(record);
+        List<String> mods = readStrings(record);
+        return new JsonSidecarContext(resourcePacks, shaderPack, mods, modCount, truncated, fingerprint);
+    }
+
+    private static List<String> readStrings(ByteBuffer record) {
+        int count = (int) CatalogFormat.readVarint(record);
+        if (count < 0 || count > record.remaining()) {
+            throw new IllegalArgumentException("Bad list length " + count);
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(CatalogFormat.readString(record));
+        }
+        return List.copyOf(values);
+    }
+}
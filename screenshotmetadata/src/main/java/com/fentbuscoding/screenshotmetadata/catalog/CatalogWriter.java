@@ -0,0 +1,249 @@
+package com.fentbuscoding.screenshotmetadata.catalog;
+
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One open catalog file. Records are encoded into a group buffer by {@link #append} and
+ * reach the file in a single write and sync on {@link #commit}. Only the catalog's
+ * committer thread uses an instance.
+ */
+final class CatalogWriter implements Closeable {
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
+    private static final MetadataKey[] KEYS = MetadataKey.values();
+
+    private final Path file;
+    private final Path baseDir;
+    private final FileChannel channel;
+    private final boolean useDictionary;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    // Contexts are shared between screenshots, so identity is enough to spot repeats
+    private final Map<JsonSidecarContext, Integer> contexts = new IdentityHashMap<>();
+    private final ByteArrayOutputStream group = new ByteArrayOutputStream(8192);
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(128);
+    private final CRC32 crc = new CRC32();
+    private int pending;
+
+    private CatalogWriter(Path file, Path baseDir, FileChannel channel, boolean useDictionary) {
+        this.file = file;
+        this.baseDir = baseDir;
+        this.channel = channel;
+        this.useDictionary = useDictionary;
+    }
+
+    /**
+     * Creates a new catalog file for this session in {@code dir}.
+     *
+     * @param baseDir Screenshot paths under this folder are stored relative to it
+     */
+    static CatalogWriter create(Path dir, Path baseDir, boolean useDictionary) throws IOException {
+        Files.createDirectories(dir);
+        String stamp = LocalDateTime.now().format(FILE_NAME_FORMAT);
+        for (int attempt = 1; ; attempt++) {
+            Path file = dir.resolve("session_" + stamp + (attempt > 1 ? "_" + attempt : "") + CatalogFormat.EXTENSION);
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                if (attempt >= 100) {
+                    throw e;
+                }
+                continue;
+            }
+            ByteBuffer header = ByteBuffer.allocate(CatalogFormat.MAGIC.length + 1);
+            header.put(CatalogFormat.MAGIC).put((byte) CatalogFormat.VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            return new CatalogWriter(file, baseDir, channel, useDictionary);
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Encodes the record for one screenshot, plus any dictionary or context records it
+     * refers to, into the pending group.
+     */
+    void append(Path screenshot, ScreenshotMetadata metadata, JsonSidecarContext context) {
+        int contextRef = context != null ? contextId(context) + 1 : 0;
+
+        List<Map.Entry<String, String>> extras = List.copyOf(metadata.getExtras().entrySet());
+        int count = 0;
+        for (MetadataKey key : KEYS) {
+            if (metadata.has(key)) {
+                count++;
+            }
+        }
+        for (Map.Entry<String, String> extra : extras) {
+            if (!isShadowed(metadata, extra.getKey())) {
+                count++;
+            }
+        }
+
+        body.reset();
+        body.write(CatalogFormat.RECORD_SCREENSHOT);
+        CatalogFormat.writeString(body, storedPath(screenshot));
+        CatalogFormat.writeVarint(body, contextRef);
+        CatalogFormat.writeVarint(body, count);
+        for (MetadataKey key : KEYS) {
+            if (metadata.has(key)) {
+                CatalogFormat.writeVarint(body, key.ordinal() + 1L);
+                writeValue(metadata, key);
+            }
+        }
+        for (Map.Entry<String, String> extra : extras) {
+            if (!isShadowed(metadata, extra.getKey())) {
+                CatalogFormat.writeVarint(body, 0L);
+                CatalogFormat.writeString(body, extra.getKey());
+                writeText(extra.getValue());
+            }
+        }
+        frame(body);
+        pending++;
+    }
+
+    /**
+     * Writes the pending group with one write and syncs it to disk.
+     *
+     * @return The number of screenshot records committed
+     */
+    int commit() throws IOException {
+        int committed = pending;
+        if (group.size() > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(group.toByteArray());
+            group.reset();
+            pending = 0;
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        return committed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeValue(ScreenshotMetadata metadata, MetadataKey key) {
+        if (!metadata.hasNumber(key)) {
+            writeText(metadata.getText(key));
+            return;
+        }
+        switch (key.kind) {
+            case BOOLEAN -> body.write(metadata.getBoolean(key) ? CatalogFormat.VALUE_TRUE : CatalogFormat.VALUE_FALSE);
+            case DECIMAL_1, DECIMAL_2 -> {
+                body.write(CatalogFormat.VALUE_FLOAT);
+                CatalogFormat.writeInt(body, Float.floatToRawIntBits(metadata.getFloat(key)));
+            }
+            default -> {
+                body.write(CatalogFormat.VALUE_LONG);
+                CatalogFormat.writeSignedVarint(body, metadata.getLong(key));
+            }
+        }
+    }
+
+    private void writeText(String value) {
+        String text = value != null ? value : "";
+        if (useDictionary && text.length() <= CatalogFormat.MAX_DICTIONARY_LENGTH) {
+            body.write(CatalogFormat.VALUE_DICTIONARY);
+            CatalogFormat.writeVarint(body, stringId(text));
+        } else {
+            body.write(CatalogFormat.VALUE_TEXT);
+            CatalogFormat.writeString(body, text);
+        }
+    }
+
+    private int stringId(String text) {
+        Integer id = dictionary.get(text);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(text, id);
+            scratch.reset();
+            scratch.write(CatalogFormat.RECORD_STRING);
+            CatalogFormat.writeString(scratch, text);
+            frame(scratch);
+        }
+        return id;
+    }
+
+    private int contextId(JsonSidecarContext context) {
+        Integer id = contexts.get(context);
+        if (id == null) {
+            id = contexts.size();
+            contexts.put(context, id);
+            scratch.reset();
+            scratch.write(CatalogFormat.RECORD_CONTEXT);
+            writeOptionalString(context.getFingerprint());
+            writeOptionalString(context.getShaderPack());
+            CatalogFormat.writeSignedVarint(scratch, context.getModCount());
+            scratch.write(context.isModListTruncated() ? 1 : 0);
+            writeStrings(context.getResourcePacks());
+            writeStrings(context.getMods());
+            frame(scratch);
+        }
+        return id;
+    }
+
+    private void writeOptionalString(String value) {
+        scratch.write(value != null ? 1 : 0);
+        if (value != null) {
+            CatalogFormat.writeString(scratch, value);
+        }
+    }
+
+    private void writeStrings(List<String> values) {
+        CatalogFormat.writeVarint(scratch, values.size());
+        for (String value : values) {
+            CatalogFormat.writeString(scratch, value != null ? value : "");
+        }
+    }
+
+    private void frame(ByteArrayOutputStream record) {
+        byte[] bytes = record.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        CatalogFormat.writeInt(group, bytes.length);
+        CatalogFormat.writeInt(group, (int) crc.getValue());
+        group.writeBytes(bytes);
+    }
+
+    private String storedPath(Path screenshot) {
+        Path absolute = screenshot.toAbsolutePath().normalize();
+        if (baseDir != null && absolute.startsWith(baseDir)) {
+            return baseDir.relativize(absolute).toString().replace('\\', '/');
+        }
+        return absolute.toString();
+    }
+
+    /**
+     * Extras named like a schema key that is present are not written, as in the sidecars.
+     */
+    private static boolean isShadowed(ScreenshotMetadata metadata, String name) {
+        MetadataKey key = MetadataKey.byName(name);
+        return key != null && metadata.has(key);
+    }
+}
@@ -0,0 +1,329 @@
+package com.fentbuscoding.screenshotmetadata.catalog;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarContext;
+import com.fentbuscoding.screenshotmetadata.metadata.JsonSidecarWriter;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.metadata.XmpSidecarWriter;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Append-only catalog of every screenshot written this session, kept in one file under
+ * {@code screenshots/catalog} instead of a sidecar per screenshot.
+ *
+ * <p>Metadata workers only queue their record. A single committer thread encodes everything
+ * that queued up while it was busy and writes it with one write and one sync, so a burst
+ * of screenshots costs one sync rather than one per screenshot.</p>
+ */
+public final class ScreenshotCatalog {
+    private static final String DIRECTORY = "catalog";
+
+    private static final Object LOCK = new Object();
+    private static final ArrayDeque<Pending> QUEUE = new ArrayDeque<>();
+    private static final AtomicLong RECORDS = new AtomicLong();
+    private static final AtomicLong GROUPS = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicReference<CompletableFuture<Integer>> REGENERATION = new AtomicReference<>();
+
+    private static Thread committer;
+    private static boolean committing;
+    private static boolean closed;
+    private static CatalogWriter writer;
+
+    private ScreenshotCatalog() {
+    }
+
+    /**
+     * Queues a screenshot's record; it reaches the catalog with the next group commit.
+     * A copy of {@code metadata} is queued, so later changes by the caller are not
+     * recorded; it is encoded on the committer.
+     */
+    public static void append(File screenshotFile, ScreenshotMetadata metadata, JsonSidecarContext context) {
+        if (screenshotFile == null || metadata == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (closed) {
+                ScreenshotMetadataMod.LOGGER.warn("Catalog already closed, not recording {}", screenshotFile.getName());
+                return;
+            }
+            ensureStarted();
+            QUEUE.addLast(new Pending(screenshotFile.toPath(), metadata.copy(), context));
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every queued record is committed.
+     *
+     * @return false if records were still pending when the timeout ran out
+     */
+    public static boolean flush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (LOCK) {
+            while (!QUEUE.isEmpty() || committing) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L || committer == null) {
+                    return false;
+                }
+                try {
+                    LOCK.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Commits what is queued and closes the catalog file. Called when the game exits.
+     */
+    public static void close(long timeoutMillis) {
+        boolean flushed = flush(timeoutMillis);
+        synchronized (LOCK) {
+            closed = true;
+            LOCK.notifyAll();
+            if (!flushed) {
+                ScreenshotMetadataMod.LOGGER.warn("Catalog did not flush in time, {} record(s) abandoned", QUEUE.size());
+            }
+            if (writer != null && !committing) {
+                closeWriter();
+            }
+        }
+        ScreenshotMetadataMod.LOGGER.debug("Screenshot catalog closed: {}", describeMetrics());
+    }
+
+    public static Path getDirectory() {
+        return FabricLoader.getInstance().getGameDir().resolve("screenshots").resolve(DIRECTORY);
+    }
+
+    /**
+     * All catalog files, oldest first.
+     */
+    public static List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+        Path dir = getDirectory();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + CatalogFormat.EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Failed to list catalog files: {}", e.getMessage());
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Reads every record of every catalog file, oldest first.
+     */
+    public static void readAll(Consumer<CatalogEntry> consumer) {
+        flush(1_000L);
+        Path baseDir = FabricLoader.getInstance().getGameDir();
+        for (Path file : listFiles()) {
+            try {
+                CatalogReader.read(file, baseDir, consumer);
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Skipping catalog {}: {}", file.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrites sidecar files from the catalog for screenshots that still exist. Later
+     * records win when a screenshot was recorded more than once.
+     *
+     * @return The number of screenshots whose sidecars were written
+     */
+    public static int regenerateSidecars(boolean xmp, boolean json) {
+        if (!xmp && !json) {
+            return 0;
+        }
+        Map<Path, ScreenshotMetadata> latest = new LinkedHashMap<>();
+        readAll(entry -> latest.put(entry.getScreenshot(), entry.getMetadata()));
+
+        int written = 0;
+        for (Map.Entry<Path, ScreenshotMetadata> entry : latest.entrySet()) {
+            File file = entry.getKey().toFile();
+            if (!file.isFile()) {
+                continue;
+            }
+            ScreenshotMetadata metadata = entry.getValue();
+            if (xmp) {
+                XmpSidecarWriter.writeSidecarFile(file, metadata);
+            }
+            if (json) {
+                JsonSidecarWriter.writeSidecarFile(file, metadata, metadata.getModpackContext());
+            }
+            written++;
+        }
+        ScreenshotMetadataMod.LOGGER.info("Regenerated sidecars for {} screenshot(s) from the catalog", written);
+        return written;
+    }
+
+    /**
+     * Runs {@link #regenerateSidecars} on a background thread. While a run is in progress,
+     * further calls return that run instead of starting another.
+     *
+     * @return Completes with the number of screenshots whose sidecars were written
+     */
+    public static CompletableFuture<Integer> regenerateSidecarsInBackground(boolean xmp, boolean json) {
+        CompletableFuture<Integer> run = new CompletableFuture<>();
+        CompletableFuture<Integer> running = REGENERATION.compareAndExchange(null, run);
+        if (running != null) {
+            return running;
+        }
+        Thread worker = new Thread(() -> {
+            int written = 0;
+            Throwable failure = null;
+            try {
+                written = regenerateSidecars(xmp, json);
+            } catch (Throwable e) {
+                // Errors too, or the run would stay registered and block every later one
+                ScreenshotMetadataMod.LOGGER.error("Failed to regenerate sidecars from the catalog", e);
+                failure = e;
+            } finally {
+                // Cleared first, so whoever is notified can start the next run
+                REGENERATION.set(null);
+                if (failure != null) {
+                    run.completeExceptionally(failure);
+                } else {
+                    run.complete(written);
+                }
+            }
+        }, "Screenshot Metadata Sidecar Regeneration");
+        worker.setDaemon(true);
+        worker.start();
+        return run;
+    }
+
+    /**
+     * The sidecar regeneration in progress, or null if none is running.
+     */
+    public static CompletableFuture<Integer> getSidecarRegeneration() {
+        return REGENERATION.get();
+    }
+
+    public static String describeMetrics() {
+        synchronized (LOCK) {
+            return "records=" + RECORDS.get()
+                + " groups=" + GROUPS.get()
+                + " failed=" + FAILED.get()
+                + " queued=" + QUEUE.size()
+                + " file=" + (writer != null ? writer.getFile().getFileName() : "none");
+        }
+    }
+
+    private static void ensureStarted() {
+        if (committer != null) {
+            return;
+        }
+        committer = new Thread(ScreenshotCatalog::runCommitter, "Screenshot Metadata Catalog");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    private static void runCommitter() {
+        List<Pending> group = new ArrayList<>();
+        while (true) {
+            CatalogWriter current;
+            synchronized (LOCK) {
+                while (QUEUE.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        LOCK.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                group.addAll(QUEUE);
+                QUEUE.clear();
+                committing = true;
+                current = writer;
+            }
+
+            try {
+                if (current == null) {
+                    current = CatalogWriter.create(getDirectory(), FabricLoader.getInstance().getGameDir().toAbsolutePath().normalize(),
+                        ScreenshotMetadataConfig.get().catalogDictionary);
+                    ScreenshotMetadataMod.LOGGER.debug("Opened screenshot catalog {}", current.getFile().getFileName());
+                }
+                for (Pending pending : group) {
+                    try {
+                        current.append(pending.screenshot, pending.metadata, pending.context);
+                    } catch (RuntimeException e) {
+                        FAILED.incrementAndGet();
+                        ScreenshotMetadataMod.LOGGER.error("Failed to encode catalog record for {}",
+                            pending.screenshot.getFileName(), e);
+                    }
+                }
+                RECORDS.addAndGet(current.commit());
+                GROUPS.incrementAndGet();
+            } catch (IOException e) {
+                FAILED.addAndGet(group.size());
+                ScreenshotMetadataMod.LOGGER.error("Failed to write {} catalog record(s): {}", group.size(), e.getMessage());
+                // Start a fresh file next time rather than appending after a partial write
+                if (current != null) {
+                    try {
+                        current.close();
+                    } catch (IOException ignored) {
+                        // Already failing
+                    }
+                }
+                current = null;
+            } finally {
+                group.clear();
+                synchronized (LOCK) {
+                    writer = current;
+                    committing = false;
+                    if (closed && QUEUE.isEmpty() && writer != null) {
+                        closeWriter();
+                    }
+                    LOCK.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static void closeWriter() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.debug("Failed to close catalog {}", writer.getFile().getFileName(), e);
+        }
+        writer = null;
+    }
+
+    private static final class Pending {
+        private final Path screenshot;
+        private final ScreenshotMetadata metadata;
+        private final JsonSidecarContext context;
+
+        private Pending(Path screenshot, ScreenshotMetadata metadata, JsonSidecarContext context) {
+            this.screenshot = screenshot;
+            this.metadata = metadata;
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Reads the active shader pack from Iris without depending on it at compile time.
+ * The Iris API entry point is looked up once; when Iris is missing or its API changed,
+ * every later call returns immediately.
+ */
+public final class IrisCompat {
+    private static final MethodAccessor GET_SHADER_PACK_NAME = MethodAccessor.of("getShaderPackName");
+    private static final MethodAccessor GET_CONFIG = MethodAccessor.of("getConfig");
+    private static final MethodAccessor GET_SHADER_PACK = MethodAccessor.of("getShaderPack");
+    private static final MethodAccessor GET_NAME = MethodAccessor.of("getName");
+
+    private IrisCompat() {
+    }
+
+    /**
+     * Whether Iris is installed.
+     */
+    public static boolean isLoaded() {
+        return Api.LOADED;
+    }
+
+    /**
+     * The name of the active shader pack, or null if Iris is missing or does not report one.
+     */
+    public static String shaderPackName() {
+        if (Api.GET_INSTANCE == null) {
+            return null;
+        }
+        Object irisApi;
+        try {
+            irisApi = (Object) Api.GET_INSTANCE.invokeExact();
+        } catch (Throwable e) {
+            ScreenshotMetadataMod.LOGGER.debug("Iris shader detection failed", e);
+            return null;
+        }
+        if (irisApi == null) {
+            return null;
+        }
+
+        String packName = GET_SHADER_PACK_NAME.invokeForString(irisApi);
+        if (packName != null) {
+            return packName;
+        }
+
+        Object config = GET_CONFIG.invoke(irisApi);
+        if (config != null) {
+            String nameFromConfig = GET_SHADER_PACK_NAME.invokeForString(config);
+            if (nameFromConfig != null) {
+                return nameFromConfig;
+            }
+            String derived = nameOfPack(GET_SHADER_PACK.invoke(config));
+            if (derived != null) {
+                return derived;
+            }
+        }
+
+        return nameOfPack(GET_SHADER_PACK.invoke(irisApi));
+    }
+
+    private static String nameOfPack(Object pack) {
+        if (pack == null) {
+            return null;
+        }
+        String name = GET_NAME.invokeForString(pack);
+        if (name != null) {
+            return name;
+        }
+        String fallback = pack.toString();
+        return fallback != null && !fallback.isBlank() ? fallback : null;
+    }
+
+    /**
+     * Resolved on first use; the handle is a constant the JIT can inline.
+     */
+    private static final class Api {
+        private static final boolean LOADED = FabricLoader.getInstance().isModLoaded("iris");
+        private static final MethodHandle GET_INSTANCE = LOADED ? resolveGetInstance() : null;
+
+        private static MethodHandle resolveGetInstance() {
+            try {
+                Class<?> irisApiClass = Class.forName("net.irisshaders.iris.api.v0.IrisApi");
+                return MethodHandles.publicLookup()
+                    .findStatic(irisApiClass, "getInstance", MethodType.methodType(irisApiClass))
+                    .asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException | LinkageError e) {
+                ScreenshotMetadataMod.LOGGER.debug("Iris is loaded but its API is not available: {}", e.toString());
+                return null;
+            }
+        }
+    }
+}
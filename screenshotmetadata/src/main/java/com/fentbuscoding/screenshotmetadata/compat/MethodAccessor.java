@@ -0,0 +1,129 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * A public no-argument method looked up by name, for optional third-party mods such as
+ * Iris that are not on the compile classpath. Minecraft's own methods are renamed in
+ * release builds, so they must never be looked up this way; they are called directly
+ * from the per-version sources instead.
+ *
+ * <p>The method is resolved once per receiver class into a {@link MethodHandle}. Classes
+ * without it get a handle that returns null, so a missing method is remembered instead of
+ * being looked up (and throwing) on every call.</p>
+ */
+public final class MethodAccessor {
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodHandle MISSING =
+        MethodHandles.dropArguments(MethodHandles.constant(Object.class, null), 0, Object.class);
+
+    private final String name;
+    private final ClassValue<MethodHandle> handles = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    private MethodAccessor(String name) {
+        this.name = name;
+    }
+
+    public static MethodAccessor of(String name) {
+        return new MethodAccessor(name);
+    }
+
+    /**
+     * Calls the method on {@code target}.
+     *
+     * @return The result, or null if the target is null, has no such method or the call threw
+     */
+    public Object invoke(Object target) {
+        if (target == null) {
+            return null;
+        }
+        MethodHandle handle = handles.get(target.getClass());
+        try {
+            return (Object) handle.invokeExact(target);
+        } catch (Throwable e) {
+            ScreenshotMetadataMod.LOGGER.debug("{}.{}() failed: {}", target.getClass().getName(), name, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Calls the method and returns its result if it is a non-blank string, trimmed.
+     */
+    public String invokeForString(Object target) {
+        return invoke(target) instanceof String value && !value.isBlank() ? value.trim() : null;
+    }
+
+    /**
+     * Whether instances of {@code type} have the method.
+     */
+    public boolean isPresent(Class<?> type) {
+        return type != null && handles.get(type) != MISSING;
+    }
+
+    private MethodHandle resolve(Class<?> type) {
+        MethodHandle handle = null;
+        try {
+            handle = unreflect(type.getMethod(name));
+        } catch (NoSuchMethodException e) {
+            // Not there in this version
+        }
+        if (handle == null) {
+            // The method may be declared by a non-public class; use a public supertype's declaration
+            handle = findInPublicSupertype(type);
+        }
+        if (handle == null) {
+            ScreenshotMetadataMod.LOGGER.debug("No accessible {}() on {}, skipping it from now on", name, type.getName());
+            return MISSING;
+        }
+        return handle.asType(OBJECT_GETTER);
+    }
+
+    private MethodHandle findInPublicSupertype(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            MethodHandle handle = fromPublicType(current);
+            if (handle != null) {
+                return handle;
+            }
+            for (Class<?> iface : current.getInterfaces()) {
+                handle = fromPublicType(iface);
+                if (handle != null) {
+                    return handle;
+                }
+            }
+        }
+        return null;
+    }
+
+    private MethodHandle fromPublicType(Class<?> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return null;
+        }
+        try {
+            return unreflect(type.getMethod(name));
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.fentbuscoding.screenshotmetadata.compat;
 
 import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.catalog.ScreenshotCatalog;
 import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
 import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig.MetadataProfile;
+import com.fentbuscoding.screenshotmetadata.index.IndexRecord;
+import com.fentbuscoding.screenshotmetadata.index.NearbyScreenshot;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.provider.WorldSession;
 import com.terraformersmc.modmenu.api.ModMenuApi;
 import com.terraformersmc.modmenu.api.ConfigScreenFactory;
 import net.minecraft.client.gui.DrawContext;
@@ -19,6 +25,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ModMenuIntegration implements ModMenuApi {
     @Override
@@ -44,6 +51,10 @@ public class ModMenuIntegration implements ModMenuApi {
         private static final int PRIVACY_PREVIEW_HEIGHT = 44;
         private static final int PROFILE_BUTTON_HEIGHT = 20;
         private static final int SCROLL_STEP = 16;
+        private static final int[] TIMELAPSE_INTERVAL_PRESETS = {20, 40, 100, 200, 600, 1200, 6000};
+        private static final int[] NEARBY_RADIUS_PRESETS = {50, 100, 200, 500, 1000, 5000};
+        private static final int NEARBY_RESULTS = 5;
+        private static final int NEARBY_LINE_HEIGHT = 10;
 
         private final List<Section> sections = new ArrayList<>();
         private final List<TooltipEntry> tooltipEntries = new ArrayList<>();
@@ -56,10 +67,19 @@ public class ModMenuIntegration implements ModMenuApi {
         private int templateFieldY = -1;
         private int privacyPreviewY = -1;
         private String templatePreview = "";
+        private int nearbyRadius = 200;
+        private int nearbyY = -1;
+        private List<Text> nearbyLines = List.of();
+        private ButtonWidget regenerateButton;
+        private CompletableFuture<Integer> watchedRegeneration;
+        private Text regenerateResult;
+        private final ScreenshotMetadataConfig draft;
 
         protected ConfigScreen(Screen parent) {
             super(Text.translatable("screen.screenshotmetadata.config.title").formatted(Formatting.BOLD));
             this.parent = parent;
+            // Edits go to a copy and are published on save
+            this.draft = ScreenshotMetadataConfig.edit();
         }
 
         @Override
@@ -70,7 +90,8 @@ public class ModMenuIntegration implements ModMenuApi {
             this.templateField = null;
             this.templateFieldY = -1;
             this.privacyPreviewY = -1;
-            ScreenshotMetadataConfig config = ScreenshotMetadataConfig.get();
+            this.nearbyY = -1;
+            ScreenshotMetadataConfig config = draft;
             updateLayoutMetrics();
             int centerX = this.width / 2;
             int y = contentTop - appliedScrollOffset;
@@ -123,6 +144,38 @@ public class ModMenuIntegration implements ModMenuApi {
                     config.writeJsonSidecar = !config.writeJsonSidecar;
                     updateButtonText(button, jsonLabel, config.writeJsonSidecar);
                 });
+
+                Text catalogLabel = Text.translatable("screen.screenshotmetadata.config.toggle.catalog");
+                y += this.addToggleButton(centerX, y, catalogLabel,
+                Text.translatable("screen.screenshotmetadata.config.toggle.catalog.desc"), config.writeCatalog,
+                button -> {
+                    config.writeCatalog = !config.writeCatalog;
+                    updateButtonText(button, catalogLabel, config.writeCatalog);
+                });
+                Text indexLabel = Text.translatable("screen.screenshotmetadata.config.toggle.index");
+                y += this.addToggleButton(centerX, y, indexLabel,
+                Text.translatable("screen.screenshotmetadata.config.toggle.index.desc"), config.indexScreenshots,
+                button -> {
+                    config.indexScreenshots = !config.indexScreenshots;
+                    // Published right away so the index starts and the browser can use it
+                    ScreenshotMetadataConfig.save(draft);
+                    this.init();
+                });
+                Text thumbnailsLabel = Text.translatable("screen.screenshotmetadata.config.toggle.thumbnails");
+                y += this.addToggleButton(centerX, y, thumbnailsLabel,
+                Text.translatable("screen.screenshotmetadata.config.toggle.thumbnails.desc"), config.writeThumbnails,
+                button -> {
+                    config.writeThumbnails = !config.writeThumbnails;
+                    updateButtonText(button, thumbnailsLabel, config.writeThumbnails);
+                });
+                Text duplicatesLabel = Text.translatable("screen.screenshotmetadata.config.toggle.duplicates");
+                y += this.addToggleButton(centerX, y, duplicatesLabel,
+                Text.translatable("screen.screenshotmetadata.config.toggle.duplicates.desc"), config.perceptualHash,
+                button -> {
+                    config.perceptualHash = !config.perceptualHash;
+                    updateButtonText(button, duplicatesLabel, config.perceptualHash);
+                });
+                y += this.addRegenerateSidecarsButton(centerX, y, config);
             } else {
                 y += 4;
             }
@@ -269,6 +322,43 @@ public class ModMenuIntegration implements ModMenuApi {
                 y += 4;
             }
 
+            // ===== EXTERNAL CAPTURE SECTION =====
+            y += SECTION_PADDING;
+            y = drawSection(centerX, y, "external_capture",
+                Text.translatable("screen.screenshotmetadata.config.section.external_capture"),
+                0xCC88FF);
+
+            if (!isCollapsed("external_capture")) {
+                Text watcherLabel = Text.translatable("screen.screenshotmetadata.config.toggle.external_watcher");
+                y += this.addToggleButton(centerX, y, watcherLabel,
+                    Text.translatable("screen.screenshotmetadata.config.toggle.external_watcher.desc"), config.watchExternalFolders,
+                    button -> {
+                        config.watchExternalFolders = !config.watchExternalFolders;
+                        updateButtonText(button, watcherLabel, config.watchExternalFolders);
+                    });
+            } else {
+                y += 4;
+            }
+
+            // ===== TIMELAPSE SECTION =====
+            y += SECTION_PADDING;
+            y = drawSection(centerX, y, "timelapse",
+                Text.translatable("screen.screenshotmetadata.config.section.timelapse"),
+                0x88DDFF);
+
+            if (!isCollapsed("timelapse")) {
+                Text timelapseLabel = Text.translatable("screen.screenshotmetadata.config.toggle.timelapse");
+                y += this.addToggleButton(centerX, y, timelapseLabel,
+                    Text.translatable("screen.screenshotmetadata.config.toggle.timelapse.desc"), config.timelapseEnabled,
+                    button -> {
+                        config.timelapseEnabled = !config.timelapseEnabled;
+                        updateButtonText(button, timelapseLabel, config.timelapseEnabled);
+                    });
+                y += this.addTimelapseIntervalButton(centerX, y, config);
+            } else {
+                y += 4;
+            }
+
             // ===== SIDECAR EXTRAS SECTION =====
             y += SECTION_PADDING;
             y = drawSection(centerX, y, "sidecar_extras",
@@ -288,6 +378,35 @@ public class ModMenuIntegration implements ModMenuApi {
                 y += 4;
             }
 
+            // ===== NEARBY SCREENSHOTS SECTION (in a world only) =====
+            if (this.client != null && this.client.player != null && this.client.world != null
+                && config.indexScreenshots) {
+                y += SECTION_PADDING;
+                y = drawSection(centerX, y, "nearby",
+                    Text.translatable("screen.screenshotmetadata.config.section.nearby"),
+                    0xFFAA88);
+
+                if (!isCollapsed("nearby")) {
+                    y += this.addNearbyRadiusButton(centerX, y);
+                    y += this.addNearbyResults(y);
+                } else {
+                    y += 4;
+                }
+            }
+
+            // ===== SCREENSHOT BROWSER =====
+            y += SECTION_PADDING;
+            ButtonWidget browseButton = ButtonWidget.builder(
+                    Text.translatable("screen.screenshotmetadata.config.browse").formatted(Formatting.AQUA),
+                    button -> this.client.setScreen(new ScreenshotBrowserScreen(this)))
+                .dimensions(centerX - BUTTON_WIDTH / 2, y, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build();
+            this.addDrawableChild(browseButton);
+            tooltipEntries.add(new TooltipEntry(browseButton, List.of(
+                Text.translatable("screen.screenshotmetadata.config.browse.desc")
+            )));
+            y += BUTTON_HEIGHT;
+
             // ===== SAVE BUTTON =====
             y += SECTION_PADDING + 20;
             this.addDrawableChild(ButtonWidget.builder(
@@ -327,6 +446,148 @@ public class ModMenuIntegration implements ModMenuApi {
             return BUTTON_HEIGHT + SPACING;
         }
 
+        private int addTimelapseIntervalButton(int centerX, int y, ScreenshotMetadataConfig config) {
+            ButtonWidget button = ButtonWidget.builder(timelapseIntervalText(config.timelapseIntervalTicks), btn -> {
+                    config.timelapseIntervalTicks = nextPreset(TIMELAPSE_INTERVAL_PRESETS, config.timelapseIntervalTicks);
+                    btn.setMessage(timelapseIntervalText(config.timelapseIntervalTicks));
+                })
+                .dimensions(centerX - BUTTON_WIDTH / 2, y, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build();
+            this.addDrawableChild(button);
+            tooltipEntries.add(new TooltipEntry(button, List.of(
+                Text.translatable("screen.screenshotmetadata.config.timelapse.interval.desc")
+            )));
+            return BUTTON_HEIGHT + SPACING;
+        }
+
+        private int addRegenerateSidecarsButton(int centerX, int y, ScreenshotMetadataConfig config) {
+            CompletableFuture<Integer> running = ScreenshotCatalog.getSidecarRegeneration();
+            ButtonWidget button = ButtonWidget.builder(regenerateText(running != null),
+                    btn -> {
+                        btn.active = false;
+                        btn.setMessage(regenerateText(true));
+                        watchRegeneration(ScreenshotCatalog.regenerateSidecarsInBackground(
+                            config.writeXmpSidecar, config.writeJsonSidecar));
+                    })
+                .dimensions(centerX - BUTTON_WIDTH / 2, y, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build();
+            button.active = running == null;
+            regenerateButton = button;
+            if (running != null) {
+                // Possibly started from an earlier visit to this screen
+                watchRegeneration(running);
+            }
+            this.addDrawableChild(button);
+            tooltipEntries.add(new TooltipEntry(button, List.of(
+                Text.translatable("screen.screenshotmetadata.config.catalog.regenerate.desc")
+            )));
+            return BUTTON_HEIGHT + SPACING;
+        }
+
+        private void watchRegeneration(CompletableFuture<Integer> run) {
+            if (run == watchedRegeneration) {
+                return;
+            }
+            watchedRegeneration = run;
+            run.whenComplete((written, error) -> this.client.execute(() -> {
+                regenerateResult = error == null
+                    ? Text.translatable("screen.screenshotmetadata.config.catalog.regenerate.done", written)
+                    : Text.translatable("screen.screenshotmetadata.config.catalog.regenerate.failed");
+                // The button of the latest layout, which may have been rebuilt meanwhile
+                regenerateButton.active = true;
+                regenerateButton.setMessage(regenerateText(false));
+            }));
+        }
+
+        private Text regenerateText(boolean running) {
+            if (running) {
+                return Text.translatable("screen.screenshotmetadata.config.catalog.regenerate.running").formatted(Formatting.GRAY);
+            }
+            if (regenerateResult != null) {
+                return regenerateResult.copy().formatted(Formatting.WHITE);
+            }
+            return Text.translatable("screen.screenshotmetadata.config.catalog.regenerate").formatted(Formatting.WHITE);
+        }
+
+        private int addNearbyRadiusButton(int centerX, int y) {
+            ButtonWidget button = ButtonWidget.builder(
+                    Text.translatable("screen.screenshotmetadata.config.nearby.radius", nearbyRadius).formatted(Formatting.WHITE),
+                    btn -> {
+                        nearbyRadius = nextPreset(NEARBY_RADIUS_PRESETS, nearbyRadius);
+                        this.init();
+                    })
+                .dimensions(centerX - BUTTON_WIDTH / 2, y, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build();
+            this.addDrawableChild(button);
+            tooltipEntries.add(new TooltipEntry(button, List.of(
+                Text.translatable("screen.screenshotmetadata.config.nearby.radius.desc")
+            )));
+            return BUTTON_HEIGHT + SPACING;
+        }
+
+        /**
+         * Looks up the screenshots nearest the player; the index answers from memory, so this
+         * is cheap enough to redo on every layout. Skipped until the index has loaded, since
+         * the query would wait on the loader for the render thread.
+         */
+        private int addNearbyResults(int y) {
+            nearbyY = y;
+            List<Text> lines = new ArrayList<>();
+            if (!ScreenshotIndex.isReady()) {
+                lines.add(Text.translatable("screen.screenshotmetadata.config.nearby.indexing").formatted(Formatting.GRAY));
+                nearbyLines = lines;
+                return lines.size() * NEARBY_LINE_HEIGHT + SPACING;
+            }
+            ScreenshotMetadata here = WorldSession.currentValues(this.client);
+            String dimension = this.client.world.getRegistryKey().getValue().toString();
+            List<NearbyScreenshot> nearby = ScreenshotIndex.findNear(IndexRecord.worldOf(here), dimension,
+                this.client.player.getX(), this.client.player.getZ(), nearbyRadius, NEARBY_RESULTS);
+            for (NearbyScreenshot result : nearby) {
+                IndexRecord record = result.getRecord();
+                String biome = record.getBiomeName() != null ? record.getBiomeName() : "?";
+                lines.add(Text.translatable("screen.screenshotmetadata.config.nearby.entry",
+                        record.getPath().getFileName().toString(), Math.round(result.getDistance()), biome)
+                    .formatted(Formatting.GRAY));
+            }
+            if (nearby.isEmpty()) {
+                lines.add(Text.translatable("screen.screenshotmetadata.config.nearby.none", nearbyRadius)
+                    .formatted(Formatting.DARK_GRAY));
+            }
+            nearbyLines = lines;
+            return lines.size() * NEARBY_LINE_HEIGHT + SPACING;
+        }
+
+        private void renderNearbyResults(DrawContext context) {
+            if (nearbyY < 0) {
+                return;
+            }
+            int x = this.width / 2 - BUTTON_WIDTH / 2;
+            for (int i = 0; i < nearbyLines.size(); i++) {
+                int y = nearbyY + i * NEARBY_LINE_HEIGHT;
+                if (y < contentTop - 16 || y > this.height - 40) {
+                    continue;
+                }
+                context.drawTextWithShadow(this.textRenderer, nearbyLines.get(i), x, y, 0xAAAAAA);
+            }
+        }
+
+        private static int nextPreset(int[] presets, int current) {
+            for (int preset : presets) {
+                if (preset > current) {
+                    return preset;
+                }
+            }
+            return presets[0];
+        }
+
+        private static Text timelapseIntervalText(int ticks) {
+            String seconds = ticks % 20 == 0
+                ? Integer.toString(ticks / 20)
+                : String.format(java.util.Locale.ROOT, "%.2f", ticks / 20.0);
+            return Text.translatable("screen.screenshotmetadata.config.timelapse.interval", seconds, ticks)
+                .formatted(Formatting.WHITE);
+        }
+
         private int addTemplateEditor(int centerX, int y, ScreenshotMetadataConfig config) {
             int fieldX = centerX - BUTTON_WIDTH / 2;
             templateFieldY = y;
@@ -444,7 +705,7 @@ public class ModMenuIntegration implements ModMenuApi {
             Text label = profileLabel(profile, selected);
             return ButtonWidget.builder(label, btn -> {
                     config.applyProfile(profile);
-                    ScreenshotMetadataConfig.save();
+                    ScreenshotMetadataConfig.save(draft);
                     this.init();
                 })
                 .dimensions(x, y, width, PROFILE_BUTTON_HEIGHT)
@@ -485,7 +746,7 @@ public class ModMenuIntegration implements ModMenuApi {
         }
 
         private void resetDefaults() {
-            ScreenshotMetadataConfig config = ScreenshotMetadataConfig.get();
+            ScreenshotMetadataConfig config = draft;
             config.writePngMetadata = true;
             config.writeEmbeddedXmp = true;
             config.writeXmpSidecar = true;
@@ -493,13 +754,20 @@ public class ModMenuIntegration implements ModMenuApi {
             config.applyProfile(MetadataProfile.FULL);
             config.renameScreenshots = false;
             config.screenshotNameTemplate = "{date}_{dimension}_X{x}_Z{z}";
-            ScreenshotMetadataConfig.save();
+            config.watchExternalFolders = false;
+            config.timelapseEnabled = false;
+            config.timelapseIntervalTicks = 100;
+            config.writeCatalog = false;
+            config.indexScreenshots = false;
+            config.writeThumbnails = false;
+            config.perceptualHash = false;
+            ScreenshotMetadataConfig.save(draft);
             this.init();
         }
 
         @Override
         public void close() {
-            ScreenshotMetadataConfig.save();
+            ScreenshotMetadataConfig.save(draft);
             this.client.setScreen(parent);
         }
 
@@ -539,6 +807,7 @@ public class ModMenuIntegration implements ModMenuApi {
             super.render(context, mouseX, mouseY, delta);
             renderPrivacyPreview(context);
             renderTemplateEditorHelp(context);
+            renderNearbyResults(context);
             context.disableScissor();
 
             renderTooltipIfHovered(context, mouseX, mouseY);
@@ -612,7 +881,7 @@ public class ModMenuIntegration implements ModMenuApi {
                 return;
             }
 
-            ScreenshotMetadataConfig config = ScreenshotMetadataConfig.get();
+            ScreenshotMetadataConfig config = draft;
             String stateValue = config.privacyMode
                 ? Text.translatable("screen.screenshotmetadata.toggle.on").getString()
                 : Text.translatable("screen.screenshotmetadata.toggle.off").getString();
@@ -0,0 +1,422 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.index.IndexQuery;
+import com.fentbuscoding.screenshotmetadata.index.IndexRecord;
+import com.fentbuscoding.screenshotmetadata.index.ScreenshotIndex;
+import com.fentbuscoding.screenshotmetadata.index.SimilarScreenshot;
+import com.fentbuscoding.screenshotmetadata.thumbnail.Thumbnail;
+import com.fentbuscoding.screenshotmetadata.thumbnail.ThumbnailCache;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pages through the screenshot index as a grid of thumbnails, with the metadata of the
+ * selected screenshot beside it.
+ *
+ * <p>Only the rows in view get widgets; scrolling rebuilds them. The list of screenshots
+ * comes from the index off the render thread, and thumbnails are decoded by a
+ * {@link ThumbnailCache} whose wish list is the visible rows followed by the next page in
+ * the direction of the last scroll. Thumbnails are drawn as blocks of color, which needs
+ * no texture upload and works the same on every supported version.</p>
+ *
+ * <p>A selected screenshot with a perceptual hash can narrow the grid down to its
+ * near-duplicates, looked up in the index's BK-tree.</p>
+ */
+final class ScreenshotBrowserScreen extends Screen {
+    private static final int CELL_SIZE = 2;
+    private static final int TILE_WIDTH = Thumbnail.MAX_WIDTH * CELL_SIZE;
+    private static final int TILE_HEIGHT = Thumbnail.MAX_HEIGHT * CELL_SIZE;
+    private static final int LABEL_HEIGHT = 11;
+    private static final int GAP = 6;
+    private static final int COLUMN_WIDTH = TILE_WIDTH + GAP;
+    private static final int ROW_HEIGHT = TILE_HEIGHT + LABEL_HEIGHT + GAP;
+    private static final int HEADER_HEIGHT = 28;
+    private static final int FOOTER_HEIGHT = 34;
+    private static final int DETAILS_WIDTH = 160;
+    private static final int DETAIL_LINE_HEIGHT = 11;
+    private static final int BUTTON_WIDTH = 100;
+    private static final int BUTTON_HEIGHT = 20;
+    private static final int SCROLL_STEP = 24;
+    private static final long CACHE_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_SIMILAR = 500;
+    // Near-identical neighbouring pixels are drawn as one rectangle
+    private static final int RUN_COLOR_MASK = 0xF8F8F8;
+    private static final DateTimeFormatter LABEL_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final Screen parent;
+    private final ThumbnailCache thumbnails = new ThumbnailCache(CACHE_BYTES,
+        Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2)));
+    private final List<Tile> tiles = new ArrayList<>();
+    private CompletableFuture<List<IndexRecord>> loading;
+    private List<IndexRecord> records;
+    private boolean loadedBeforeReady;
+    private int scrollOffset = 0;
+    private int maxScroll = 0;
+    private int scrollDirection = 1;
+    private int columns = 1;
+    private int gridLeft;
+    private int gridTop;
+    private int gridBottom;
+    private Path selectedPath;
+    private IndexRecord selectedRecord;
+    // The screenshot whose near-duplicates are shown, or null when showing all
+    private IndexRecord similarTo;
+    private List<Text> detailLines = List.of();
+
+    ScreenshotBrowserScreen(Screen parent) {
+        super(Text.translatable("screen.screenshotmetadata.browser.title").formatted(Formatting.BOLD));
+        this.parent = parent;
+        if (ScreenshotMetadataConfig.get().indexScreenshots) {
+            load();
+        }
+    }
+
+    @Override
+    protected void init() {
+        this.clearChildren();
+        this.tiles.clear();
+        gridTop = HEADER_HEIGHT;
+        gridBottom = this.height - FOOTER_HEIGHT;
+        int gridWidth = Math.max(COLUMN_WIDTH, this.width - DETAILS_WIDTH - 3 * GAP);
+        columns = Math.max(1, gridWidth / COLUMN_WIDTH);
+        gridLeft = GAP + (gridWidth - columns * COLUMN_WIDTH) / 2;
+
+        int count = records != null ? records.size() : 0;
+        int rows = (count + columns - 1) / columns;
+        int viewHeight = Math.max(ROW_HEIGHT, gridBottom - gridTop);
+        maxScroll = Math.max(0, rows * ROW_HEIGHT - viewHeight);
+        scrollOffset = Math.max(0, Math.min(scrollOffset, maxScroll));
+
+        // Widgets for the rows in view only
+        int firstRow = scrollOffset / ROW_HEIGHT;
+        int lastRow = Math.min(rows - 1, (scrollOffset + viewHeight - 1) / ROW_HEIGHT);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = 0; column < columns; column++) {
+                int index = row * columns + column;
+                if (index >= count) {
+                    break;
+                }
+                addTile(records.get(index), gridLeft + column * COLUMN_WIDTH,
+                    gridTop + row * ROW_HEIGHT - scrollOffset);
+            }
+        }
+
+        this.addDrawableChild(ButtonWidget.builder(
+                Text.translatable("screen.screenshotmetadata.browser.back"),
+                button -> this.close())
+            .dimensions(this.width / 2 - BUTTON_WIDTH / 2, this.height - FOOTER_HEIGHT + 8, BUTTON_WIDTH, BUTTON_HEIGHT)
+            .build());
+        if (similarTo != null || selectedRecord != null && selectedRecord.hasPerceptualHash()) {
+            this.addDrawableChild(ButtonWidget.builder(
+                    Text.translatable(similarTo != null
+                        ? "screen.screenshotmetadata.browser.show_all"
+                        : "screen.screenshotmetadata.browser.show_similar"),
+                    button -> {
+                        if (similarTo != null) {
+                            showAll();
+                        } else {
+                            showSimilar(selectedRecord);
+                        }
+                    })
+                .dimensions(this.width / 2 + BUTTON_WIDTH / 2 + GAP, this.height - FOOTER_HEIGHT + 8, BUTTON_WIDTH, BUTTON_HEIGHT)
+                .build());
+        }
+
+        requestThumbnails(firstRow, lastRow, count);
+    }
+
+    private void addTile(IndexRecord record, int x, int y) {
+        Tile tile = new Tile(record, ButtonWidget.builder(Text.empty(), button -> select(record))
+            .dimensions(x, y, TILE_WIDTH, TILE_HEIGHT)
+            .build());
+        tiles.add(tile);
+        // Clickable and focusable, but drawn by renderTile
+        this.addSelectableChild(tile.button);
+    }
+
+    /**
+     * Asks for the visible thumbnails first, then one page beyond the view in the direction
+     * the user last scrolled.
+     */
+    private void requestThumbnails(int firstRow, int lastRow, int count) {
+        List<Path> wanted = new ArrayList<>();
+        for (Tile tile : tiles) {
+            wanted.add(tile.path);
+        }
+        int pageRows = lastRow - firstRow + 1;
+        int from = scrollDirection > 0 ? lastRow + 1 : firstRow - pageRows;
+        int to = scrollDirection > 0 ? lastRow + pageRows : firstRow - 1;
+        if (scrollDirection > 0) {
+            for (int row = from; row <= to; row++) {
+                addRow(wanted, row, count);
+            }
+        } else {
+            for (int row = to; row >= from; row--) {
+                addRow(wanted, row, count);
+            }
+        }
+        thumbnails.request(wanted);
+    }
+
+    private void addRow(List<Path> wanted, int row, int count) {
+        if (row < 0) {
+            return;
+        }
+        for (int column = 0; column < columns; column++) {
+            int index = row * columns + column;
+            if (index >= count) {
+                return;
+            }
+            wanted.add(records.get(index).getPath());
+        }
+    }
+
+    private void load() {
+        loadedBeforeReady = !ScreenshotIndex.isReady();
+        loading = CompletableFuture.supplyAsync(() -> ScreenshotIndex.find(new IndexQuery()));
+    }
+
+    @Override
+    public void tick() {
+        if (loading != null && loading.isDone()) {
+            records = loading.exceptionally(e -> List.of()).join();
+            loading = null;
+            this.init();
+        } else if (loading == null && similarTo == null && loadedBeforeReady && ScreenshotIndex.isReady()) {
+            // The startup reconcile finished after the list was taken; pick up what it found
+            load();
+        }
+    }
+
+    /**
+     * Shows only the screenshots within the duplicate threshold of {@code record}, closest
+     * first; the record itself comes first.
+     */
+    private void showSimilar(IndexRecord record) {
+        List<IndexRecord> similar = new ArrayList<>();
+        for (SimilarScreenshot result : ScreenshotIndex.findSimilar(record.getPerceptualHash(),
+            ScreenshotMetadataConfig.get().duplicateThreshold, MAX_SIMILAR)) {
+            similar.add(result.getRecord());
+        }
+        similarTo = record;
+        loading = null;
+        records = similar;
+        scrollOffset = 0;
+        this.init();
+    }
+
+    private void showAll() {
+        similarTo = null;
+        scrollOffset = 0;
+        load();
+    }
+
+    private void select(IndexRecord record) {
+        boolean hadHash = selectedRecord != null && selectedRecord.hasPerceptualHash();
+        selectedRecord = record;
+        selectedPath = record.getPath();
+        List<Text> lines = new ArrayList<>();
+        lines.add(Text.literal(selectedPath.getFileName().toString()).formatted(Formatting.WHITE));
+        lines.add(detail("time", LABEL_FORMAT.format(
+            Instant.ofEpochMilli(record.getTimestamp()).atZone(ZoneId.systemDefault()))));
+        if (record.getWorld() != null) {
+            lines.add(detail("world", record.getWorld()));
+        }
+        String dimension = record.getDimensionName() != null ? record.getDimensionName() : record.getDimension();
+        if (dimension != null) {
+            lines.add(detail("dimension", dimension));
+        }
+        String biome = record.getBiomeName() != null ? record.getBiomeName() : record.getBiome();
+        if (biome != null) {
+            lines.add(detail("biome", biome));
+        }
+        if (record.hasCoordinates()) {
+            lines.add(Text.translatable(record.isCoordinatesObfuscated()
+                    ? "screen.screenshotmetadata.browser.detail.coordinates.rounded"
+                    : "screen.screenshotmetadata.browser.detail.coordinates",
+                record.getX(), record.getY(), record.getZ()).formatted(Formatting.GRAY));
+        }
+        if (record.getGameMode() != null) {
+            lines.add(detail("game_mode", record.getGameMode()));
+        }
+        if (record.getServer() != null) {
+            lines.add(detail("server", record.getServer()));
+        }
+        if (!record.getTags().isEmpty()) {
+            lines.add(detail("tags", String.join(", ", record.getTags())));
+        }
+        lines.add(detail("size", Math.max(1L, record.getSize() / 1024)));
+        if (record.hasPerceptualHash()) {
+            // The screenshot finds itself
+            int duplicates = ScreenshotIndex.findSimilar(record.getPerceptualHash(),
+                ScreenshotMetadataConfig.get().duplicateThreshold, MAX_SIMILAR).size() - 1;
+            lines.add(detail("similar", Math.max(0, duplicates)));
+        }
+        detailLines = lines;
+        if (similarTo == null && hadHash != record.hasPerceptualHash()) {
+            // Adds or removes the Show Similar button
+            this.init();
+        }
+    }
+
+    private static Text detail(String key, Object value) {
+        return Text.translatable("screen.screenshotmetadata.browser.detail." + key, value).formatted(Formatting.GRAY);
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        super.render(context, mouseX, mouseY, delta);
+        context.drawCenteredTextWithShadow(this.textRenderer, this.title, this.width / 2, 10, 0x88FFFF);
+
+        if (records == null) {
+            String key = ScreenshotMetadataConfig.get().indexScreenshots
+                ? "screen.screenshotmetadata.browser.loading"
+                : "screen.screenshotmetadata.browser.disabled";
+            context.drawCenteredTextWithShadow(this.textRenderer,
+                Text.translatable(key).formatted(Formatting.GRAY), this.width / 2, this.height / 2, 0xAAAAAA);
+            return;
+        }
+        if (records.isEmpty()) {
+            context.drawCenteredTextWithShadow(this.textRenderer,
+                Text.translatable("screen.screenshotmetadata.browser.empty").formatted(Formatting.GRAY),
+                this.width / 2, this.height / 2, 0xAAAAAA);
+            return;
+        }
+
+        context.enableScissor(0, gridTop, this.width, gridBottom);
+        for (Tile tile : tiles) {
+            renderTile(context, tile, mouseX, mouseY);
+        }
+        context.disableScissor();
+
+        renderDetails(context);
+        Text count = Text.translatable(similarTo != null
+                ? "screen.screenshotmetadata.browser.count.similar"
+                : ScreenshotIndex.isReady()
+                ? "screen.screenshotmetadata.browser.count"
+                : "screen.screenshotmetadata.browser.count.indexing", records.size())
+            .formatted(Formatting.DARK_GRAY);
+        context.drawTextWithShadow(this.textRenderer, count, GAP, this.height - FOOTER_HEIGHT + 14, 0x777777);
+    }
+
+    private void renderTile(DrawContext context, Tile tile, int mouseX, int mouseY) {
+        int x = tile.button.getX();
+        int y = tile.button.getY();
+        if (y + ROW_HEIGHT < gridTop || y > gridBottom) {
+            return;
+        }
+        boolean selected = tile.path.equals(selectedPath);
+        boolean hovered = mouseY >= gridTop && mouseY < gridBottom && tile.button.isMouseOver(mouseX, mouseY);
+        int border = selected ? 0xFFFFFFFF : hovered || tile.button.isFocused() ? 0xFFAAAAAA : 0xFF333333;
+        context.fill(x - 1, y - 1, x + TILE_WIDTH + 1, y + TILE_HEIGHT + 1, border);
+        context.fill(x, y, x + TILE_WIDTH, y + TILE_HEIGHT, 0xFF101010);
+
+        Thumbnail thumbnail = thumbnails.get(tile.path);
+        if (thumbnail == null) {
+            context.drawCenteredTextWithShadow(this.textRenderer, Text.literal("..."),
+                x + TILE_WIDTH / 2, y + TILE_HEIGHT / 2 - 4, 0x555555);
+        } else if (thumbnail.isEmpty()) {
+            context.drawCenteredTextWithShadow(this.textRenderer, Text.literal("?"),
+                x + TILE_WIDTH / 2, y + TILE_HEIGHT / 2 - 4, 0x884444);
+        } else {
+            drawThumbnail(context, thumbnail,
+                x + (TILE_WIDTH - thumbnail.getWidth() * CELL_SIZE) / 2,
+                y + (TILE_HEIGHT - thumbnail.getHeight() * CELL_SIZE) / 2);
+        }
+
+        context.drawTextWithShadow(this.textRenderer,
+            Text.literal(this.textRenderer.trimToWidth(tile.label, TILE_WIDTH)),
+            x, y + TILE_HEIGHT + 2, selected ? 0xFFFFFF : 0x999999);
+    }
+
+    /**
+     * Draws each row of the thumbnail as runs of near-identical pixels, one rectangle per run.
+     */
+    private static void drawThumbnail(DrawContext context, Thumbnail thumbnail, int left, int top) {
+        int width = thumbnail.getWidth();
+        for (int row = 0; row < thumbnail.getHeight(); row++) {
+            int y = top + row * CELL_SIZE;
+            int runStart = 0;
+            int runColor = 0xFF000000 | thumbnail.getPixel(0, row);
+            for (int column = 1; column <= width; column++) {
+                int color = column < width ? 0xFF000000 | thumbnail.getPixel(column, row) : 0;
+                if (column == width || (color & RUN_COLOR_MASK) != (runColor & RUN_COLOR_MASK)) {
+                    context.fill(left + runStart * CELL_SIZE, y, left + column * CELL_SIZE, y + CELL_SIZE, runColor);
+                    runStart = column;
+                    runColor = color;
+                }
+            }
+        }
+    }
+
+    private void renderDetails(DrawContext context) {
+        int x = this.width - DETAILS_WIDTH - GAP;
+        int y = gridTop;
+        if (detailLines.isEmpty()) {
+            context.drawTextWithShadow(this.textRenderer,
+                Text.translatable("screen.screenshotmetadata.browser.hint").formatted(Formatting.DARK_GRAY),
+                x, y, 0x777777);
+            return;
+        }
+        for (Text line : detailLines) {
+            if (y > gridBottom - DETAIL_LINE_HEIGHT) {
+                return;
+            }
+            context.drawTextWithShadow(this.textRenderer,
+                Text.literal(this.textRenderer.trimToWidth(line.getString(), DETAILS_WIDTH)).setStyle(line.getStyle()),
+                x, y, 0xAAAAAA);
+            y += DETAIL_LINE_HEIGHT;
+        }
+    }
+
+    @Override
+    public void renderBackground(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Avoid applyBlur to prevent "Can only blur once per frame" crashes.
+        this.renderInGameBackground(context);
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        int nextOffset = Math.max(0, Math.min(maxScroll, scrollOffset - (int) Math.round(verticalAmount * SCROLL_STEP)));
+        if (nextOffset != scrollOffset) {
+            scrollDirection = nextOffset > scrollOffset ? 1 : -1;
+            scrollOffset = nextOffset;
+            this.init();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.client.setScreen(parent);
+    }
+
+    @Override
+    public void removed() {
+        thumbnails.close();
+    }
+
+    private static final class Tile {
+        private final Path path;
+        private final String label;
+        private final ButtonWidget button;
+
+        private Tile(IndexRecord record, ButtonWidget button) {
+            this.path = record.getPath();
+            this.label = LABEL_FORMAT.format(Instant.ofEpochMilli(record.getTimestamp()).atZone(ZoneId.systemDefault()));
+            this.button = button;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.fentbuscoding.screenshotmetadata.config;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the config when its file is edited outside the game.
+ *
+ * <p>The config folder is watched through {@link WatchService} on one parked daemon
+ * thread. Editors usually write a file in several steps, so events are collected until
+ * the file has been quiet for {@value #QUIET_MILLIS} ms before it is read again.</p>
+ */
+final class ConfigFileWatcher {
+    private static final long QUIET_MILLIS = 250L;
+
+    private static Thread thread;
+
+    private ConfigFileWatcher() {
+    }
+
+    static synchronized void start(Path configPath) {
+        if (thread != null) {
+            return;
+        }
+        Path dir = configPath.toAbsolutePath().getParent();
+        Path fileName = configPath.getFileName();
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            dir.register(service,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Could not watch config file, edits on disk need a restart: {}", e.getMessage());
+            return;
+        }
+
+        thread = new Thread(() -> watchLoop(service, fileName), "Screenshot Metadata Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+        ScreenshotMetadataMod.LOGGER.debug("Watching {} for config changes", configPath);
+    }
+
+    private static void watchLoop(WatchService service, Path fileName) {
+        while (true) {
+            try {
+                WatchKey key = service.take();
+                boolean changed = drain(key, fileName);
+                // Wait for the file to go quiet before reading it
+                while (true) {
+                    WatchKey next = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    changed |= drain(next, fileName);
+                }
+                if (changed) {
+                    ScreenshotMetadataConfig.reloadFromDisk();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.error("Error reloading config", e);
+            }
+        }
+    }
+
+    private static boolean drain(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
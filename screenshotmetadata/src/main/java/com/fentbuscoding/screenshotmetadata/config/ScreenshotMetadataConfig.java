@@ -14,20 +14,38 @@ import java.io.Reader;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Mod settings, stored as JSON in the config folder.
+ *
+ * <p>An instance of this class is an editable draft. {@link #get()} returns a
+ * {@link Snapshot} instead: it is normalized once when published and its fields are
+ * final, so a metadata run that reads it once sees one consistent set of values.
+ * Editors take a draft with {@link #edit()} and publish it with
+ * {@link #save(ScreenshotMetadataConfig)}; edits made to the file on disk are picked up
+ * by {@link ConfigFileWatcher}. Either way the new snapshot replaces the old one
+ * atomically and the registered listeners are told.</p>
+ */
 public class ScreenshotMetadataConfig {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final String FILE_NAME = "screenshotmetadata.json";
     private static final String SCHEMA_FIELD = "configSchemaVersion";
     private static final int CURRENT_CONFIG_SCHEMA_VERSION = 1;
 
-    private static ScreenshotMetadataConfig instance;
-    private static boolean loaded;
+    private static final AtomicReference<Snapshot> CURRENT = new AtomicReference<>();
+    private static final List<Runnable> LISTENERS = new CopyOnWriteArrayList<>();
 
     public boolean writePngMetadata = true;
     public boolean writeEmbeddedXmp = true;
     public boolean writeXmpSidecar = true;
     public boolean writeJsonSidecar = true;
+    public boolean singlePassPngMetadata = true;
+    public String pngWriteStrategy = PngWriteStrategy.REWRITE.id;
     public boolean includeWorldSeed = true;
     public boolean privacyMode = false;
     public boolean renameScreenshots = false;
@@ -43,53 +61,184 @@ public class ScreenshotMetadataConfig {
     public boolean includeWeatherInfo = true;
     public boolean includeModpackContext = true;
     public String metadataProfile = MetadataProfile.FULL.id;
+
+    // Metadata pipeline (applied to the running pipeline when changed)
+    public int metadataWorkerThreads = 1;
+    public int metadataQueueCapacity = 32;
+    public String metadataOverflowPolicy = OverflowPolicy.COALESCE.id;
+    public int metadataMemoryLimitMb = 256;
+    public boolean burstMode = false;
+    public int burstWindowMillis = 400;
+
+    // External capture watcher (OBS, replay tools, ...)
+    public boolean watchExternalFolders = false;
+    public List<String> externalWatchFolders = new ArrayList<>(List.of("."));
+    public int externalMatchWindowSeconds = 30;
+
+    // Timelapse capture
+    public boolean timelapseEnabled = false;
+    public int timelapseIntervalTicks = 100;
+    public int timelapseMaxPendingFrames = 4;
+
+    // Screenshot catalog
+    public boolean writeCatalog = false;
+    public boolean catalogDictionary = true;
+
+    // Screenshot index
+    public boolean indexScreenshots = false;
+
+    // Capture-time thumbnails
+    public boolean writeThumbnails = false;
+    public int thumbnailSize = 256;
+
+    // Duplicate detection
+    public boolean perceptualHash = false;
+    public boolean tagDuplicates = true;
+    public int duplicateThreshold = 6;
+
     public int configSchemaVersion = CURRENT_CONFIG_SCHEMA_VERSION;
 
-    public static ScreenshotMetadataConfig get() {
-        if (instance == null || !loaded) {
-            load();
-        }
-        if (instance != null) {
-            instance.normalize();
+    /**
+     * The current settings. Read-only; use {@link #edit()} to change them.
+     */
+    public static Snapshot get() {
+        Snapshot config = CURRENT.get();
+        if (config == null) {
+            synchronized (ScreenshotMetadataConfig.class) {
+                config = CURRENT.get();
+                if (config == null) {
+                    config = load();
+                }
+            }
         }
-        return instance;
+        return config;
+    }
+
+    /**
+     * A private copy of the current settings that can be modified and then published
+     * with {@link #save(ScreenshotMetadataConfig)}.
+     */
+    public static ScreenshotMetadataConfig edit() {
+        return get().source.copy();
     }
 
-    public static void load() {
+    /**
+     * Runs {@code listener} after every published change, on the thread that published it.
+     */
+    public static void addListener(Runnable listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Reads the config file and publishes it, writing the file back if it was missing
+     * or migrated.
+     */
+    public static synchronized Snapshot load() {
         Path configPath = getConfigPath();
+        ScreenshotMetadataConfig config;
+        boolean write;
         if (Files.exists(configPath)) {
-            try (Reader reader = Files.newBufferedReader(configPath)) {
-                JsonElement parsed = JsonParser.parseReader(reader);
-                JsonObject root = parsed != null && parsed.isJsonObject()
-                    ? parsed.getAsJsonObject()
-                    : new JsonObject();
-                int loadedSchemaVersion = readSchemaVersion(root);
-
-                instance = GSON.fromJson(root, ScreenshotMetadataConfig.class);
-                if (instance == null) {
-                    instance = new ScreenshotMetadataConfig();
-                }
-                boolean migrated = instance.migrate(loadedSchemaVersion);
-                instance.normalize();
-                loaded = true;
-                if (migrated) {
-                    save();
-                }
+            try {
+                ReadResult result = read(configPath);
+                config = result.config;
+                write = result.migrated;
             } catch (IOException | JsonSyntaxException e) {
                 ScreenshotMetadataMod.LOGGER.warn("Failed to read config, using defaults: {}", e.getMessage());
-                instance = new ScreenshotMetadataConfig();
-                instance.normalize();
-                loaded = true;
+                config = new ScreenshotMetadataConfig();
+                config.normalize();
+                write = false;
             }
         } else {
-            instance = new ScreenshotMetadataConfig();
-            instance.normalize();
-            loaded = true;
-            save();
+            config = new ScreenshotMetadataConfig();
+            config.normalize();
+            write = true;
+        }
+        Snapshot published = publish(config);
+        if (write) {
+            write(config);
         }
+        return published;
+    }
+
+    /**
+     * Normalizes a copy of {@code edited}, publishes it and writes it to disk.
+     */
+    public static void save(ScreenshotMetadataConfig edited) {
+        ScreenshotMetadataConfig config = edited.copy();
+        config.normalize();
+        publish(config);
+        write(config);
+    }
+
+    /**
+     * Starts watching the config file for edits made outside the game.
+     */
+    public static void startWatching() {
+        ConfigFileWatcher.start(getConfigPath());
     }
 
-    public static void save() {
+    /**
+     * Re-reads the file after it changed on disk. Keeps the current settings if the file
+     * cannot be parsed or holds what is already published (for example our own write).
+     */
+    static void reloadFromDisk() {
+        Path configPath = getConfigPath();
+        if (!Files.exists(configPath)) {
+            return;
+        }
+        ScreenshotMetadataConfig config;
+        try {
+            config = read(configPath).config;
+        } catch (IOException | JsonSyntaxException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Ignoring config change, could not read {}: {}", FILE_NAME, e.getMessage());
+            return;
+        }
+        Snapshot current = CURRENT.get();
+        if (current != null && GSON.toJson(current.source).equals(GSON.toJson(config))) {
+            return;
+        }
+        publish(config);
+        ScreenshotMetadataMod.LOGGER.info("Reloaded config from {}", FILE_NAME);
+    }
+
+    private static ReadResult read(Path configPath) throws IOException {
+        try (Reader reader = Files.newBufferedReader(configPath)) {
+            JsonElement parsed = JsonParser.parseReader(reader);
+            JsonObject root = parsed != null && parsed.isJsonObject()
+                ? parsed.getAsJsonObject()
+                : new JsonObject();
+            int loadedSchemaVersion = readSchemaVersion(root);
+
+            ScreenshotMetadataConfig config = GSON.fromJson(root, ScreenshotMetadataConfig.class);
+            if (config == null) {
+                config = new ScreenshotMetadataConfig();
+            }
+            boolean migrated = config.migrate(loadedSchemaVersion);
+            config.normalize();
+            return new ReadResult(config, migrated);
+        }
+    }
+
+    /**
+     * Publishes a normalized draft that no caller holds on to.
+     */
+    private static Snapshot publish(ScreenshotMetadataConfig config) {
+        Snapshot snapshot = new Snapshot(config);
+        Snapshot previous = CURRENT.getAndSet(snapshot);
+        if (previous == null) {
+            return snapshot;
+        }
+        for (Runnable listener : LISTENERS) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.error("Error applying config change", e);
+            }
+        }
+        return snapshot;
+    }
+
+    private static void write(ScreenshotMetadataConfig config) {
         Path configPath = getConfigPath();
         try {
             Files.createDirectories(configPath.getParent());
@@ -97,7 +246,7 @@ public class ScreenshotMetadataConfig {
             ScreenshotMetadataMod.LOGGER.warn("Failed to create config directory: {}", e.getMessage());
         }
         try (Writer writer = Files.newBufferedWriter(configPath)) {
-            GSON.toJson(get(), writer);
+            GSON.toJson(config, writer);
         } catch (IOException e) {
             ScreenshotMetadataMod.LOGGER.warn("Failed to write config: {}", e.getMessage());
         }
@@ -107,6 +256,10 @@ public class ScreenshotMetadataConfig {
         return FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
     }
 
+    private ScreenshotMetadataConfig copy() {
+        return GSON.fromJson(GSON.toJsonTree(this), ScreenshotMetadataConfig.class);
+    }
+
     public MetadataProfile getMetadataProfile() {
         return MetadataProfile.fromId(metadataProfile);
     }
@@ -115,6 +268,14 @@ public class ScreenshotMetadataConfig {
         metadataProfile = profile == null ? MetadataProfile.FULL.id : profile.id;
     }
 
+    public PngWriteStrategy getPngWriteStrategy() {
+        return PngWriteStrategy.fromId(pngWriteStrategy);
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return OverflowPolicy.fromId(metadataOverflowPolicy);
+    }
+
     public void applyProfile(MetadataProfile profile) {
         MetadataProfile resolved = profile == null ? MetadataProfile.FULL : profile;
         switch (resolved) {
@@ -184,6 +345,23 @@ public class ScreenshotMetadataConfig {
             }
         }
 
+        pngWriteStrategy = getPngWriteStrategy().id;
+
+        metadataWorkerThreads = Math.max(1, Math.min(metadataWorkerThreads, 8));
+        metadataQueueCapacity = Math.max(1, Math.min(metadataQueueCapacity, 1024));
+        metadataOverflowPolicy = getOverflowPolicy().id;
+        metadataMemoryLimitMb = Math.max(16, Math.min(metadataMemoryLimitMb, 4096));
+        burstWindowMillis = Math.max(50, Math.min(burstWindowMillis, 5000));
+
+        if (externalWatchFolders == null) {
+            externalWatchFolders = new ArrayList<>(List.of("."));
+        }
+        externalMatchWindowSeconds = Math.max(1, Math.min(externalMatchWindowSeconds, 600));
+        timelapseIntervalTicks = Math.max(1, Math.min(timelapseIntervalTicks, 72000));
+        timelapseMaxPendingFrames = Math.max(1, Math.min(timelapseMaxPendingFrames, 64));
+        thumbnailSize = Math.max(32, Math.min(thumbnailSize, 1024));
+        duplicateThreshold = Math.max(0, Math.min(duplicateThreshold, 20));
+
         if (configSchemaVersion <= 0 || configSchemaVersion > CURRENT_CONFIG_SCHEMA_VERSION) {
             configSchemaVersion = CURRENT_CONFIG_SCHEMA_VERSION;
         }
@@ -249,6 +427,136 @@ public class ScreenshotMetadataConfig {
         }
     }
 
+    /**
+     * The published, read-only form of the settings. Built from a normalized draft that
+     * nothing else holds, so its values never change after {@link #get()} returns it.
+     */
+    public static final class Snapshot {
+        public final boolean writePngMetadata;
+        public final boolean writeEmbeddedXmp;
+        public final boolean writeXmpSidecar;
+        public final boolean writeJsonSidecar;
+        public final boolean singlePassPngMetadata;
+        public final String pngWriteStrategy;
+        public final boolean includeWorldSeed;
+        public final boolean privacyMode;
+        public final boolean renameScreenshots;
+        public final String screenshotNameTemplate;
+
+        // Metadata filtering options
+        public final boolean includePerformanceMetrics;
+        public final boolean includePlayerStatus;
+        public final boolean includeEquipment;
+        public final boolean includePotionEffects;
+        public final boolean includeCoordinates;
+        public final boolean includeBiomeInfo;
+        public final boolean includeWeatherInfo;
+        public final boolean includeModpackContext;
+        public final String metadataProfile;
+
+        // Metadata pipeline (applied to the running pipeline when changed)
+        public final int metadataWorkerThreads;
+        public final int metadataQueueCapacity;
+        public final String metadataOverflowPolicy;
+        public final int metadataMemoryLimitMb;
+        public final boolean burstMode;
+        public final int burstWindowMillis;
+
+        // External capture watcher (OBS, replay tools, ...)
+        public final boolean watchExternalFolders;
+        public final List<String> externalWatchFolders;
+        public final int externalMatchWindowSeconds;
+
+        // Timelapse capture
+        public final boolean timelapseEnabled;
+        public final int timelapseIntervalTicks;
+        public final int timelapseMaxPendingFrames;
+
+        // Screenshot catalog
+        public final boolean writeCatalog;
+        public final boolean catalogDictionary;
+
+        // Screenshot index
+        public final boolean indexScreenshots;
+
+        // Capture-time thumbnails
+        public final boolean writeThumbnails;
+        public final int thumbnailSize;
+
+        // Duplicate detection
+        public final boolean perceptualHash;
+        public final boolean tagDuplicates;
+        public final int duplicateThreshold;
+
+        // Kept for edit() and for comparing against a reloaded file
+        private final ScreenshotMetadataConfig source;
+
+        private Snapshot(ScreenshotMetadataConfig source) {
+            this.source = source;
+            this.writePngMetadata = source.writePngMetadata;
+            this.writeEmbeddedXmp = source.writeEmbeddedXmp;
+            this.writeXmpSidecar = source.writeXmpSidecar;
+            this.writeJsonSidecar = source.writeJsonSidecar;
+            this.singlePassPngMetadata = source.singlePassPngMetadata;
+            this.pngWriteStrategy = source.pngWriteStrategy;
+            this.includeWorldSeed = source.includeWorldSeed;
+            this.privacyMode = source.privacyMode;
+            this.renameScreenshots = source.renameScreenshots;
+            this.screenshotNameTemplate = source.screenshotNameTemplate;
+            this.includePerformanceMetrics = source.includePerformanceMetrics;
+            this.includePlayerStatus = source.includePlayerStatus;
+            this.includeEquipment = source.includeEquipment;
+            this.includePotionEffects = source.includePotionEffects;
+            this.includeCoordinates = source.includeCoordinates;
+            this.includeBiomeInfo = source.includeBiomeInfo;
+            this.includeWeatherInfo = source.includeWeatherInfo;
+            this.includeModpackContext = source.includeModpackContext;
+            this.metadataProfile = source.metadataProfile;
+            this.metadataWorkerThreads = source.metadataWorkerThreads;
+            this.metadataQueueCapacity = source.metadataQueueCapacity;
+            this.metadataOverflowPolicy = source.metadataOverflowPolicy;
+            this.metadataMemoryLimitMb = source.metadataMemoryLimitMb;
+            this.burstMode = source.burstMode;
+            this.burstWindowMillis = source.burstWindowMillis;
+            this.watchExternalFolders = source.watchExternalFolders;
+            this.externalWatchFolders = Collections.unmodifiableList(new ArrayList<>(source.externalWatchFolders));
+            this.externalMatchWindowSeconds = source.externalMatchWindowSeconds;
+            this.timelapseEnabled = source.timelapseEnabled;
+            this.timelapseIntervalTicks = source.timelapseIntervalTicks;
+            this.timelapseMaxPendingFrames = source.timelapseMaxPendingFrames;
+            this.writeCatalog = source.writeCatalog;
+            this.catalogDictionary = source.catalogDictionary;
+            this.indexScreenshots = source.indexScreenshots;
+            this.writeThumbnails = source.writeThumbnails;
+            this.thumbnailSize = source.thumbnailSize;
+            this.perceptualHash = source.perceptualHash;
+            this.tagDuplicates = source.tagDuplicates;
+            this.duplicateThreshold = source.duplicateThreshold;
+        }
+
+        public MetadataProfile getMetadataProfile() {
+            return MetadataProfile.fromId(metadataProfile);
+        }
+
+        public PngWriteStrategy getPngWriteStrategy() {
+            return PngWriteStrategy.fromId(pngWriteStrategy);
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return OverflowPolicy.fromId(metadataOverflowPolicy);
+        }
+    }
+
+    private static final class ReadResult {
+        private final ScreenshotMetadataConfig config;
+        private final boolean migrated;
+
+        private ReadResult(ScreenshotMetadataConfig config, boolean migrated) {
+            this.config = config;
+            this.migrated = migrated;
+        }
+    }
+
     public enum MetadataProfile {
         FULL("full"),
         LIGHTWEIGHT("lightweight"),
@@ -273,4 +581,62 @@ public class ScreenshotMetadataConfig {
             return FULL;
         }
     }
+
+    /**
+     * How metadata is added to a PNG that is already on disk.
+     */
+    public enum PngWriteStrategy {
+        /** Write a complete new file next to the original and atomically move it over. */
+        REWRITE("rewrite"),
+        /** Insert the chunks in place before IEND; only the metadata is written. */
+        APPEND("append");
+
+        public final String id;
+
+        PngWriteStrategy(String id) {
+            this.id = id;
+        }
+
+        public static PngWriteStrategy fromId(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return REWRITE;
+            }
+            for (PngWriteStrategy strategy : values()) {
+                if (strategy.id.equalsIgnoreCase(raw.trim())) {
+                    return strategy;
+                }
+            }
+            return REWRITE;
+        }
+    }
+
+    /**
+     * What the metadata pipeline does when its queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Merge jobs for the same file; reject new jobs when the queue is full. */
+        COALESCE("coalesce"),
+        /** Drop the oldest optional job (external captures) to make room, otherwise wait. */
+        DROP_OLDEST_OPTIONAL("drop_oldest_optional"),
+        /** Wait for room in the queue. */
+        BLOCK("block");
+
+        public final String id;
+
+        OverflowPolicy(String id) {
+            this.id = id;
+        }
+
+        public static OverflowPolicy fromId(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return COALESCE;
+            }
+            for (OverflowPolicy policy : values()) {
+                if (policy.id.equalsIgnoreCase(raw.trim())) {
+                    return policy;
+                }
+            }
+            return COALESCE;
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import com.fentbuscoding.screenshotmetadata.thumbnail.PerceptualHash;
+
+import java.util.Arrays;
+
+/**
+ * Burkhard-Keller tree of 64-bit perceptual hashes under Hamming distance. Each node's
+ * children are keyed by their distance to it, and by the triangle inequality a search
+ * within {@code d} of a hash only has to descend into children keyed within {@code d} of
+ * the node's own distance.
+ *
+ * <p>That pruning only pays off for tight searches: with 64-bit hashes a search a few
+ * bits wide already visits most of the tree. The nodes are therefore kept in flat arrays,
+ * and wider searches scan the hash array from start to end instead, which is several
+ * times faster than walking the same nodes.</p>
+ *
+ * <p>A BK-tree cannot unlink a node without re-inserting its subtree, so removed entries
+ * are only marked; the tree is rebuilt from the live entries once more than half of it
+ * is marked.</p>
+ */
+final class BkTree {
+    // Widest search that still walks the tree; measured crossover with the scan
+    private static final int MAX_WALK_DISTANCE = 3;
+    // Rebuilding a small tree saves nothing
+    private static final int MIN_REBUILD_SIZE = 64;
+    private static final int NONE = -1;
+
+    private long[] hashes = new long[64];
+    private int[] ids = new int[64];
+    private boolean[] removedNodes = new boolean[64];
+    private byte[] parentDistances = new byte[64];
+    private int[] firstChildren = new int[64];
+    private int[] nextSiblings = new int[64];
+    private int nodeCount;
+    private int size;
+    private int removed;
+
+    int size() {
+        return size;
+    }
+
+    void add(int id, long hash) {
+        int node = allocate(id, hash);
+        size++;
+        if (node == 0) {
+            return;
+        }
+        int current = 0;
+        while (true) {
+            int distance = PerceptualHash.distance(hashes[current], hash);
+            int child = child(current, distance);
+            if (child == NONE) {
+                parentDistances[node] = (byte) distance;
+                nextSiblings[node] = firstChildren[current];
+                firstChildren[current] = node;
+                return;
+            }
+            current = child;
+        }
+    }
+
+    boolean remove(int id, long hash) {
+        int current = nodeCount > 0 ? 0 : NONE;
+        while (current != NONE) {
+            if (ids[current] == id && hashes[current] == hash && !removedNodes[current]) {
+                removedNodes[current] = true;
+                size--;
+                removed++;
+                if (removed > size && removed + size >= MIN_REBUILD_SIZE) {
+                    rebuild();
+                }
+                return true;
+            }
+            current = child(current, PerceptualHash.distance(hashes[current], hash));
+        }
+        return false;
+    }
+
+    /**
+     * Entries within {@code maxDistance} of {@code hash}, each packed as
+     * {@code distance << 32 | id} and sorted, so the closest come first.
+     */
+    long[] find(long hash, int maxDistance) {
+        long[] matches = new long[16];
+        int count = 0;
+        if (maxDistance > MAX_WALK_DISTANCE) {
+            for (int node = 0; node < nodeCount; node++) {
+                int distance = PerceptualHash.distance(hashes[node], hash);
+                if (distance <= maxDistance && !removedNodes[node]) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = (long) distance << 32 | ids[node];
+                }
+            }
+        } else if (nodeCount > 0) {
+            int[] pending = new int[64];
+            int top = 0;
+            pending[top++] = 0;
+            while (top > 0) {
+                int node = pending[--top];
+                int distance = PerceptualHash.distance(hashes[node], hash);
+                if (distance <= maxDistance && !removedNodes[node]) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    matches[count++] = (long) distance << 32 | ids[node];
+                }
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    if (Math.abs(parentDistances[child] - distance) <= maxDistance) {
+                        if (top == pending.length) {
+                            pending = Arrays.copyOf(pending, top * 2);
+                        }
+                        pending[top++] = child;
+                    }
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int child(int node, int distance) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (parentDistances[child] == distance) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    private int allocate(int id, long hash) {
+        if (nodeCount == hashes.length) {
+            int capacity = nodeCount * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            removedNodes = Arrays.copyOf(removedNodes, capacity);
+            parentDistances = Arrays.copyOf(parentDistances, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        int node = nodeCount++;
+        hashes[node] = hash;
+        ids[node] = id;
+        removedNodes[node] = false;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        return node;
+    }
+
+    private void rebuild() {
+        long[] oldHashes = hashes;
+        int[] oldIds = ids;
+        boolean[] oldRemoved = removedNodes;
+        int oldCount = nodeCount;
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(1, size)) * 2);
+        hashes = new long[capacity];
+        ids = new int[capacity];
+        removedNodes = new boolean[capacity];
+        parentDistances = new byte[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        nodeCount = 0;
+        size = 0;
+        removed = 0;
+        for (int node = 0; node < oldCount; node++) {
+            if (!oldRemoved[node]) {
+                add(oldIds[node], oldHashes[node]);
+            }
+        }
+    }
+}
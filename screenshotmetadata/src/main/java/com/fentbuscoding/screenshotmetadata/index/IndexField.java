@@ -0,0 +1,49 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import java.util.Locale;
+
+/**
+ * Fields of the screenshot index that can be filtered on. Matching ignores case and
+ * surrounding whitespace.
+ */
+public enum IndexField {
+    /** Singleplayer save name, or the server name in multiplayer. */
+    WORLD("world"),
+    /** Dimension id ({@code minecraft:the_nether}) or its display name. */
+    DIMENSION("dimension"),
+    /** Biome id ({@code minecraft:plains}) or its display name. */
+    BIOME("biome"),
+    /** Server name, or the address when no name was recorded. */
+    SERVER("server"),
+    GAME_MODE("game_mode"),
+    /** One of the screenshot's tags. */
+    TAG("tag");
+
+    public final String id;
+
+    IndexField(String id) {
+        this.id = id;
+    }
+
+    public static IndexField fromId(String id) {
+        if (id != null) {
+            for (IndexField field : values()) {
+                if (field.id.equalsIgnoreCase(id.trim())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The form values are stored and looked up in; null for blank values.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+}
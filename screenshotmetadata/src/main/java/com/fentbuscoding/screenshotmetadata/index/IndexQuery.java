@@ -0,0 +1,42 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A search over the screenshot index: every filter must match, and results come back
+ * newest first.
+ */
+public final class IndexQuery {
+    final List<IndexField> fields = new ArrayList<>();
+    final List<String> values = new ArrayList<>();
+    long from = Long.MIN_VALUE;
+    long to = Long.MAX_VALUE;
+    int limit = Integer.MAX_VALUE;
+
+    /**
+     * Requires {@code field} to equal {@code value}, ignoring case. Can be repeated, e.g.
+     * for several tags that must all be present. Blank values are ignored.
+     */
+    public IndexQuery where(IndexField field, String value) {
+        if (field != null && IndexField.normalize(value) != null) {
+            fields.add(field);
+            values.add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Restricts results to screenshots captured in {@code [fromMillis, toMillis]}.
+     */
+    public IndexQuery between(long fromMillis, long toMillis) {
+        this.from = fromMillis;
+        this.to = toMillis;
+        return this;
+    }
+
+    public IndexQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+}
@@ -0,0 +1,261 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.thumbnail.PerceptualHash;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The indexed view of one screenshot: where it is, the size and modification time it was
+ * indexed at, and the fields that can be searched on. Immutable.
+ */
+public final class IndexRecord {
+    final String storedPath;
+    final long size;
+    final long lastModified;
+    final long timestamp;
+    final String world;
+    final String dimension;
+    final String dimensionName;
+    final String biome;
+    final String biomeName;
+    final String server;
+    final String gameMode;
+    final List<String> tags;
+    final boolean hasCoordinates;
+    final boolean coordinatesObfuscated;
+    final int x;
+    final int y;
+    final int z;
+    final boolean hasPerceptualHash;
+    final long perceptualHash;
+
+    IndexRecord(String storedPath, long size, long lastModified, long timestamp,
+                String world, String dimension, String dimensionName, String biome, String biomeName,
+                String server, String gameMode, List<String> tags,
+                boolean hasCoordinates, boolean coordinatesObfuscated, int x, int y, int z,
+                boolean hasPerceptualHash, long perceptualHash) {
+        this.storedPath = storedPath;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.timestamp = timestamp;
+        this.world = world;
+        this.dimension = dimension;
+        this.dimensionName = dimensionName;
+        this.biome = biome;
+        this.biomeName = biomeName;
+        this.server = server;
+        this.gameMode = gameMode;
+        this.tags = tags;
+        this.hasCoordinates = hasCoordinates;
+        this.coordinatesObfuscated = coordinatesObfuscated;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.hasPerceptualHash = hasPerceptualHash;
+        this.perceptualHash = perceptualHash;
+    }
+
+    /**
+     * Builds the record for a screenshot from its metadata. The capture time falls back to
+     * the file's modification time when none was recorded.
+     */
+    static IndexRecord of(String storedPath, long size, long lastModified, ScreenshotMetadata metadata) {
+        Instant instant = metadata.getInstant(MetadataKey.TIMESTAMP);
+        if (instant == null) {
+            instant = metadata.getInstant(MetadataKey.LOCAL_TIME);
+        }
+        long timestamp = instant != null ? instant.toEpochMilli() : lastModified;
+
+        String server = serverOf(metadata);
+        Long x = whole(metadata, MetadataKey.X);
+        Long y = whole(metadata, MetadataKey.Y);
+        Long z = whole(metadata, MetadataKey.Z);
+        boolean hasCoordinates = x != null && y != null && z != null;
+        boolean obfuscated = metadata.has(MetadataKey.COORDINATES_OBFUSCATED)
+            && (metadata.hasNumber(MetadataKey.COORDINATES_OBFUSCATED)
+                ? metadata.getBoolean(MetadataKey.COORDINATES_OBFUSCATED)
+                : Boolean.parseBoolean(metadata.getText(MetadataKey.COORDINATES_OBFUSCATED)));
+        Long hash = PerceptualHash.parse(metadata.getText(MetadataKey.PERCEPTUAL_HASH));
+
+        return new IndexRecord(storedPath, size, lastModified, timestamp,
+            worldOf(metadata),
+            text(metadata, MetadataKey.DIMENSION_ID),
+            text(metadata, MetadataKey.DIMENSION),
+            text(metadata, MetadataKey.BIOME_ID),
+            text(metadata, MetadataKey.BIOME),
+            server,
+            text(metadata, MetadataKey.GAME_MODE),
+            splitTags(text(metadata, MetadataKey.TAGS)),
+            hasCoordinates, obfuscated,
+            hasCoordinates ? x.intValue() : 0,
+            hasCoordinates ? y.intValue() : 0,
+            hasCoordinates ? z.intValue() : 0,
+            hash != null, hash != null ? hash : 0L);
+    }
+
+    /**
+     * A copy of this record with a perceptual hash computed from the image itself.
+     */
+    IndexRecord withPerceptualHash(long hash) {
+        return new IndexRecord(storedPath, size, lastModified, timestamp, world, dimension, dimensionName,
+            biome, biomeName, server, gameMode, tags, hasCoordinates, coordinatesObfuscated, x, y, z, true, hash);
+    }
+
+    /**
+     * The world a screenshot belongs to as the index sees it: the singleplayer save name,
+     * or the server in multiplayer.
+     */
+    public static String worldOf(ScreenshotMetadata metadata) {
+        String world = text(metadata, MetadataKey.WORLD_NAME);
+        return world != null ? world : serverOf(metadata);
+    }
+
+    private static String serverOf(ScreenshotMetadata metadata) {
+        String server = text(metadata, MetadataKey.SERVER_NAME);
+        return server != null ? server : text(metadata, MetadataKey.SERVER_ADDRESS);
+    }
+
+    /**
+     * The screenshot file, resolved against the screenshots folder.
+     */
+    public Path getPath() {
+        return ScreenshotIndex.resolve(storedPath);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Capture time in epoch milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    /**
+     * The dimension id, e.g. {@code minecraft:overworld}.
+     */
+    public String getDimension() {
+        return dimension;
+    }
+
+    public String getDimensionName() {
+        return dimensionName;
+    }
+
+    /**
+     * The biome id, e.g. {@code minecraft:plains}.
+     */
+    public String getBiome() {
+        return biome;
+    }
+
+    public String getBiomeName() {
+        return biomeName;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getGameMode() {
+        return gameMode;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public boolean hasCoordinates() {
+        return hasCoordinates;
+    }
+
+    /**
+     * Whether the coordinates were rounded by privacy mode.
+     */
+    public boolean isCoordinatesObfuscated() {
+        return coordinatesObfuscated;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public boolean hasPerceptualHash() {
+        return hasPerceptualHash;
+    }
+
+    /**
+     * The image's {@link PerceptualHash}; only meaningful if {@link #hasPerceptualHash()}.
+     */
+    public long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    private static String text(ScreenshotMetadata metadata, MetadataKey key) {
+        String value = metadata.getText(key);
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * A whole-number value, read from the typed slot or parsed from text read back from a file.
+     */
+    private static Long whole(ScreenshotMetadata metadata, MetadataKey key) {
+        if (metadata.hasNumber(key)) {
+            return metadata.getLong(key);
+        }
+        String value = text(metadata, key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Math.floor(Double.parseDouble(value));
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private static List<String> splitTags(String raw) {
+        if (raw == null) {
+            return List.of();
+        }
+        List<String> tags = new ArrayList<>();
+        for (String part : raw.split(",")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty() && !tags.contains(trimmed)) {
+                tags.add(trimmed);
+            }
+        }
+        return List.copyOf(tags);
+    }
+}
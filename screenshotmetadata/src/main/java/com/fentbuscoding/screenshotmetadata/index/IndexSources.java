@@ -0,0 +1,88 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.catalog.ScreenshotCatalog;
+import com.fentbuscoding.screenshotmetadata.metadata.PngChunks;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads back the metadata of a screenshot that was not indexed at capture time, from
+ * whatever the writers left behind: the PNG text chunks first, then the JSON sidecar,
+ * then the session catalogs. One instance is shared by the reconcile workers.
+ */
+final class IndexSources {
+    private Map<Path, ScreenshotMetadata> catalog;
+
+    /**
+     * The screenshot's metadata; empty if no source has any.
+     */
+    ScreenshotMetadata read(Path screenshot) {
+        try {
+            Map<String, String> entries = PngChunks.readTextEntries(screenshot);
+            if (!entries.isEmpty()) {
+                return ScreenshotMetadata.fromMap(entries);
+            }
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not read text chunks of {}: {}", screenshot.getFileName(), e.getMessage());
+        }
+
+        Map<String, String> sidecar = readJsonSidecar(screenshot);
+        if (!sidecar.isEmpty()) {
+            return ScreenshotMetadata.fromMap(sidecar);
+        }
+
+        ScreenshotMetadata recorded = catalog().get(screenshot.toAbsolutePath().normalize());
+        return recorded != null ? recorded : new ScreenshotMetadata();
+    }
+
+    /**
+     * Every screenshot in the catalogs, read once per reconcile and only if some screenshot
+     * has neither text chunks nor a sidecar. Later records win.
+     */
+    private synchronized Map<Path, ScreenshotMetadata> catalog() {
+        if (catalog == null) {
+            catalog = new HashMap<>();
+            ScreenshotCatalog.readAll(entry ->
+                catalog.put(entry.getScreenshot().toAbsolutePath().normalize(), entry.getMetadata()));
+        }
+        return catalog;
+    }
+
+    private static Map<String, String> readJsonSidecar(Path screenshot) {
+        String name = screenshot.getFileName().toString();
+        int dotIndex = name.lastIndexOf('.');
+        Path sidecar = screenshot.resolveSibling((dotIndex > 0 ? name.substring(0, dotIndex) : name) + ".json");
+        if (!Files.isRegularFile(sidecar)) {
+            return Map.of();
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            JsonElement root = JsonParser.parseReader(reader);
+            if (root.isJsonObject() && root.getAsJsonObject().has("metadata")
+                && root.getAsJsonObject().get("metadata").isJsonObject()) {
+                JsonObject metadata = root.getAsJsonObject().getAsJsonObject("metadata");
+                for (Map.Entry<String, JsonElement> entry : metadata.entrySet()) {
+                    if (entry.getValue().isJsonPrimitive()) {
+                        values.put(entry.getKey(), entry.getValue().getAsString());
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not read JSON sidecar {}: {}", sidecar.getFileName(), e.getMessage());
+        }
+        return values;
+    }
+}
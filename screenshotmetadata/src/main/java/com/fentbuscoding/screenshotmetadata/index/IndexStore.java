@@ -0,0 +1,144 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes the index file. Only the records are stored; the lookup structures are
+ * rebuilt from them on load, which takes a few milliseconds even for large archives.
+ */
+final class IndexStore {
+    private static final int MAGIC = 0x534D4958; // "SMIX"
+    private static final int VERSION = 2;
+    // Version 1 had no perceptual hashes; its records are read and rewritten as version 2
+    private static final int OLDEST_READABLE_VERSION = 1;
+
+    private IndexStore() {
+    }
+
+    /**
+     * @return The stored records, or an empty list if there is no index file yet
+     * @throws IOException if the file is unreadable or from another version
+     */
+    static List<IndexRecord> load(Path file) throws IOException {
+        List<IndexRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a screenshot index");
+            }
+            int version = in.readInt();
+            if (version < OLDEST_READABLE_VERSION || version > VERSION) {
+                throw new IOException("Unsupported index version " + version);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                records.add(readRecord(in));
+            }
+        } catch (NoSuchFileException e) {
+            return records;
+        }
+        return records;
+    }
+
+    /**
+     * Writes the records to a temp file and moves it over the index, so a crash leaves
+     * either the old or the new index.
+     */
+    static void save(Path file, Collection<IndexRecord> records) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            for (IndexRecord record : records) {
+                writeRecord(out, record);
+            }
+        }
+        try {
+            Files.move(tempPath, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException atomicFailure) {
+            Files.move(tempPath, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, IndexRecord record) throws IOException {
+        out.writeUTF(record.storedPath);
+        out.writeLong(record.size);
+        out.writeLong(record.lastModified);
+        out.writeLong(record.timestamp);
+        writeOptional(out, record.world);
+        writeOptional(out, record.dimension);
+        writeOptional(out, record.dimensionName);
+        writeOptional(out, record.biome);
+        writeOptional(out, record.biomeName);
+        writeOptional(out, record.server);
+        writeOptional(out, record.gameMode);
+        out.writeShort(record.tags.size());
+        for (String tag : record.tags) {
+            out.writeUTF(tag);
+        }
+        out.writeByte((record.hasCoordinates ? 1 : 0) | (record.coordinatesObfuscated ? 2 : 0)
+            | (record.hasPerceptualHash ? 4 : 0));
+        if (record.hasCoordinates) {
+            out.writeInt(record.x);
+            out.writeInt(record.y);
+            out.writeInt(record.z);
+        }
+        if (record.hasPerceptualHash) {
+            out.writeLong(record.perceptualHash);
+        }
+    }
+
+    private static IndexRecord readRecord(DataInputStream in) throws IOException {
+        String storedPath = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        long timestamp = in.readLong();
+        String world = readOptional(in);
+        String dimension = readOptional(in);
+        String dimensionName = readOptional(in);
+        String biome = readOptional(in);
+        String biomeName = readOptional(in);
+        String server = readOptional(in);
+        String gameMode = readOptional(in);
+        int tagCount = in.readUnsignedShort();
+        List<String> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(in.readUTF());
+        }
+        int flags = in.readUnsignedByte();
+        boolean hasCoordinates = (flags & 1) != 0;
+        int x = hasCoordinates ? in.readInt() : 0;
+        int y = hasCoordinates ? in.readInt() : 0;
+        int z = hasCoordinates ? in.readInt() : 0;
+        boolean hasPerceptualHash = (flags & 4) != 0;
+        long perceptualHash = hasPerceptualHash ? in.readLong() : 0L;
+        return new IndexRecord(storedPath, size, lastModified, timestamp,
+            world, dimension, dimensionName, biome, biomeName, server, gameMode, List.copyOf(tags),
+            hasCoordinates, (flags & 2) != 0, x, y, z, hasPerceptualHash, perceptualHash);
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        // writeUTF is limited to 64 KB; index fields are short, so longer values are cut
+        String stored = value != null && value.length() > 8192 ? value.substring(0, 8192) : value;
+        out.writeBoolean(stored != null);
+        if (stored != null) {
+            out.writeUTF(stored);
+        }
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
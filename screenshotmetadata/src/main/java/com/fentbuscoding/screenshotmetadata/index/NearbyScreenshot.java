@@ -0,0 +1,26 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+/**
+ * A result of {@link ScreenshotIndex#findNear}: a screenshot and how far from the query
+ * point it was taken.
+ */
+public final class NearbyScreenshot {
+    private final IndexRecord record;
+    private final double distance;
+
+    NearbyScreenshot(IndexRecord record, double distance) {
+        this.record = record;
+        this.distance = distance;
+    }
+
+    public IndexRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Horizontal (X/Z) distance in blocks.
+     */
+    public double getDistance() {
+        return distance;
+    }
+}
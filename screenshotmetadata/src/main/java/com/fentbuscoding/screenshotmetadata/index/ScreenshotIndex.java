@@ -0,0 +1,658 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.thumbnail.PerceptualHash;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Searchable index of every screenshot in the screenshots folder, kept in
+ * {@code screenshots/index} between sessions.
+ *
+ * <p>Each record gets a small integer id. Every {@link IndexField} maps its values to the
+ * set of ids holding them, and the ids are also kept sorted by capture time, so a query
+ * intersects a few bit sets and walks one time range instead of touching every record.
+ * New screenshots are added as they are written. On startup the folder is compared with
+ * the stored records by size and modification time, and only new or changed files are
+ * read again.</p>
+ *
+ * <p>Screenshots with coordinates are also kept in a quadtree per world and dimension for
+ * {@link #findNear} queries, and screenshots with a perceptual hash in a BK-tree for
+ * {@link #findSimilar} queries.</p>
+ *
+ * <p>The startup reconcile reads changed files on several threads, and hashes the
+ * screenshots that have no hash yet when duplicate detection is on.</p>
+ */
+public final class ScreenshotIndex {
+    private static final String DIRECTORY = "index";
+    private static final String FILE_NAME = "screenshots.smidx";
+    private static final long SAVE_DELAY_MILLIS = 5_000L;
+    private static final int MAX_RECONCILE_THREADS = 8;
+
+    private static final Object LOCK = new Object();
+    private static final Object SAVE_LOCK = new Object();
+    // Replaced as a whole once the stored index is loaded, so queries never wait on the load
+    private static Tables tables = new Tables();
+
+    private static Thread indexer;
+    private static boolean dirty;
+    private static volatile boolean ready;
+
+    private ScreenshotIndex() {
+    }
+
+    /**
+     * Loads the index and reconciles it with the screenshots folder in the background, if
+     * indexing is enabled. Later calls do nothing.
+     */
+    public static void applyConfig() {
+        if (!ScreenshotMetadataConfig.get().indexScreenshots) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (indexer != null) {
+                return;
+            }
+            indexer = new Thread(ScreenshotIndex::runIndexer, "Screenshot Metadata Index");
+            indexer.setDaemon(true);
+            indexer.start();
+        }
+    }
+
+    /**
+     * Whether the startup reconcile has finished; until then queries only see what the
+     * stored index and this session's screenshots contain.
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds or replaces the record for a screenshot that was just written.
+     */
+    public static void update(File screenshotFile, ScreenshotMetadata metadata) {
+        if (screenshotFile == null || metadata == null || !ScreenshotMetadataConfig.get().indexScreenshots) {
+            return;
+        }
+        try {
+            Path path = screenshotFile.toPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            IndexRecord record = IndexRecord.of(storedPath(path), attributes.size(),
+                attributes.lastModifiedTime().toMillis(), metadata);
+            synchronized (LOCK) {
+                tables.put(record);
+                markDirty();
+            }
+        } catch (IOException | RuntimeException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Failed to index {}: {}", screenshotFile.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Screenshots matching every filter of {@code query}, newest first.
+     */
+    public static List<IndexRecord> find(IndexQuery query) {
+        synchronized (LOCK) {
+            BitSet candidates = null;
+            for (int i = 0; i < query.fields.size(); i++) {
+                BitSet posting = tables.postings.get(query.fields.get(i)).get(IndexField.normalize(query.values.get(i)));
+                if (posting == null) {
+                    return List.of();
+                }
+                if (candidates == null) {
+                    candidates = (BitSet) posting.clone();
+                } else {
+                    candidates.and(posting);
+                }
+            }
+
+            List<IndexRecord> results = new ArrayList<>();
+            int low = tables.firstAtOrAfter(query.from);
+            int high = query.to == Long.MAX_VALUE ? tables.byTimeSize : tables.firstAtOrAfter(query.to + 1);
+            for (int i = high - 1; i >= low && results.size() < query.limit; i--) {
+                int id = tables.byTime[i];
+                if (candidates == null || candidates.get(id)) {
+                    results.add(tables.records.get(id));
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Screenshots taken within {@code radius} blocks (horizontally) of (x, z) in the given
+     * world and dimension, nearest first. Answered from memory; no file is read.
+     *
+     * @param world World as recorded by the index, see {@link IndexRecord#worldOf}
+     * @param dimension Dimension id, e.g. {@code minecraft:the_nether}
+     */
+    public static List<NearbyScreenshot> findNear(String world, String dimension,
+                                                  double x, double z, double radius, int limit) {
+        synchronized (LOCK) {
+            SpatialTree tree = tables.spatial.get(spatialKey(world, dimension));
+            if (tree == null || limit <= 0) {
+                return List.of();
+            }
+            double[] distances = new double[Math.min(limit, tree.size())];
+            int[] ids = tree.nearest(x, z, radius, limit, distances);
+            List<NearbyScreenshot> results = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                results.add(new NearbyScreenshot(tables.records.get(ids[i]), distances[i]));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Screenshots whose perceptual hash is within {@code maxDistance} bits of {@code hash},
+     * closest first and newest first among equally close ones. Answered from memory.
+     *
+     * @see PerceptualHash#distance
+     */
+    public static List<SimilarScreenshot> findSimilar(long hash, int maxDistance, int limit) {
+        synchronized (LOCK) {
+            if (limit <= 0) {
+                return List.of();
+            }
+            long[] matches = tables.similar.find(hash, maxDistance);
+            List<SimilarScreenshot> results = new ArrayList<>(matches.length);
+            for (long match : matches) {
+                results.add(new SimilarScreenshot(tables.records.get((int) match), (int) (match >>> 32)));
+            }
+            results.sort(Comparator.comparingInt(SimilarScreenshot::getDistance)
+                .thenComparing(result -> result.getRecord().timestamp, Comparator.reverseOrder()));
+            return results.size() > limit ? List.copyOf(results.subList(0, limit)) : results;
+        }
+    }
+
+    /**
+     * The distinct values of a field (lower case) with the number of screenshots holding each.
+     */
+    public static Map<String, Integer> facet(IndexField field) {
+        synchronized (LOCK) {
+            Map<String, Integer> counts = new TreeMap<>();
+            tables.postings.get(field).forEach((value, ids) -> counts.put(value, ids.cardinality()));
+            return counts;
+        }
+    }
+
+    /**
+     * The record of one screenshot; null if it is not indexed.
+     */
+    public static IndexRecord get(Path screenshot) {
+        synchronized (LOCK) {
+            Integer id = tables.ids.get(storedPath(screenshot));
+            return id != null ? tables.records.get(id) : null;
+        }
+    }
+
+    public static int size() {
+        synchronized (LOCK) {
+            return tables.ids.size();
+        }
+    }
+
+    /**
+     * Writes the index to disk if it changed since the last save.
+     */
+    public static void save() {
+        // Held across snapshot and write so an older snapshot never overwrites a newer one
+        synchronized (SAVE_LOCK) {
+            List<IndexRecord> snapshot;
+            synchronized (LOCK) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                snapshot = tables.liveRecords();
+            }
+            try {
+                IndexStore.save(getFile(), snapshot);
+                ScreenshotMetadataMod.LOGGER.debug("Saved screenshot index ({} records)", snapshot.size());
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Failed to save screenshot index: {}", e.getMessage());
+                synchronized (LOCK) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    public static Path getScreenshotsDirectory() {
+        return FabricLoader.getInstance().getGameDir().resolve("screenshots").toAbsolutePath().normalize();
+    }
+
+    static Path resolve(String storedPath) {
+        Path path = Path.of(storedPath);
+        return path.isAbsolute() ? path : getScreenshotsDirectory().resolve(path);
+    }
+
+    /**
+     * Paths inside the screenshots folder are stored relative to it, so the index survives
+     * moving the game directory.
+     */
+    static String storedPath(Path screenshot) {
+        Path absolute = screenshot.toAbsolutePath().normalize();
+        Path base = getScreenshotsDirectory();
+        if (absolute.startsWith(base)) {
+            return base.relativize(absolute).toString().replace('\\', '/');
+        }
+        return absolute.toString();
+    }
+
+    private static Path getFile() {
+        return getScreenshotsDirectory().resolve(DIRECTORY).resolve(FILE_NAME);
+    }
+
+    private static void runIndexer() {
+        load();
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            ScreenshotMetadataMod.LOGGER.error("Screenshot index reconcile failed", e);
+        }
+        ready = true;
+        while (true) {
+            synchronized (LOCK) {
+                while (!dirty) {
+                    try {
+                        LOCK.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            try {
+                // Let a burst of screenshots settle into one save
+                Thread.sleep(SAVE_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                save();
+                return;
+            }
+            save();
+        }
+    }
+
+    private static void load() {
+        long start = System.nanoTime();
+        List<IndexRecord> stored;
+        try {
+            stored = IndexStore.load(getFile());
+        } catch (IOException | RuntimeException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Screenshot index unreadable, rebuilding it: {}", e.getMessage());
+            return;
+        }
+        // Built without the lock, which queries would otherwise wait on for the whole load
+        Tables loaded = new Tables();
+        loaded.putAll(stored);
+        synchronized (LOCK) {
+            // Records added by captures during startup are newer than the stored ones
+            for (IndexRecord record : tables.liveRecords()) {
+                loaded.put(record);
+            }
+            tables = loaded;
+        }
+        ScreenshotMetadataMod.LOGGER.debug("Loaded screenshot index: {} records in {} ms",
+            stored.size(), (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * Brings the index in line with the screenshots folder: drops records of deleted files
+     * and re-reads files that are new or whose size or modification time changed. With
+     * duplicate detection on, records without a perceptual hash are hashed from the image.
+     */
+    private static void reconcile() {
+        long start = System.nanoTime();
+        // Taken before listing, so screenshots indexed meanwhile are never mistaken for deleted ones
+        Map<String, IndexRecord> known = new HashMap<>();
+        synchronized (LOCK) {
+            for (IndexRecord record : tables.liveRecords()) {
+                known.put(record.storedPath, record);
+            }
+        }
+
+        Map<String, Path> onDisk = new HashMap<>();
+        Map<String, BasicFileAttributes> attributes = new HashMap<>();
+        Path dir = getScreenshotsDirectory();
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+                path -> path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png"))) {
+                for (Path path : stream) {
+                    readAttributes(path, storedPath(path), onDisk, attributes);
+                }
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Failed to list screenshots for the index: {}", e.getMessage());
+                return;
+            }
+        }
+        // Screenshots outside the folder (external captures) are checked one by one
+        for (IndexRecord record : known.values()) {
+            Path path = Path.of(record.storedPath);
+            if (path.isAbsolute()) {
+                readAttributes(path, record.storedPath, onDisk, attributes);
+            }
+        }
+
+        int removed = 0;
+        for (IndexRecord record : known.values()) {
+            if (!onDisk.containsKey(record.storedPath) && removeIfUnchanged(record)) {
+                removed++;
+            }
+        }
+
+        boolean hashing = ScreenshotMetadataConfig.get().perceptualHash;
+        List<String> pending = new ArrayList<>();
+        for (Map.Entry<String, Path> entry : onDisk.entrySet()) {
+            IndexRecord previous = known.get(entry.getKey());
+            BasicFileAttributes attrs = attributes.get(entry.getKey());
+            if (previous == null || previous.size != attrs.size()
+                || previous.lastModified != attrs.lastModifiedTime().toMillis()
+                || hashing && !previous.hasPerceptualHash) {
+                pending.add(entry.getKey());
+            }
+        }
+
+        // Reading is mostly waiting on the disk and decoding, so the files are shared among threads
+        IndexSources sources = new IndexSources();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger changed = new AtomicInteger();
+        Runnable worker = () -> {
+            for (int i = next.getAndIncrement(); i < pending.size(); i = next.getAndIncrement()) {
+                String storedPath = pending.get(i);
+                if (reindex(storedPath, onDisk.get(storedPath), attributes.get(storedPath),
+                    known.get(storedPath), sources, hashing)) {
+                    changed.incrementAndGet();
+                }
+            }
+        };
+        int threads = Math.min(pending.size(),
+            Math.min(MAX_RECONCILE_THREADS, Runtime.getRuntime().availableProcessors()));
+        List<Thread> helpers = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Thread helper = new Thread(worker, "Screenshot Metadata Index-" + i);
+            helper.setDaemon(true);
+            helper.setPriority(Thread.MIN_PRIORITY);
+            helper.start();
+            helpers.add(helper);
+        }
+        worker.run();
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        synchronized (LOCK) {
+            if (changed.get() > 0 || removed > 0) {
+                markDirty();
+            }
+        }
+        ScreenshotMetadataMod.LOGGER.info("Screenshot index ready: {} screenshot(s), {} added or changed, {} removed, {} ms",
+            size(), changed.get(), removed, (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * Reads one screenshot again, or only hashes it if the file did not change.
+     *
+     * @return Whether the index changed
+     */
+    private static boolean reindex(String storedPath, Path path, BasicFileAttributes attrs,
+                                   IndexRecord previous, IndexSources sources, boolean hashing) {
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        try {
+            IndexRecord record = previous != null && previous.size == size && previous.lastModified == lastModified
+                ? previous
+                : IndexRecord.of(storedPath, size, lastModified, sources.read(path));
+            if (hashing && !record.hasPerceptualHash) {
+                try {
+                    record = record.withPerceptualHash(PerceptualHash.read(path));
+                } catch (IOException | RuntimeException e) {
+                    ScreenshotMetadataMod.LOGGER.debug("Could not hash {}: {}", path.getFileName(), e.getMessage());
+                }
+            }
+            return record != previous && replaceIfUnchanged(previous, record);
+        } catch (RuntimeException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Failed to index {}: {}", path.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static void readAttributes(Path path,
+                                       String storedPath,
+                                       Map<String, Path> onDisk,
+                                       Map<String, BasicFileAttributes> attributes) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (attrs.isRegularFile()) {
+                onDisk.put(storedPath, path);
+                attributes.put(storedPath, attrs);
+            }
+        } catch (IOException ignored) {
+            // Gone or unreadable; treated as deleted
+        }
+    }
+
+    private static boolean removeIfUnchanged(IndexRecord expected) {
+        synchronized (LOCK) {
+            Integer id = tables.ids.get(expected.storedPath);
+            if (id == null || tables.records.get(id) != expected) {
+                return false;
+            }
+            tables.unlink(id);
+            return true;
+        }
+    }
+
+    private static boolean replaceIfUnchanged(IndexRecord expected, IndexRecord record) {
+        synchronized (LOCK) {
+            Integer id = tables.ids.get(record.storedPath);
+            IndexRecord current = id != null ? tables.records.get(id) : null;
+            if (current != expected) {
+                return false;
+            }
+            tables.put(record);
+            return true;
+        }
+    }
+
+    private static void markDirty() {
+        dirty = true;
+        LOCK.notifyAll();
+    }
+
+    private static String spatialKey(String world, String dimension) {
+        String normalizedWorld = IndexField.normalize(world);
+        String normalizedDimension = IndexField.normalize(dimension);
+        return (normalizedWorld != null ? normalizedWorld : "") + '\n'
+            + (normalizedDimension != null ? normalizedDimension : "");
+    }
+
+    private static void forEachValue(IndexRecord record, BiConsumer<IndexField, String> consumer) {
+        accept(consumer, IndexField.WORLD, record.world);
+        accept(consumer, IndexField.DIMENSION, record.dimension);
+        accept(consumer, IndexField.DIMENSION, record.dimensionName);
+        accept(consumer, IndexField.BIOME, record.biome);
+        accept(consumer, IndexField.BIOME, record.biomeName);
+        accept(consumer, IndexField.SERVER, record.server);
+        accept(consumer, IndexField.GAME_MODE, record.gameMode);
+        for (String tag : record.tags) {
+            accept(consumer, IndexField.TAG, tag);
+        }
+    }
+
+    private static void accept(BiConsumer<IndexField, String> consumer, IndexField field, String value) {
+        String normalized = IndexField.normalize(value);
+        if (normalized != null) {
+            consumer.accept(field, normalized);
+        }
+    }
+
+    /**
+     * The records and every structure derived from them. Guarded by {@code LOCK} once
+     * published; {@link #load} fills a fresh instance without holding it.
+     */
+    private static final class Tables {
+        private final List<IndexRecord> records = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final BitSet live = new BitSet();
+        private final Map<IndexField, Map<String, BitSet>> postings = new EnumMap<>(IndexField.class);
+        // One quadtree of record ids per world and dimension
+        private final Map<String, SpatialTree> spatial = new HashMap<>();
+        private final BkTree similar = new BkTree();
+        // Live ids ordered by capture time
+        private int[] byTime = new int[256];
+        private int byTimeSize;
+
+        private Tables() {
+            for (IndexField field : IndexField.values()) {
+                postings.put(field, new HashMap<>());
+            }
+        }
+
+        private List<IndexRecord> liveRecords() {
+            List<IndexRecord> result = new ArrayList<>(ids.size());
+            for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+                result.add(records.get(id));
+            }
+            return result;
+        }
+
+        /**
+         * Adds records to an empty instance, sorting the capture-time order once at the
+         * end instead of shifting it for every record.
+         */
+        private void putAll(List<IndexRecord> stored) {
+            for (IndexRecord record : stored) {
+                if (!ids.containsKey(record.storedPath)) {
+                    link(record);
+                }
+            }
+            Integer[] order = new Integer[ids.size()];
+            int count = 0;
+            for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+                order[count++] = id;
+            }
+            // Stable, so records with the same time stay in insertion order like put() keeps them
+            Arrays.sort(order, Comparator.comparingLong(id -> records.get(id).timestamp));
+            byTime = new int[Math.max(256, count)];
+            for (int i = 0; i < count; i++) {
+                byTime[i] = order[i];
+            }
+            byTimeSize = count;
+        }
+
+        private void put(IndexRecord record) {
+            Integer existing = ids.get(record.storedPath);
+            if (existing != null) {
+                unlink(existing);
+            }
+            int id = link(record);
+            int position = firstAtOrAfter(record.timestamp + 1);
+            if (byTimeSize == byTime.length) {
+                byTime = Arrays.copyOf(byTime, byTime.length * 2);
+            }
+            System.arraycopy(byTime, position, byTime, position + 1, byTimeSize - position);
+            byTime[position] = id;
+            byTimeSize++;
+        }
+
+        /**
+         * Adds a record to everything except the capture-time order.
+         */
+        private int link(IndexRecord record) {
+            int id = live.nextClearBit(0);
+            if (id == records.size()) {
+                records.add(record);
+            } else {
+                records.set(id, record);
+            }
+            live.set(id);
+            ids.put(record.storedPath, id);
+            forEachValue(record, (field, value) ->
+                postings.get(field).computeIfAbsent(value, ignored -> new BitSet()).set(id));
+            if (record.hasCoordinates) {
+                spatial.computeIfAbsent(spatialKey(record.world, record.dimension), ignored -> new SpatialTree())
+                    .insert(id, record.x, record.z);
+            }
+            if (record.hasPerceptualHash) {
+                similar.add(id, record.perceptualHash);
+            }
+            return id;
+        }
+
+        private void unlink(int id) {
+            IndexRecord record = records.get(id);
+            forEachValue(record, (field, value) -> {
+                Map<String, BitSet> values = postings.get(field);
+                BitSet holders = values.get(value);
+                if (holders != null) {
+                    holders.clear(id);
+                    if (holders.isEmpty()) {
+                        values.remove(value);
+                    }
+                }
+            });
+            for (int i = firstAtOrAfter(record.timestamp); i < byTimeSize; i++) {
+                if (byTime[i] == id) {
+                    System.arraycopy(byTime, i + 1, byTime, i, byTimeSize - i - 1);
+                    byTimeSize--;
+                    break;
+                }
+            }
+            if (record.hasCoordinates) {
+                String key = spatialKey(record.world, record.dimension);
+                SpatialTree tree = spatial.get(key);
+                if (tree != null && tree.remove(id, record.x, record.z) && tree.size() == 0) {
+                    spatial.remove(key);
+                }
+            }
+            if (record.hasPerceptualHash) {
+                similar.remove(id, record.perceptualHash);
+            }
+            ids.remove(record.storedPath);
+            live.clear(id);
+            records.set(id, null);
+        }
+
+        /**
+         * Index of the first id in capture order whose timestamp is at least {@code timestamp}.
+         */
+        private int firstAtOrAfter(long timestamp) {
+            int low = 0;
+            int high = byTimeSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (records.get(byTime[mid]).timestamp < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+/**
+ * A result of {@link ScreenshotIndex#findSimilar}: a screenshot and how far its
+ * perceptual hash is from the query hash.
+ */
+public final class SimilarScreenshot {
+    private final IndexRecord record;
+    private final int distance;
+
+    SimilarScreenshot(IndexRecord record, int distance) {
+        this.record = record;
+        this.distance = distance;
+    }
+
+    public IndexRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Differing hash bits, from 0 (same image) to 64.
+     */
+    public int getDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,244 @@
+package com.fentbuscoding.screenshotmetadata.index;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Point quadtree over block X/Z for one world and dimension. Leaves hold up to
+ * {@link #LEAF_CAPACITY} points and split into four when full; the root covers the whole
+ * world border, so it never has to grow.
+ *
+ * <p>Nearest-first search keeps a queue of nodes by their closest possible distance and
+ * of points by their actual distance, so results come out already sorted and only the
+ * nodes that can still hold a closer point are visited.</p>
+ */
+final class SpatialTree {
+    private static final int LEAF_CAPACITY = 16;
+    /** Half the root's side; just beyond the 30 million block world border. */
+    private static final int ROOT_HALF_SIZE = 1 << 25;
+
+    private final Node root = new Node(-ROOT_HALF_SIZE, -ROOT_HALF_SIZE, 2L * ROOT_HALF_SIZE);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(int id, int x, int z) {
+        root.insert(id, clamp(x), clamp(z));
+        size++;
+    }
+
+    boolean remove(int id, int x, int z) {
+        if (root.remove(id, clamp(x), clamp(z))) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ids of the points within {@code radius} blocks of (x, z), nearest first.
+     *
+     * @param distances Receives the distance of each returned id, in the same order
+     * @return Up to {@code limit} ids
+     */
+    int[] nearest(double x, double z, double radius, int limit, double[] distances) {
+        int count = Math.min(limit, distances.length);
+        int[] ids = new int[count];
+        int found = 0;
+        double radiusSquared = radius * radius;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(root.distanceSquared(x, z), root, -1));
+        while (found < count && !queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            if (candidate.distanceSquared > radiusSquared) {
+                break;
+            }
+            Node node = candidate.node;
+            if (node == null) {
+                ids[found] = candidate.id;
+                distances[found] = Math.sqrt(candidate.distanceSquared);
+                found++;
+            } else if (node.children == null) {
+                for (int i = 0; i < node.count; i++) {
+                    double dx = node.xs[i] - x;
+                    double dz = node.zs[i] - z;
+                    double distanceSquared = dx * dx + dz * dz;
+                    if (distanceSquared <= radiusSquared) {
+                        queue.add(new Candidate(distanceSquared, null, node.ids[i]));
+                    }
+                }
+            } else {
+                for (Node child : node.children) {
+                    if (child != null && !child.isEmpty()) {
+                        double distanceSquared = child.distanceSquared(x, z);
+                        if (distanceSquared <= radiusSquared) {
+                            queue.add(new Candidate(distanceSquared, child, -1));
+                        }
+                    }
+                }
+            }
+        }
+        return found == count ? ids : Arrays.copyOf(ids, found);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(-ROOT_HALF_SIZE, Math.min(ROOT_HALF_SIZE - 1, value));
+    }
+
+    private static final class Node {
+        private final long minX;
+        private final long minZ;
+        private final long side;
+        private int[] ids = new int[LEAF_CAPACITY];
+        private int[] xs = new int[LEAF_CAPACITY];
+        private int[] zs = new int[LEAF_CAPACITY];
+        private int count;
+        private Node[] children;
+        private int total;
+
+        private Node(long minX, long minZ, long side) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.side = side;
+        }
+
+        private boolean isEmpty() {
+            return total == 0;
+        }
+
+        private void insert(int id, int x, int z) {
+            total++;
+            if (children != null) {
+                child(x, z, true).insert(id, x, z);
+                return;
+            }
+            // A one-block leaf cannot split, so it keeps every point stacked on that block
+            if (count == ids.length && side > 1) {
+                split();
+                child(x, z, true).insert(id, x, z);
+                return;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                xs = Arrays.copyOf(xs, count * 2);
+                zs = Arrays.copyOf(zs, count * 2);
+            }
+            ids[count] = id;
+            xs[count] = x;
+            zs[count] = z;
+            count++;
+        }
+
+        private boolean remove(int id, int x, int z) {
+            boolean removed;
+            if (children != null) {
+                Node child = child(x, z, false);
+                removed = child != null && child.remove(id, x, z);
+            } else {
+                removed = false;
+                for (int i = 0; i < count; i++) {
+                    if (ids[i] == id) {
+                        count--;
+                        ids[i] = ids[count];
+                        xs[i] = xs[count];
+                        zs[i] = zs[count];
+                        removed = true;
+                        break;
+                    }
+                }
+            }
+            if (removed) {
+                total--;
+                if (children != null && total <= LEAF_CAPACITY / 2) {
+                    merge();
+                }
+            }
+            return removed;
+        }
+
+        private void split() {
+            children = new Node[4];
+            int[] oldIds = ids;
+            int[] oldXs = xs;
+            int[] oldZs = zs;
+            int oldCount = count;
+            ids = null;
+            xs = null;
+            zs = null;
+            count = 0;
+            for (int i = 0; i < oldCount; i++) {
+                child(oldXs[i], oldZs[i], true).insert(oldIds[i], oldXs[i], oldZs[i]);
+            }
+        }
+
+        /**
+         * Collapses a sparse subtree back into one leaf.
+         */
+        private void merge() {
+            int[] mergedIds = new int[Math.max(LEAF_CAPACITY, total)];
+            int[] mergedXs = new int[mergedIds.length];
+            int[] mergedZs = new int[mergedIds.length];
+            int[] position = {0};
+            collect(mergedIds, mergedXs, mergedZs, position);
+            children = null;
+            ids = mergedIds;
+            xs = mergedXs;
+            zs = mergedZs;
+            count = position[0];
+        }
+
+        private void collect(int[] outIds, int[] outXs, int[] outZs, int[] position) {
+            if (children == null) {
+                System.arraycopy(ids, 0, outIds, position[0], count);
+                System.arraycopy(xs, 0, outXs, position[0], count);
+                System.arraycopy(zs, 0, outZs, position[0], count);
+                position[0] += count;
+                return;
+            }
+            for (Node child : children) {
+                if (child != null) {
+                    child.collect(outIds, outXs, outZs, position);
+                }
+            }
+        }
+
+        private Node child(int x, int z, boolean create) {
+            long half = side / 2;
+            int index = (x >= minX + half ? 1 : 0) | (z >= minZ + half ? 2 : 0);
+            Node child = children[index];
+            if (child == null && create) {
+                child = new Node((index & 1) != 0 ? minX + half : minX, (index & 2) != 0 ? minZ + half : minZ, half);
+                children[index] = child;
+            }
+            return child;
+        }
+
+        /**
+         * Squared distance from (x, z) to the closest point of this node's square.
+         */
+        private double distanceSquared(double x, double z) {
+            double dx = Math.max(0.0, Math.max(minX - x, x - (minX + side - 1)));
+            double dz = Math.max(0.0, Math.max(minZ - z, z - (minZ + side - 1)));
+            return dx * dx + dz * dz;
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        private final double distanceSquared;
+        private final Node node;
+        private final int id;
+
+        private Candidate(double distanceSquared, Node node, int id) {
+            this.distanceSquared = distanceSquared;
+            this.node = node;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(distanceSquared, other.distanceSquared);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records which folders have had PNGs appended to in place, so files left without IEND
+ * by a crash are repaired on the next start instead of staying truncated.
+ *
+ * <p>The journal holds the time of the first append and one line per folder. It is
+ * written and synced only when a new folder is seen, so batched appends keep their
+ * single sync. A clean shutdown deletes it; when one is found at startup, the PNGs
+ * changed since that time in the listed folders are checked.</p>
+ */
+public final class AppendJournal {
+    private static final String FILE_NAME = ".screenshotmetadata-appends";
+    // File times can be coarser than the clock
+    private static final long MODIFIED_SLACK_MILLIS = 2_000L;
+
+    private static final Object LOCK = new Object();
+    private static final Set<Path> FOLDERS = new LinkedHashSet<>();
+    private static long startedAt;
+
+    private AppendJournal() {
+    }
+
+    /**
+     * Makes sure the folder of {@code file} is on disk in the journal before it is
+     * appended to.
+     *
+     * @return false if the journal could not be written, in which case the file must be
+     *         rewritten rather than edited in place
+     */
+    static boolean record(Path file) {
+        Path folder = file.toAbsolutePath().normalize().getParent();
+        synchronized (LOCK) {
+            if (FOLDERS.contains(folder)) {
+                return true;
+            }
+            if (FOLDERS.isEmpty()) {
+                startedAt = System.currentTimeMillis();
+            }
+            FOLDERS.add(folder);
+            try {
+                write();
+                return true;
+            } catch (IOException e) {
+                FOLDERS.remove(folder);
+                ScreenshotMetadataMod.LOGGER.warn("Could not update {}, rewriting instead of appending: {}",
+                    FILE_NAME, e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Deletes the journal once every append has completed and been synced.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            if (FOLDERS.isEmpty()) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(getFile());
+                FOLDERS.clear();
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Could not delete {}: {}", FILE_NAME, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Repairs the PNGs an unclean shutdown may have left without IEND, then deletes the
+     * journal. Runs before any metadata is written in this session.
+     */
+    public static void recover() {
+        Path journal = getFile();
+        if (!Files.exists(journal)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Could not read {}: {}", FILE_NAME, e.getMessage());
+            return;
+        }
+
+        long since;
+        try {
+            since = lines.isEmpty() ? 0L : Long.parseLong(lines.get(0).trim()) - MODIFIED_SLACK_MILLIS;
+        } catch (NumberFormatException e) {
+            // Without a start time every PNG in the listed folders is checked
+            since = 0L;
+        }
+        int repaired = 0;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                repaired += repairFolder(Path.of(line), since);
+            } catch (InvalidPathException e) {
+                ScreenshotMetadataMod.LOGGER.debug("Skipping unreadable journal entry {}", line);
+            }
+        }
+
+        try {
+            Files.deleteIfExists(journal);
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Could not delete {}: {}", FILE_NAME, e.getMessage());
+        }
+        if (repaired > 0) {
+            ScreenshotMetadataMod.LOGGER.info("Repaired {} screenshot(s) left incomplete by an interrupted metadata write",
+                repaired);
+        }
+    }
+
+    private static int repairFolder(Path folder, long since) {
+        if (!Files.isDirectory(folder)) {
+            return 0;
+        }
+        int repaired = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*.png")) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() >= since
+                        && PngChunkSplicer.repairTail(file.toFile())) {
+                        repaired++;
+                    }
+                } catch (IOException e) {
+                    ScreenshotMetadataMod.LOGGER.debug("Could not check {}: {}", file.getFileName(), e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            ScreenshotMetadataMod.LOGGER.warn("Could not scan {} for interrupted writes: {}", folder, e.getMessage());
+        }
+        return repaired;
+    }
+
+    private static void write() throws IOException {
+        StringBuilder content = new StringBuilder().append(startedAt).append('\n');
+        for (Path folder : FOLDERS) {
+            content.append(folder).append('\n');
+        }
+        Path journal = getFile();
+        Files.createDirectories(journal.getParent());
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static Path getFile() {
+        return FabricLoader.getInstance().getGameDir().resolve("screenshots").resolve(FILE_NAME);
+    }
+}
@@ -0,0 +1,236 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Streams JSON as UTF-8 into a byte buffer that is drained to a channel whenever it
+ * fills up.
+ *
+ * <p>Strings are escaped and encoded in one pass over their characters, and numbers are
+ * written digit by digit, so writing a document allocates nothing. Each metadata worker
+ * keeps one direct buffer for sidecars ({@link #pooled}); pieces rendered once and
+ * reused, like the session entries, go through {@link #render}.</p>
+ *
+ * <p>The emitter only encodes tokens. Structure (braces, commas, indentation) is written
+ * by the caller as ASCII.</p>
+ */
+final class JsonOutput {
+    private static final int POOLED_BUFFER_SIZE = 16 * 1024;
+    /** Longest encoding of one char: a six-byte unicode escape for a control character. */
+    private static final int MAX_CHAR_BYTES = 6;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L};
+
+    private static final ThreadLocal<JsonOutput> POOL = ThreadLocal.withInitial(
+        () -> new JsonOutput(ByteBuffer.allocateDirect(POOLED_BUFFER_SIZE)));
+
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+    private WritableByteChannel channel;
+
+    private JsonOutput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * This thread's emitter, emptied and pointed at {@code channel}.
+     */
+    static JsonOutput pooled(WritableByteChannel channel) {
+        JsonOutput out = POOL.get();
+        out.buffer.clear();
+        out.channel = channel;
+        return out;
+    }
+
+    /**
+     * Runs {@code writer} against a fresh emitter and returns the bytes it wrote.
+     */
+    static byte[] render(Consumer<JsonOutput> writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        JsonOutput out = new JsonOutput(ByteBuffer.allocate(256));
+        out.channel = Channels.newChannel(bytes);
+        writer.accept(out);
+        try {
+            out.finish();
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the rest of the buffer to the channel and detaches from it.
+     */
+    void finish() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes characters that are known to be ASCII and need no escaping.
+     */
+    JsonOutput ascii(String text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            ensure(1);
+            buffer.put((byte) text.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes bytes that are already valid JSON output.
+     */
+    JsonOutput raw(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        return this;
+    }
+
+    /**
+     * Writes a quoted string; null is written as an empty string.
+     */
+    JsonOutput string(CharSequence text) {
+        return text != null ? string(text, 0, text.length()) : ascii("\"\"");
+    }
+
+    /**
+     * Writes {@code text[start, end)} as a quoted string.
+     */
+    JsonOutput string(CharSequence text, int start, int end) {
+        ensure(1);
+        buffer.put((byte) '"');
+        for (int i = start; i < end; i++) {
+            ensure(MAX_CHAR_BYTES);
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                writeAscii(c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                // A lone surrogate cannot be encoded; write U+FFFD like the JDK encoder
+                char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+                buffer.put((byte) (0xE0 | (encoded >> 12)));
+                buffer.put((byte) (0x80 | ((encoded >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (encoded & 0x3F)));
+            }
+        }
+        ensure(1);
+        buffer.put((byte) '"');
+        return this;
+    }
+
+    JsonOutput number(long value) {
+        ensure(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        // Collect digits from a non-positive value so Long.MIN_VALUE works too
+        long rest = value < 0 ? value : -value;
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes {@code value} rounded half up (away from zero) to a fixed number of decimals (at most 3),
+     * always with a {@code .} separator. The value must be finite.
+     */
+    JsonOutput decimal(float value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        // Round the magnitude so negative values round away from zero like String.format
+        long scaled = Math.round(Math.abs(value) * (double) scale);
+        if (value < 0 && scaled != 0) {
+            ensure(1);
+            buffer.put((byte) '-');
+        }
+        number(scaled / scale);
+        if (decimals > 0) {
+            ensure(1 + decimals);
+            buffer.put((byte) '.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10) {
+                buffer.put((byte) ('0' + fraction / digit % 10));
+            }
+        }
+        return this;
+    }
+
+    JsonOutput bool(boolean value) {
+        return ascii(value ? "true" : "false");
+    }
+
+    private void writeAscii(char c) {
+        switch (c) {
+            case '"' -> escape('"');
+            case '\\' -> escape('\\');
+            case '\n' -> escape('n');
+            case '\r' -> escape('r');
+            case '\t' -> escape('t');
+            case '\b' -> escape('b');
+            case '\f' -> escape('f');
+            default -> {
+                if (c < 0x20) {
+                    buffer.put((byte) '\\');
+                    buffer.put((byte) 'u');
+                    buffer.put((byte) '0');
+                    buffer.put((byte) '0');
+                    buffer.put(HEX[c >> 4]);
+                    buffer.put(HEX[c & 0xF]);
+                } else {
+                    buffer.put((byte) c);
+                }
+            }
+        }
+    }
+
+    private void escape(char c) {
+        buffer.put((byte) '\\');
+        buffer.put((byte) c);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -3,23 +3,39 @@ package com.fentbuscoding.screenshotmetadata.metadata;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Modpack details written to JSON sidecars. Instances are shared between screenshots,
+ * so the rendered {@code modpack} block is kept with them and built only once.
+ */
 public class JsonSidecarContext {
     private final List<String> resourcePacks;
     private final String shaderPack;
     private final List<String> mods;
     private final int modCount;
     private final boolean modListTruncated;
+    private final String fingerprint;
+    private volatile byte[] renderedJson;
 
     public JsonSidecarContext(List<String> resourcePacks,
                               String shaderPack,
                               List<String> mods,
                               int modCount,
                               boolean modListTruncated) {
+        this(resourcePacks, shaderPack, mods, modCount, modListTruncated, null);
+    }
+
+    public JsonSidecarContext(List<String> resourcePacks,
+                              String shaderPack,
+                              List<String> mods,
+                              int modCount,
+                              boolean modListTruncated,
+                              String fingerprint) {
         this.resourcePacks = resourcePacks == null ? Collections.emptyList() : resourcePacks;
         this.shaderPack = shaderPack;
         this.mods = mods == null ? Collections.emptyList() : mods;
         this.modCount = modCount;
         this.modListTruncated = modListTruncated;
+        this.fingerprint = fingerprint;
     }
 
     public List<String> getResourcePacks() {
@@ -41,4 +57,20 @@ public class JsonSidecarContext {
     public boolean isModListTruncated() {
         return modListTruncated;
     }
+
+    /**
+     * Short hash of the mod set, resource packs and shader pack; null if not computed.
+     * Screenshots with the same fingerprint were taken with the same setup.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    byte[] getRenderedJson() {
+        return renderedJson;
+    }
+
+    void setRenderedJson(byte[] json) {
+        renderedJson = json;
+    }
 }
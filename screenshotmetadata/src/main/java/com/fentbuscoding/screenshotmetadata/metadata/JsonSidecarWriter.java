@@ -2,20 +2,32 @@ package com.fentbuscoding.screenshotmetadata.metadata;
 
 import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 
 /**
  * Creates JSON sidecar files for screenshots for easy parsing by tools.
+ *
+ * <p>The document is streamed as UTF-8 through this thread's {@link JsonOutput} straight
+ * into the file channel. Whole numbers and decimals are written as JSON numbers and
+ * flags as booleans; text, times and values that came in as text stay strings.</p>
  */
 public class JsonSidecarWriter {
-    private static final int FILE_FORMAT_VERSION = 1;
+    private static final int FILE_FORMAT_VERSION = 2;
     private static final int METADATA_SCHEMA_VERSION = 2;
 
+    /** The {@code "Name": } prefix of each schema entry, rendered once. */
+    private static final byte[][] ENTRY_PREFIXES = new byte[MetadataKey.VALUES.length][];
+
+    static {
+        for (MetadataKey key : MetadataKey.VALUES) {
+            ENTRY_PREFIXES[key.ordinal()] = JsonOutput.render(out -> out.ascii("    ").string(key.keyName).ascii(": "));
+        }
+    }
+
     /**
      * Creates a JSON sidecar file for the given image file.
      * The JSON file will have the same name as the image but with .json extension.
@@ -35,6 +47,17 @@ public class JsonSidecarWriter {
      * @param context Optional extra context (resource packs, shaders, mod list)
      */
     public static void writeSidecarFile(File imageFile, Map<String, String> metadata, JsonSidecarContext context) {
+        writeSidecarFile(imageFile, ScreenshotMetadata.fromMap(metadata), context);
+    }
+
+    /**
+     * Creates a JSON sidecar file with optional extended context fields.
+     *
+     * @param imageFile The image file to create a sidecar for
+     * @param metadata The metadata to include in the JSON file
+     * @param context Optional extra context (resource packs, shaders, mod list)
+     */
+    public static void writeSidecarFile(File imageFile, ScreenshotMetadata metadata, JsonSidecarContext context) {
         if (imageFile == null || !imageFile.exists()) {
             ScreenshotMetadataMod.LOGGER.warn("Cannot create JSON sidecar for non-existent file: {}",
                 imageFile != null ? imageFile.getName() : "null");
@@ -43,15 +66,16 @@ public class JsonSidecarWriter {
 
         try {
             File jsonFile = getJsonFile(imageFile);
-            String jsonContent = generateJsonContent(imageFile, metadata, context);
-
-            try (FileWriter writer = new FileWriter(jsonFile)) {
-                writer.write(jsonContent);
+            try (FileChannel channel = FileChannel.open(jsonFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                JsonOutput out = JsonOutput.pooled(channel);
+                writeDocument(out, imageFile.getName(), metadata, context);
+                out.finish();
             }
 
             ScreenshotMetadataMod.LOGGER.debug("Created JSON sidecar file: {}", jsonFile.getName());
 
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             ScreenshotMetadataMod.LOGGER.error("Failed to create JSON sidecar file for {}: {}",
                 imageFile.getName(), e.getMessage());
         }
@@ -66,205 +90,209 @@ public class JsonSidecarWriter {
         return new File(imageFile.getParent(), baseName + ".json");
     }
 
-    private static String generateJsonContent(File imageFile, Map<String, String> metadata, JsonSidecarContext context) {
-        Map<String, String> migratedMetadata = migrateMetadata(metadata);
-
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-        json.append("  \"formatVersion\": \"").append(FILE_FORMAT_VERSION).append("\",\n");
-        json.append("  \"metadataSchemaVersion\": ").append(METADATA_SCHEMA_VERSION).append(",\n");
-        json.append("  \"screenshotFile\": \"")
-            .append(escapeJson(imageFile.getName()))
-            .append("\",\n");
-
-        json.append("  \"metadata\": {");
-        if (migratedMetadata != null && !migratedMetadata.isEmpty()) {
-            json.append("\n");
-            int index = 0;
-            for (Map.Entry<String, String> entry : migratedMetadata.entrySet()) {
-                if (entry.getKey() == null || entry.getValue() == null) {
+    private static void writeDocument(JsonOutput out, String fileName, ScreenshotMetadata metadata, JsonSidecarContext context) {
+        out.ascii("{\n  \"formatVersion\": ").number(FILE_FORMAT_VERSION)
+            .ascii(",\n  \"metadataSchemaVersion\": ").number(METADATA_SCHEMA_VERSION)
+            .ascii(",\n  \"screenshotFile\": ").string(fileName)
+            .ascii(",\n  \"metadata\": {");
+
+        if (metadata != null && !metadata.isEmpty()) {
+            // Legacy key names were already mapped to the current schema when the model was built
+            SessionMetadata session = metadata.getSession();
+            boolean first = true;
+            for (MetadataKey key : MetadataKey.VALUES) {
+                if (!metadata.has(key)) {
                     continue;
                 }
-                if (index > 0) {
-                    json.append(",\n");
+                out.ascii(first ? "\n" : ",\n");
+                first = false;
+                // Entries copied from the session block were rendered once for the whole session
+                if (session != null && metadata.isSessionValue(key)) {
+                    out.raw(session.jsonEntry(key));
+                } else {
+                    writeEntry(out, metadata, key);
                 }
-                json.append("    \"")
-                    .append(escapeJson(entry.getKey()))
-                    .append("\": \"")
-                    .append(escapeJson(entry.getValue()))
-                    .append("\"");
-                index++;
             }
-            json.append("\n  ");
+            for (Map.Entry<String, String> extra : metadata.getExtras().entrySet()) {
+                MetadataKey key = MetadataKey.byName(extra.getKey());
+                if (key != null && metadata.has(key)) {
+                    continue;
+                }
+                out.ascii(first ? "\n    " : ",\n    ").string(extra.getKey()).ascii(": ").string(extra.getValue());
+                first = false;
+            }
+            if (!first) {
+                out.ascii("\n  ");
+            }
         }
-        json.append("}");
+        out.ascii("}");
 
-        List<String> tags = extractTags(migratedMetadata);
-        if (!tags.isEmpty()) {
-            appendTags(json, tags);
+        if (metadata != null) {
+            writeTags(out, metadata.getText(MetadataKey.TAGS));
         }
 
         if (context != null) {
-            appendModpackContext(json, context);
+            writeModpackContext(out, context);
         }
 
-        json.append("\n");
-        json.append("}\n");
-        return json.toString();
+        out.ascii("\n}\n");
     }
 
     /**
-     * Migrates legacy metadata keys to the current schema.
-     * This keeps generated sidecars stable even if upstream key names change.
+     * One {@code "Name": value} line of the metadata object, without separator.
      */
-    private static Map<String, String> migrateMetadata(Map<String, String> metadata) {
-        Map<String, String> migrated = new LinkedHashMap<>();
-        if (metadata == null || metadata.isEmpty()) {
-            return migrated;
+    static void writeEntry(JsonOutput out, ScreenshotMetadata metadata, MetadataKey key) {
+        out.raw(ENTRY_PREFIXES[key.ordinal()]);
+        if (metadata.hasNumber(key)) {
+            switch (key.kind) {
+                case INT -> {
+                    out.number(metadata.getLong(key));
+                    return;
+                }
+                case BOOLEAN -> {
+                    out.bool(metadata.getBoolean(key));
+                    return;
+                }
+                case DECIMAL_1, DECIMAL_2 -> {
+                    float value = metadata.getFloat(key);
+                    if (Float.isFinite(value)) {
+                        out.decimal(value, key.kind == MetadataKey.Kind.DECIMAL_1 ? 1 : 2);
+                        return;
+                    }
+                }
+                default -> {
+                }
+            }
         }
-
-        migrated.putAll(metadata);
-
-        migrateKey(migrated, "world", "World");
-        migrateKey(migrated, "dimension", "Dimension");
-        migrateKey(migrated, "biome", "Biome");
-        migrateKey(migrated, "player", "Username");
-        migrateKey(migrated, "server", "ServerName");
-        migrateKey(migrated, "timestampUtc", "Timestamp");
-        migrateKey(migrated, "seedHash", "WorldSeed");
-        migrateKey(migrated, "tags", "Tags");
-
-        return migrated;
+        out.string(metadata.getText(key));
     }
 
-    private static void migrateKey(Map<String, String> metadata, String legacyKey, String currentKey) {
-        if (!metadata.containsKey(currentKey) && metadata.containsKey(legacyKey)) {
-            String value = metadata.get(legacyKey);
-            if (value != null) {
-                metadata.put(currentKey, value);
-            }
+    private static void writeModpackContext(JsonOutput out, JsonSidecarContext context) {
+        // The context is shared by every screenshot taken with the same setup, so render it once
+        byte[] rendered = context.getRenderedJson();
+        if (rendered == null) {
+            rendered = JsonOutput.render(json -> renderModpackContext(json, context));
+            context.setRenderedJson(rendered);
         }
+        out.raw(rendered);
     }
 
-    private static void appendModpackContext(StringBuilder json, JsonSidecarContext context) {
-        json.append(",\n");
-        json.append("  \"modpack\": {\n");
+    private static void renderModpackContext(JsonOutput json, JsonSidecarContext context) {
+        json.ascii(",\n");
+        json.ascii("  \"modpack\": {\n");
 
         int fieldCount = 0;
+        if (context.getFingerprint() != null) {
+            writeField(json, "fingerprint", fieldCount > 0).string(context.getFingerprint());
+            fieldCount++;
+        }
+
         if (context.getShaderPack() != null) {
-            appendStringField(json, "shaderPack", context.getShaderPack(), fieldCount > 0);
+            writeField(json, "shaderPack", fieldCount > 0).string(context.getShaderPack());
             fieldCount++;
         }
 
         if (context.getModCount() >= 0) {
-            appendNumberField(json, "modCount", context.getModCount(), fieldCount > 0);
+            writeField(json, "modCount", fieldCount > 0).number(context.getModCount());
             fieldCount++;
         }
 
         if (!context.getResourcePacks().isEmpty()) {
-            appendStringArrayField(json, "resourcePacks", context.getResourcePacks(), fieldCount > 0);
+            writeStringArray(writeField(json, "resourcePacks", fieldCount > 0), context.getResourcePacks());
             fieldCount++;
         }
 
         if (!context.getMods().isEmpty()) {
-            appendStringArrayField(json, "mods", context.getMods(), fieldCount > 0);
+            writeStringArray(writeField(json, "mods", fieldCount > 0), context.getMods());
             fieldCount++;
         }
 
-        appendBooleanField(json, "modListTruncated", context.isModListTruncated(), fieldCount > 0);
-        json.append("\n  }");
+        writeField(json, "modListTruncated", fieldCount > 0).bool(context.isModListTruncated());
+        json.ascii("\n  }");
     }
 
-    private static void appendTags(StringBuilder json, List<String> tags) {
-        json.append(",\n");
-        json.append("  \"tags\": [");
-        for (int i = 0; i < tags.size(); i++) {
-            if (i > 0) {
-                json.append(", ");
-            }
-            json.append("\"").append(escapeJson(tags.get(i))).append("\"");
-        }
-        json.append("]");
-    }
-
-    private static List<String> extractTags(Map<String, String> metadata) {
-        List<String> tags = new ArrayList<>();
-        if (metadata == null) {
-            return tags;
-        }
-        String raw = metadata.get("Tags");
+    /**
+     * Writes the comma-separated tags as a de-duplicated array, reading the tags in place.
+     */
+    private static void writeTags(JsonOutput out, String raw) {
         if (raw == null || raw.isBlank()) {
-            return tags;
+            return;
         }
-        String[] parts = raw.split(",");
-        for (String part : parts) {
-            String trimmed = part.trim();
-            if (!trimmed.isEmpty() && !tags.contains(trimmed)) {
-                tags.add(trimmed);
+        int count = 0;
+        int start = 0;
+        while (start <= raw.length()) {
+            int end = raw.indexOf(',', start);
+            if (end < 0) {
+                end = raw.length();
+            }
+            int tagStart = trimStart(raw, start, end);
+            int tagEnd = trimEnd(raw, tagStart, end);
+            if (tagStart < tagEnd && !isRepeatedTag(raw, tagStart, tagEnd)) {
+                out.ascii(count == 0 ? ",\n  \"tags\": [" : ", ").string(raw, tagStart, tagEnd);
+                count++;
             }
+            start = end + 1;
+        }
+        if (count > 0) {
+            out.ascii("]");
         }
-        return tags;
     }
 
-    private static void appendStringField(StringBuilder json, String key, String value, boolean withComma) {
-        if (withComma) {
-            json.append(",\n");
+    /**
+     * Whether the tag at {@code raw[tagStart, tagEnd)} already appeared earlier in the list.
+     */
+    private static boolean isRepeatedTag(String raw, int tagStart, int tagEnd) {
+        int length = tagEnd - tagStart;
+        int start = 0;
+        while (start < tagStart) {
+            int end = raw.indexOf(',', start);
+            if (end < 0 || end > tagStart) {
+                return false;
+            }
+            int otherStart = trimStart(raw, start, end);
+            int otherEnd = trimEnd(raw, otherStart, end);
+            if (otherEnd - otherStart == length && raw.regionMatches(otherStart, raw, tagStart, length)) {
+                return true;
+            }
+            start = end + 1;
         }
-        json.append("    \"")
-            .append(escapeJson(key))
-            .append("\": \"")
-            .append(escapeJson(value))
-            .append("\"");
+        return false;
     }
 
-    private static void appendNumberField(StringBuilder json, String key, int value, boolean withComma) {
-        if (withComma) {
-            json.append(",\n");
+    private static int trimStart(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
         }
-        json.append("    \"")
-            .append(escapeJson(key))
-            .append("\": ")
-            .append(value);
+        return start;
     }
 
-    private static void appendBooleanField(StringBuilder json, String key, boolean value, boolean withComma) {
-        if (withComma) {
-            json.append(",\n");
+    private static int trimEnd(String text, int start, int end) {
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
         }
-        json.append("    \"")
-            .append(escapeJson(key))
-            .append("\": ")
-            .append(value ? "true" : "false");
+        return end;
     }
 
-    private static void appendStringArrayField(StringBuilder json, String key, Iterable<String> values, boolean withComma) {
+    private static JsonOutput writeField(JsonOutput json, String key, boolean withComma) {
         if (withComma) {
-            json.append(",\n");
+            json.ascii(",\n");
         }
-        json.append("    \"")
-            .append(escapeJson(key))
-            .append("\": [");
+        return json.ascii("    ").string(key).ascii(": ");
+    }
 
+    private static void writeStringArray(JsonOutput json, Iterable<String> values) {
+        json.ascii("[");
         int index = 0;
         for (String value : values) {
             if (value == null) {
                 continue;
             }
             if (index > 0) {
-                json.append(", ");
+                json.ascii(", ");
             }
-            json.append("\"").append(escapeJson(value)).append("\"");
+            json.string(value);
             index++;
         }
-        json.append("]");
-    }
-
-    private static String escapeJson(String text) {
-        if (text == null) return "";
-        return text.replace("\\", "\\\\")
-                   .replace("\"", "\\\"")
-                   .replace("\n", "\\n")
-                   .replace("\r", "\\r")
-                   .replace("\t", "\\t");
+        json.ascii("]");
     }
 }
@@ -0,0 +1,119 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The metadata schema: every entry the mod writes, with a fixed id (its ordinal), the
+ * name used in PNG text chunks and JSON sidecars, and how its value is stored.
+ *
+ * <p>The declaration order is the order entries appear in every output. New keys go at
+ * the end so existing ids never move.</p>
+ */
+public enum MetadataKey {
+    USERNAME("Username", Kind.TEXT),
+    PLAYER_UUID("PlayerUuid", Kind.TEXT),
+    COORDINATES_OBFUSCATED("CoordinatesObfuscated", Kind.BOOLEAN),
+    X("X", Kind.INT),
+    Y("Y", Kind.INT),
+    Z("Z", Kind.INT),
+    YAW("Yaw", Kind.DECIMAL_1),
+    PITCH("Pitch", Kind.DECIMAL_1),
+    FACING("Facing", Kind.TEXT),
+    WORLD("World", Kind.TEXT),
+    DIMENSION_ID("DimensionId", Kind.TEXT),
+    DIMENSION("Dimension", Kind.TEXT),
+    BIOME("Biome", Kind.TEXT),
+    BIOME_ID("BiomeId", Kind.TEXT),
+    TIME_OF_DAY_TICKS("TimeOfDayTicks", Kind.INT),
+    TIME_OF_DAY("TimeOfDay", Kind.CLOCK),
+    WEATHER("Weather", Kind.TEXT),
+    IS_RAINING("IsRaining", Kind.BOOLEAN),
+    IS_THUNDERING("IsThundering", Kind.BOOLEAN),
+    RAIN_GRADIENT("RainGradient", Kind.DECIMAL_2),
+    THUNDER_GRADIENT("ThunderGradient", Kind.DECIMAL_2),
+    WORLD_NAME("WorldName", Kind.TEXT),
+    WORLD_SEED("WorldSeed", Kind.TEXT),
+    WORLD_SEED_HASHED("WorldSeedHashed", Kind.BOOLEAN),
+    SERVER_TYPE("ServerType", Kind.TEXT),
+    SERVER_NAME("ServerName", Kind.TEXT),
+    SERVER_ADDRESS("ServerAddress", Kind.TEXT),
+    TIMESTAMP("Timestamp", Kind.INSTANT),
+    LOCAL_TIME("LocalTime", Kind.LOCAL_DATE_TIME),
+    MINECRAFT_VERSION("MinecraftVersion", Kind.TEXT),
+    MOD_VERSION("ModVersion", Kind.TEXT),
+    MOD_ID("ModId", Kind.TEXT),
+    DIFFICULTY("Difficulty", Kind.TEXT),
+    GAME_MODE("GameMode", Kind.TEXT),
+    HEALTH("Health", Kind.DECIMAL_1),
+    MAX_HEALTH("MaxHealth", Kind.DECIMAL_1),
+    HUNGER_LEVEL("HungerLevel", Kind.INT),
+    SATURATION("Saturation", Kind.DECIMAL_1),
+    CAPTURE_TIME_MS("CaptureTimeMs", Kind.INT),
+    RENDER_DISTANCE("RenderDistance", Kind.INT),
+    SIMULATION_DISTANCE("SimulationDistance", Kind.INT),
+    MAIN_HAND_ITEM("MainHandItem", Kind.TEXT),
+    MAIN_HAND_COUNT("MainHandCount", Kind.INT),
+    OFF_HAND_ITEM("OffHandItem", Kind.TEXT),
+    OFF_HAND_COUNT("OffHandCount", Kind.INT),
+    ARMOR_HEAD("ArmorHead", Kind.TEXT),
+    ARMOR_CHEST("ArmorChest", Kind.TEXT),
+    ARMOR_LEGS("ArmorLegs", Kind.TEXT),
+    ARMOR_FEET("ArmorFeet", Kind.TEXT),
+    POTION_EFFECTS("PotionEffects", Kind.TEXT),
+    POTION_EFFECT_COUNT("PotionEffectCount", Kind.INT),
+    TAGS("Tags", Kind.TEXT),
+    PERCEPTUAL_HASH("PerceptualHash", Kind.TEXT);
+
+    static final MetadataKey[] VALUES = values();
+    private static final Map<String, MetadataKey> BY_NAME = new HashMap<>();
+
+    static {
+        for (MetadataKey key : VALUES) {
+            BY_NAME.put(key.keyName, key);
+        }
+    }
+
+    /** Name used in PNG text chunks, JSON sidecars and rename templates. */
+    public final String keyName;
+    public final Kind kind;
+
+    MetadataKey(String keyName, Kind kind) {
+        this.keyName = keyName;
+        this.kind = kind;
+    }
+
+    /**
+     * Looks a key up by its written name; null for names outside the schema.
+     */
+    public static MetadataKey byName(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
+
+    /**
+     * How a value is stored and turned into text.
+     */
+    public enum Kind {
+        /** Any object, written with {@code toString()}. */
+        TEXT,
+        /** A whole number. */
+        INT,
+        /** {@code true} or {@code false}. */
+        BOOLEAN,
+        /** A float written with one decimal. */
+        DECIMAL_1,
+        /** A float written with two decimals. */
+        DECIMAL_2,
+        /** In-game time of day in ticks, written as 24h {@code HH:mm}. */
+        CLOCK,
+        /** Epoch milliseconds, written as an ISO-8601 UTC instant. */
+        INSTANT,
+        /** Epoch milliseconds, written as an ISO-8601 local date-time with offset. */
+        LOCAL_DATE_TIME;
+
+        /** Whether values of this kind live in the numeric slot. */
+        public boolean isNumeric() {
+            return this != TEXT;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Pass-through channel that splices extra chunks in front of IEND while a PNG is
+ * being encoded, so metadata lands in the file during its one and only write.
+ *
+ * <p>Only chunk headers are buffered; chunk bodies (including IDAT) stream
+ * straight to the delegate. A stream that does not start with the PNG
+ * signature is passed through untouched.</p>
+ */
+public final class PngChunkInjectingChannel implements WritableByteChannel {
+    private final WritableByteChannel delegate;
+    private final byte[] injectedChunks;
+    private final ByteBuffer header = ByteBuffer.allocate(8);
+    private boolean signatureChecked;
+    private boolean passThrough;
+    private long remainingInChunk;
+    private boolean injected;
+
+    public PngChunkInjectingChannel(WritableByteChannel delegate, byte[] injectedChunks) {
+        this.delegate = delegate;
+        this.injectedChunks = injectedChunks;
+    }
+
+    /**
+     * Whether the extra chunks have been written, i.e. the encoder reached IEND.
+     */
+    public boolean hasInjected() {
+        return injected;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int total = src.remaining();
+        while (src.hasRemaining()) {
+            if (passThrough || remainingInChunk > 0) {
+                int count = passThrough ? src.remaining() : (int) Math.min(remainingInChunk, src.remaining());
+                ByteBuffer slice = src.slice();
+                slice.limit(count);
+                writeFully(slice);
+                src.position(src.position() + count);
+                if (!passThrough) {
+                    remainingInChunk -= count;
+                }
+                continue;
+            }
+
+            while (header.hasRemaining() && src.hasRemaining()) {
+                header.put(src.get());
+            }
+            if (header.hasRemaining()) {
+                break;
+            }
+            header.flip();
+
+            if (!signatureChecked) {
+                signatureChecked = true;
+                passThrough = !Arrays.equals(header.array(), PngChunks.SIGNATURE);
+                writeFully(header);
+                header.clear();
+                continue;
+            }
+
+            long length = header.getInt(0) & 0xFFFFFFFFL;
+            int type = header.getInt(4);
+            if (type == PngChunks.TYPE_IEND && !injected) {
+                writeFully(ByteBuffer.wrap(injectedChunks));
+                injected = true;
+            }
+            writeFully(header);
+            header.clear();
+            remainingInChunk = length + 4L; // chunk data + CRC
+        }
+        return total;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            delegate.write(buffer);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,359 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Rewrites the chunk stream of an existing PNG without decoding it: new chunks are
+ * placed before IEND, text chunks with a replaced keyword are dropped, and every
+ * other chunk (IDAT, gAMA, eXIf, ...) is copied byte for byte with its original CRC.
+ * The cost depends on the number of chunks and the metadata size, not on resolution.
+ *
+ * <p>{@link #appendBeforeIend} goes one step further and edits the file in place,
+ * so only the new chunks and IEND are written.</p>
+ */
+public final class PngChunkSplicer {
+    private static final int CHUNK_HEADER_LENGTH = 8;
+    private static final int CHUNK_CRC_LENGTH = 4;
+    private static final ThreadLocal<List<Path>> DEFERRED_SYNC = new ThreadLocal<>();
+
+    private PngChunkSplicer() {
+    }
+
+    /**
+     * Splices {@code newChunks} into {@code file}, writing to a temporary file first and
+     * replacing the original only once the new stream is complete.
+     *
+     * @param file The PNG file to rewrite
+     * @param newChunks Complete encoded chunks to insert before IEND
+     * @param replacedKeywords Keywords whose existing tEXt/zTXt/iTXt chunks are removed
+     * @throws IOException if the file is not a well-formed PNG or cannot be rewritten
+     */
+    public static void splice(File file, byte[] newChunks, Set<String> replacedKeywords) throws IOException {
+        Path source = file.toPath();
+        Path tempPath = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        boolean moved = false;
+
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tempPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                copyChunks(in, out, newChunks, replacedKeywords, file.getName());
+            }
+
+            // Replace original file with the updated one, prefer atomic move when supported
+            try {
+                Files.move(tempPath, source, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException atomicFailure) {
+                Files.move(tempPath, source, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException cleanupFailure) {
+                    ScreenshotMetadataMod.LOGGER.warn("Could not delete temp file {}: {}", tempPath, cleanupFailure.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts {@code newChunks} in place by overwriting IEND and appending a new one,
+     * without copying the rest of the file.
+     *
+     * <p>The new chunks are forced to disk before IEND is written back, so a crash leaves
+     * either the old file or a file whose only damage is a missing IEND. The folder is
+     * recorded in {@link AppendJournal} first, and such a file is repaired by
+     * {@link #repairTail} on the next start (or by the next append to it): any torn chunk
+     * after the image data is dropped and a fresh IEND is written.</p>
+     *
+     * @return false if the file needs a full rewrite instead (an entry with a replaced
+     *         keyword already exists, data follows IEND, or the journal could not be
+     *         written)
+     * @throws IOException if the file is not a PNG or cannot be written
+     */
+    public static boolean appendBeforeIend(File file, byte[] newChunks, Set<String> replacedKeywords) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            TailScan scan = scanTail(channel, replacedKeywords, file.getName());
+            if (scan.hasReplacedKeyword) {
+                return false;
+            }
+            if (scan.hasIend && scan.insertOffset + PngChunks.IEND_CHUNK.length != channel.size()) {
+                return false;
+            }
+            if (!scan.hasIend) {
+                ScreenshotMetadataMod.LOGGER.warn("Repairing PNG tail of {} left by an interrupted metadata write", file.getName());
+            }
+            if (!AppendJournal.record(file.toPath())) {
+                return false;
+            }
+
+            List<Path> deferred = DEFERRED_SYNC.get();
+            long offset = scan.insertOffset;
+            writeFully(channel, ByteBuffer.wrap(newChunks), offset);
+            offset += newChunks.length;
+            if (deferred == null) {
+                // Metadata must be durable before IEND marks the file as complete again
+                channel.force(false);
+            }
+            writeFully(channel, ByteBuffer.wrap(PngChunks.IEND_CHUNK), offset);
+            offset += PngChunks.IEND_CHUNK.length;
+            if (channel.size() > offset) {
+                channel.truncate(offset);
+            }
+            if (deferred == null) {
+                channel.force(false);
+            } else {
+                deferred.add(file.toPath());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Defers the fsyncs of in-place appends made by this thread until {@link #endDeferredSync()},
+     * so a batch of files is synced in one pass. An interrupted batch is still recoverable:
+     * a file that lost its IEND or has a torn chunk is repaired at the next start.
+     */
+    public static void beginDeferredSync() {
+        DEFERRED_SYNC.set(new ArrayList<>());
+    }
+
+    /**
+     * Syncs every file appended to since {@link #beginDeferredSync()}.
+     *
+     * @return The number of files synced
+     */
+    public static int endDeferredSync() {
+        List<Path> deferred = DEFERRED_SYNC.get();
+        DEFERRED_SYNC.remove();
+        if (deferred == null) {
+            return 0;
+        }
+        int synced = 0;
+        for (Path path : deferred) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(false);
+                synced++;
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.warn("Could not sync {}: {}", path.getFileName(), e.getMessage());
+            }
+        }
+        return synced;
+    }
+
+    /**
+     * Writes IEND back to a PNG whose in-place append was interrupted, dropping any torn
+     * chunk after the image data. Files that already end in IEND are left alone.
+     *
+     * @return true if the file was repaired
+     * @throws IOException if the file is not a PNG or cannot be written
+     */
+    public static boolean repairTail(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size >= PngChunks.IEND_CHUNK.length) {
+                ByteBuffer tail = ByteBuffer.allocate(PngChunks.IEND_CHUNK.length);
+                readFully(channel, tail, size - PngChunks.IEND_CHUNK.length);
+                if (Arrays.equals(tail.array(), PngChunks.IEND_CHUNK)) {
+                    return false;
+                }
+            }
+            TailScan scan = scanTail(channel, Set.of(), file.getName());
+            if (scan.hasIend) {
+                // Data after IEND was put there by something else
+                return false;
+            }
+            long end = scan.insertOffset + PngChunks.IEND_CHUNK.length;
+            writeFully(channel, ByteBuffer.wrap(PngChunks.IEND_CHUNK), scan.insertOffset);
+            if (channel.size() > end) {
+                channel.truncate(end);
+            }
+            channel.force(false);
+            return true;
+        }
+    }
+
+    /**
+     * Finds where new chunks go: the IEND offset, or, when IEND is missing, the end of
+     * the last intact chunk after the image data.
+     */
+    private static TailScan scanTail(FileChannel channel, Set<String> replacedKeywords, String fileName) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_LENGTH);
+        readFully(channel, header, 0L);
+        if (!Arrays.equals(header.array(), PngChunks.SIGNATURE)) {
+            throw new IOException("Not a PNG file: " + fileName);
+        }
+
+        ByteBuffer keywordBuffer = ByteBuffer.allocate(PngChunks.MAX_KEYWORD_LENGTH + 1);
+        List<long[]> trailingChunks = new ArrayList<>();
+        boolean sawImageData = false;
+        boolean hasReplacedKeyword = false;
+        long position = PngChunks.SIGNATURE.length;
+        while (position + CHUNK_HEADER_LENGTH <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            long length = header.getInt(0) & 0xFFFFFFFFL;
+            int type = header.getInt(4);
+            long chunkSize = CHUNK_HEADER_LENGTH + length + CHUNK_CRC_LENGTH;
+            if (type == PngChunks.TYPE_IEND) {
+                return new TailScan(position, true, hasReplacedKeyword);
+            }
+            if (type == PngChunks.TYPE_IDAT) {
+                sawImageData = true;
+                trailingChunks.clear();
+            } else if (sawImageData) {
+                trailingChunks.add(new long[] {position, length});
+            }
+            if (position + chunkSize > size) {
+                if (type == PngChunks.TYPE_IDAT) {
+                    throw new IOException("Truncated PNG image data in " + fileName);
+                }
+                break;
+            }
+            if (PngChunks.isTextChunk(type) && !replacedKeywords.isEmpty()) {
+                keywordBuffer.clear();
+                keywordBuffer.limit((int) Math.min(length, keywordBuffer.capacity()));
+                readFully(channel, keywordBuffer, position + CHUNK_HEADER_LENGTH);
+                keywordBuffer.flip();
+                String keyword = PngChunks.readKeyword(keywordBuffer);
+                hasReplacedKeyword |= keyword != null && replacedKeywords.contains(keyword);
+            }
+            position += chunkSize;
+        }
+
+        if (!sawImageData) {
+            throw new IOException("PNG has no image data: " + fileName);
+        }
+        // No IEND: keep chunks after the image data only up to the first one that is torn
+        long insertOffset = trailingChunks.isEmpty() ? position : trailingChunks.get(0)[0];
+        for (long[] chunk : trailingChunks) {
+            if (!hasValidCrc(channel, chunk[0], chunk[1], size)) {
+                break;
+            }
+            insertOffset = chunk[0] + CHUNK_HEADER_LENGTH + chunk[1] + CHUNK_CRC_LENGTH;
+        }
+        return new TailScan(insertOffset, false, hasReplacedKeyword);
+    }
+
+    private static boolean hasValidCrc(FileChannel channel, long position, long length, long size) throws IOException {
+        long end = position + CHUNK_HEADER_LENGTH + length + CHUNK_CRC_LENGTH;
+        if (end > size || length > Integer.MAX_VALUE - 8) {
+            return false;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate((int) (length + 8));
+        readFully(channel, chunk, position + 4);
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 0, (int) (length + 4));
+        return chunk.getInt((int) (length + 4)) == (int) crc.getValue();
+    }
+
+    private static void copyChunks(FileChannel in,
+                                   FileChannel out,
+                                   byte[] newChunks,
+                                   Set<String> replacedKeywords,
+                                   String fileName) throws IOException {
+        long size = in.size();
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_LENGTH);
+        readFully(in, header, 0L);
+        if (!Arrays.equals(header.array(), PngChunks.SIGNATURE)) {
+            throw new IOException("Not a PNG file: " + fileName);
+        }
+        writeFully(out, ByteBuffer.wrap(PngChunks.SIGNATURE));
+
+        ByteBuffer keywordBuffer = ByteBuffer.allocate(PngChunks.MAX_KEYWORD_LENGTH + 1);
+        long position = PngChunks.SIGNATURE.length;
+        while (position < size) {
+            header.clear();
+            readFully(in, header, position);
+            long length = header.getInt(0) & 0xFFFFFFFFL;
+            int type = header.getInt(4);
+            long chunkSize = CHUNK_HEADER_LENGTH + length + CHUNK_CRC_LENGTH;
+            if (position + chunkSize > size) {
+                throw new IOException("Truncated PNG chunk in " + fileName);
+            }
+
+            if (type == PngChunks.TYPE_IEND) {
+                writeFully(out, ByteBuffer.wrap(newChunks));
+                transferFully(in, out, position, size - position);
+                return;
+            }
+
+            if (PngChunks.isTextChunk(type) && !replacedKeywords.isEmpty()) {
+                keywordBuffer.clear();
+                keywordBuffer.limit((int) Math.min(length, keywordBuffer.capacity()));
+                readFully(in, keywordBuffer, position + CHUNK_HEADER_LENGTH);
+                keywordBuffer.flip();
+                String keyword = PngChunks.readKeyword(keywordBuffer);
+                if (keyword != null && replacedKeywords.contains(keyword)) {
+                    position += chunkSize;
+                    continue;
+                }
+            }
+
+            transferFully(in, out, position, chunkSize);
+            position += chunkSize;
+        }
+        throw new IOException("PNG has no IEND chunk: " + fileName);
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of PNG data");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+
+    private static void transferFully(FileChannel in, FileChannel out, long position, long count) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of PNG data");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static final class TailScan {
+        private final long insertOffset;
+        private final boolean hasIend;
+        private final boolean hasReplacedKeyword;
+
+        private TailScan(long insertOffset, boolean hasIend, boolean hasReplacedKeyword) {
+            this.insertOffset = insertOffset;
+            this.hasIend = hasIend;
+            this.hasReplacedKeyword = hasReplacedKeyword;
+        }
+    }
+}
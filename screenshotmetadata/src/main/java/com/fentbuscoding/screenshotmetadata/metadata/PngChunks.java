@@ -0,0 +1,325 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes raw PNG chunks (length, type, data, CRC32) for the metadata we embed.
+ * Working at chunk level lets metadata be written without touching pixel data.
+ */
+public final class PngChunks {
+    public static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    public static final int TYPE_IEND = chunkType("IEND");
+    public static final int TYPE_ITXT = chunkType("iTXt");
+    public static final int TYPE_TEXT = chunkType("tEXt");
+    public static final int TYPE_ZTXT = chunkType("zTXt");
+    public static final int TYPE_IDAT = chunkType("IDAT");
+    public static final int TYPE_IHDR = chunkType("IHDR");
+
+    /** The complete, constant IEND chunk: zero length, type and CRC. */
+    static final byte[] IEND_CHUNK = {0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xAE, 0x42, 0x60, (byte) 0x82};
+
+    static final int MAX_KEYWORD_LENGTH = 79;
+    /** Text chunks larger than this are skipped when reading entries back. */
+    private static final int MAX_TEXT_CHUNK_LENGTH = 1024 * 1024;
+
+    private PngChunks() {
+    }
+
+    /**
+     * Builds every metadata chunk enabled for a screenshot: one iTXt per text entry and, optionally, the XMP packet.
+     *
+     * @param metadata The collected metadata
+     * @param includeText Whether to emit the key/value text entries
+     * @param includeXmp Whether to emit the {@code XML:com.adobe.xmp} packet
+     * @return Concatenated chunk bytes, ready to be placed before IEND
+     */
+    public static byte[] buildMetadataChunks(ScreenshotMetadata metadata, boolean includeText, boolean includeXmp) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        if (includeText) {
+            for (Map.Entry<String, String> entry : PngMetadataWriter.buildTextEntries(metadata).entrySet()) {
+                writeTextEntry(out, metadata, entry.getKey(), entry.getValue());
+            }
+        }
+        if (includeXmp) {
+            writeITXt(out, PngXmpWriter.XMP_ITXT_KEYWORD, XmpPacket.of(metadata));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends the iTXt chunk for a text entry, reusing the session's pre-rendered chunk
+     * when the entry still holds the session value.
+     */
+    static void writeTextEntry(ByteArrayOutputStream out, ScreenshotMetadata metadata, String keyword, String text) {
+        MetadataKey key = MetadataKey.byName(keyword);
+        if (key != null && metadata.isSessionValue(key)) {
+            byte[] chunk = metadata.getSession().pngTextChunk(key);
+            out.write(chunk, 0, chunk.length);
+        } else {
+            writeITXt(out, keyword, text);
+        }
+    }
+
+    /**
+     * Renders the iTXt chunk PNG text output writes for an entry, applying the same
+     * trimming and blank filtering; empty if the entry is skipped.
+     */
+    static byte[] renderTextEntry(String keyword, String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(keyword.length() + text.length() + 17);
+        writeITXt(out, keyword, text.trim());
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends an uncompressed iTXt chunk. Entries with keywords PNG cannot represent are skipped.
+     */
+    public static void writeITXt(ByteArrayOutputStream out, String keyword, String text) {
+        if (text != null) {
+            writeITXt(out, keyword, text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Appends an uncompressed iTXt chunk whose text is already UTF-8 encoded.
+     */
+    public static void writeITXt(ByteArrayOutputStream out, String keyword, byte[] textBytes) {
+        byte[] keywordBytes = encodeKeyword(keyword);
+        if (keywordBytes == null || textBytes == null) {
+            return;
+        }
+        byte[] data = new byte[keywordBytes.length + 5 + textBytes.length];
+        int offset = 0;
+        System.arraycopy(keywordBytes, 0, data, offset, keywordBytes.length);
+        offset += keywordBytes.length;
+        data[offset++] = 0; // keyword terminator
+        data[offset++] = 0; // compression flag
+        data[offset++] = 0; // compression method
+        data[offset++] = 0; // empty language tag
+        data[offset++] = 0; // empty translated keyword
+        System.arraycopy(textBytes, 0, data, offset, textBytes.length);
+        writeChunk(out, TYPE_ITXT, data, 0, data.length);
+    }
+
+    /**
+     * Appends a complete chunk with its CRC32 computed over type and data.
+     */
+    public static void writeChunk(ByteArrayOutputStream out, int type, byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        byte[] typeBytes = intBytes(type);
+        crc.update(typeBytes, 0, 4);
+        crc.update(data, offset, length);
+        out.write(intBytes(length), 0, 4);
+        out.write(typeBytes, 0, 4);
+        out.write(data, offset, length);
+        out.write(intBytes((int) crc.getValue()), 0, 4);
+    }
+
+    public static int chunkType(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+
+    /**
+     * Estimates how much memory the decoded image needs (4 bytes per pixel) from the IHDR
+     * chunk, without reading any image data.
+     *
+     * @return The estimate, or the file size if the header cannot be read
+     */
+    public static long estimateDecodedBytes(File file) {
+        if (file == null) {
+            return 0L;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] header = in.readNBytes(24);
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            if (header.length == 24 && buffer.getInt(12) == TYPE_IHDR) {
+                long width = buffer.getInt(16) & 0xFFFFFFFFL;
+                long height = buffer.getInt(20) & 0xFFFFFFFFL;
+                return width * height * 4L;
+            }
+        } catch (IOException ignored) {
+            // Fall through to the file size
+        }
+        return file.length();
+    }
+
+    /**
+     * Reads the keyword/text entries of every tEXt, zTXt and iTXt chunk, skipping over
+     * image data without reading it. The XMP packet is not included.
+     *
+     * @return The entries in file order; a later chunk replaces an earlier one with the same keyword
+     * @throws IOException if the file cannot be read or is not a PNG
+     */
+    public static Map<String, String> readTextEntries(Path file) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SIGNATURE.length);
+            readFully(channel, header, 0L);
+            if (!Arrays.equals(header.array(), SIGNATURE)) {
+                throw new IOException("Not a PNG file: " + file.getFileName());
+            }
+            long size = channel.size();
+            long position = SIGNATURE.length;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8);
+            while (position + 12 <= size) {
+                chunkHeader.clear();
+                readFully(channel, chunkHeader, position);
+                long length = chunkHeader.getInt(0) & 0xFFFFFFFFL;
+                int type = chunkHeader.getInt(4);
+                if (type == TYPE_IEND || position + 12 + length > size) {
+                    break;
+                }
+                if (isTextChunk(type) && length <= MAX_TEXT_CHUNK_LENGTH) {
+                    ByteBuffer data = ByteBuffer.allocate((int) length);
+                    readFully(channel, data, position + 8);
+                    data.flip();
+                    readTextEntry(type, data, entries);
+                }
+                position += 12 + length;
+            }
+        }
+        return entries;
+    }
+
+    private static void readTextEntry(int type, ByteBuffer data, Map<String, String> entries) {
+        String keyword = readKeyword(data);
+        if (keyword == null || keyword.equals(PngXmpWriter.XMP_ITXT_KEYWORD)) {
+            return;
+        }
+        byte[] bytes = data.array();
+        int offset = keyword.length() + 1;
+        try {
+            if (type == TYPE_TEXT) {
+                entries.put(keyword, new String(bytes, offset, bytes.length - offset, StandardCharsets.ISO_8859_1));
+            } else if (type == TYPE_ZTXT) {
+                entries.put(keyword, new String(inflate(bytes, offset + 1), StandardCharsets.ISO_8859_1));
+            } else {
+                boolean compressed = bytes[offset] != 0;
+                int languageEnd = indexOf(bytes, offset + 2);
+                int translatedEnd = indexOf(bytes, languageEnd + 1);
+                if (translatedEnd < 0) {
+                    return;
+                }
+                byte[] text = compressed
+                    ? inflate(bytes, translatedEnd + 1)
+                    : Arrays.copyOfRange(bytes, translatedEnd + 1, bytes.length);
+                entries.put(keyword, new String(text, StandardCharsets.UTF_8));
+            }
+        } catch (DataFormatException | IndexOutOfBoundsException e) {
+            // Leave out an entry that cannot be decoded
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        if (from <= 0) {
+            return -1;
+        }
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, count);
+                if (out.size() > MAX_TEXT_CHUNK_LENGTH) {
+                    throw new DataFormatException("Text entry too large");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Whether the chunk type carries a keyword-prefixed text entry (tEXt, zTXt or iTXt).
+     */
+    public static boolean isTextChunk(int type) {
+        return type == TYPE_TEXT || type == TYPE_ZTXT || type == TYPE_ITXT;
+    }
+
+    /**
+     * Reads the NUL-terminated Latin-1 keyword at the start of a text chunk's data.
+     *
+     * @param data Buffer positioned at the start of the chunk data
+     * @return The keyword, or null if no terminator is found within the keyword length limit
+     */
+    public static String readKeyword(ByteBuffer data) {
+        int start = data.position();
+        int end = Math.min(data.limit(), start + MAX_KEYWORD_LENGTH + 1);
+        for (int i = start; i < end; i++) {
+            if (data.get(i) == 0) {
+                byte[] keyword = new byte[i - start];
+                data.get(start, keyword);
+                return new String(keyword, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    private static byte[] encodeKeyword(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String trimmed = keyword.trim();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_KEYWORD_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c < 32 || (c > 126 && c < 161) || c > 255) {
+                return null;
+            }
+        }
+        return trimmed.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[] {
+            (byte) (value >>> 24),
+            (byte) (value >>> 16),
+            (byte) (value >>> 8),
+            (byte) value
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the PNG text entries and the embedded XMP packet in a single rewrite, so
+ * the file goes from "no metadata" to "all metadata" in one atomic move and other
+ * programs never see it with only half of the chunks.
+ */
+public class PngEmbeddedMetadataWriter {
+
+    /**
+     * Embeds the selected metadata chunks into a PNG file.
+     *
+     * @param file The PNG file to add metadata to
+     * @param metadata The metadata to embed
+     * @param includeText Whether to write the key/value text chunks
+     * @param includeXmp Whether to write the {@code XML:com.adobe.xmp} packet
+     * @throws IOException if file operations fail
+     */
+    public static void writeMetadata(File file,
+                                     ScreenshotMetadata metadata,
+                                     boolean includeText,
+                                     boolean includeXmp) throws IOException {
+        writeMetadata(file, metadata, includeText, includeXmp, false);
+    }
+
+    /**
+     * Embeds the selected metadata chunks into a PNG file.
+     *
+     * @param file The PNG file to add metadata to
+     * @param metadata The metadata to embed
+     * @param includeText Whether to write the key/value text chunks
+     * @param includeXmp Whether to write the {@code XML:com.adobe.xmp} packet
+     * @param appendInPlace Whether to insert the chunks in place before IEND instead of rewriting
+     *                      the file; falls back to a rewrite when existing entries must be replaced
+     * @throws IOException if file operations fail
+     */
+    public static void writeMetadata(File file,
+                                     ScreenshotMetadata metadata,
+                                     boolean includeText,
+                                     boolean includeXmp,
+                                     boolean appendInPlace) throws IOException {
+        if (file == null || metadata == null) {
+            throw new IllegalArgumentException("File and metadata must not be null");
+        }
+        if (!file.exists() || !file.getName().toLowerCase().endsWith(".png")) {
+            throw new IllegalArgumentException("File must be an existing PNG file: " + file.getPath());
+        }
+        if (metadata.isEmpty() || (!includeText && !includeXmp)) {
+            ScreenshotMetadataMod.LOGGER.debug("No embedded metadata to write for {} - skipping", file.getName());
+            return;
+        }
+
+        ScreenshotMetadataMod.LOGGER.debug("Writing embedded metadata to: {} (text: {}, xmp: {})",
+            file.getName(), includeText, includeXmp);
+
+        try {
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream(4096);
+            Set<String> keywords = new HashSet<>();
+            if (includeText) {
+                for (Map.Entry<String, String> entry : PngMetadataWriter.buildTextEntries(metadata).entrySet()) {
+                    PngChunks.writeTextEntry(chunks, metadata, entry.getKey(), entry.getValue());
+                    keywords.add(entry.getKey().trim());
+                }
+            }
+            if (includeXmp) {
+                PngChunks.writeITXt(chunks, PngXmpWriter.XMP_ITXT_KEYWORD, XmpPacket.of(metadata));
+                keywords.add(PngXmpWriter.XMP_ITXT_KEYWORD);
+            }
+            byte[] newChunks = chunks.toByteArray();
+            if (appendInPlace && PngChunkSplicer.appendBeforeIend(file, newChunks, keywords)) {
+                ScreenshotMetadataMod.LOGGER.debug("Appended {} bytes of metadata to: {}", newChunks.length, file.getName());
+                return;
+            }
+            // Existing entries with the same keyword are replaced, everything else is kept
+            PngChunkSplicer.splice(file, newChunks, keywords);
+        } catch (Exception e) {
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            ScreenshotMetadataMod.LOGGER.debug("Failed to write embedded metadata to {}: {}", file.getName(), reason, e);
+            throw new IOException("Failed to write embedded metadata: " + reason, e);
+        }
+
+        ScreenshotMetadataMod.LOGGER.debug("Successfully wrote embedded metadata to: {}", file.getName());
+    }
+}
@@ -0,0 +1,423 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey.Kind;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metadata for one screenshot, stored by {@link MetadataKey} id.
+ *
+ * <p>Numbers, flags and times live in a primitive slot per key and are only turned
+ * into text when a writer asks for it. The text is cached, so every output reads the
+ * same string and formatting happens at most once per key. Entries outside the schema
+ * (for example from older callers passing a map) are kept as extras and written after
+ * the schema entries.</p>
+ *
+ * <p>An instance is filled by one thread and then handed to the writers; it is not
+ * meant to be modified while being written.</p>
+ */
+public final class ScreenshotMetadata {
+    private static final int KEY_COUNT = MetadataKey.VALUES.length;
+
+    private final long[] present = new long[(KEY_COUNT + 63) / 64];
+    private final long[] numbers = new long[KEY_COUNT];
+    private final Object[] objects = new Object[KEY_COUNT];
+    private final String[] text = new String[KEY_COUNT];
+    private Map<String, String> extras;
+    private Map<String, String> map;
+    private String description;
+    // Written by whichever XMP output runs first, possibly on another thread
+    private volatile byte[] xmpPacket;
+    private JsonSidecarContext modpackContext;
+    private SessionMetadata session;
+
+    /**
+     * Builds a model from a plain key/value map. Known names go into their typed slot
+     * (as text), legacy names are mapped to the current schema, and anything else is kept
+     * as an extra entry.
+     */
+    public static ScreenshotMetadata fromMap(Map<String, String> values) {
+        ScreenshotMetadata metadata = new ScreenshotMetadata();
+        if (values == null) {
+            return metadata;
+        }
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                continue;
+            }
+            MetadataKey key = MetadataKey.byName(entry.getKey());
+            if (key != null) {
+                metadata.setText(key, entry.getValue());
+            } else {
+                metadata.putExtra(entry.getKey(), entry.getValue());
+            }
+        }
+        migrateKey(metadata, "world", MetadataKey.WORLD);
+        migrateKey(metadata, "dimension", MetadataKey.DIMENSION);
+        migrateKey(metadata, "biome", MetadataKey.BIOME);
+        migrateKey(metadata, "player", MetadataKey.USERNAME);
+        migrateKey(metadata, "server", MetadataKey.SERVER_NAME);
+        migrateKey(metadata, "timestampUtc", MetadataKey.TIMESTAMP);
+        migrateKey(metadata, "seedHash", MetadataKey.WORLD_SEED);
+        migrateKey(metadata, "tags", MetadataKey.TAGS);
+        return metadata;
+    }
+
+    /**
+     * Empties every slot so the instance can be filled again.
+     */
+    public void clear() {
+        Arrays.fill(present, 0L);
+        Arrays.fill(objects, null);
+        Arrays.fill(text, null);
+        extras = null;
+        map = null;
+        description = null;
+        xmpPacket = null;
+        modpackContext = null;
+        session = null;
+    }
+
+    /**
+     * Copies the session block into this instance and remembers it, so writers can reuse
+     * its pre-rendered fragments for entries that are not replaced afterwards.
+     */
+    public void putSession(SessionMetadata session) {
+        putAll(session.getValues());
+        this.session = session;
+    }
+
+    /**
+     * Whether {@code key} still holds the value copied from the session block.
+     */
+    public boolean isSessionValue(MetadataKey key) {
+        if (session == null || !has(key)) {
+            return false;
+        }
+        ScreenshotMetadata values = session.getValues();
+        int id = key.ordinal();
+        return values.has(key) && objects[id] == values.objects[id] && numbers[id] == values.numbers[id];
+    }
+
+    SessionMetadata getSession() {
+        return session;
+    }
+
+    /**
+     * An independent copy of this instance that still shares the session block.
+     */
+    public ScreenshotMetadata copy() {
+        ScreenshotMetadata copy = new ScreenshotMetadata();
+        copy.putAll(this);
+        copy.session = session;
+        return copy;
+    }
+
+    /**
+     * Copies every entry present in {@code other} into this instance, replacing values
+     * for the same key.
+     */
+    public void putAll(ScreenshotMetadata other) {
+        for (int id = 0; id < KEY_COUNT; id++) {
+            if ((other.present[id >>> 6] & (1L << id)) == 0L) {
+                continue;
+            }
+            numbers[id] = other.numbers[id];
+            objects[id] = other.objects[id];
+            present[id >>> 6] |= 1L << id;
+            text[id] = other.text[id];
+        }
+        if (other.extras != null) {
+            other.extras.forEach(this::putExtra);
+        }
+        if (other.modpackContext != null) {
+            modpackContext = other.modpackContext;
+        }
+        map = null;
+        description = null;
+        xmpPacket = null;
+    }
+
+    public ScreenshotMetadata setLong(MetadataKey key, long value) {
+        numbers[key.ordinal()] = value;
+        objects[key.ordinal()] = null;
+        return mark(key);
+    }
+
+    public ScreenshotMetadata setFloat(MetadataKey key, float value) {
+        return setLong(key, Float.floatToRawIntBits(value));
+    }
+
+    public ScreenshotMetadata setBoolean(MetadataKey key, boolean value) {
+        return setLong(key, value ? 1L : 0L);
+    }
+
+    /**
+     * Stores a text value; any object works and is converted with {@code toString()} on
+     * first read. A null value removes the entry.
+     */
+    public ScreenshotMetadata setText(MetadataKey key, Object value) {
+        if (value == null) {
+            return remove(key);
+        }
+        objects[key.ordinal()] = value;
+        return mark(key);
+    }
+
+    public ScreenshotMetadata remove(MetadataKey key) {
+        int id = key.ordinal();
+        present[id >>> 6] &= ~(1L << id);
+        objects[id] = null;
+        text[id] = null;
+        map = null;
+        description = null;
+        xmpPacket = null;
+        return this;
+    }
+
+    /**
+     * Adds an entry outside the schema.
+     */
+    public void putExtra(String name, String value) {
+        if (name == null || value == null) {
+            return;
+        }
+        if (extras == null) {
+            extras = new LinkedHashMap<>();
+        }
+        extras.put(name, value);
+        map = null;
+    }
+
+    public boolean has(MetadataKey key) {
+        int id = key.ordinal();
+        return (present[id >>> 6] & (1L << id)) != 0L;
+    }
+
+    public boolean isEmpty() {
+        for (long word : present) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return extras == null || extras.isEmpty();
+    }
+
+    /**
+     * The raw numeric value of a non-text key (epoch millis for times, 0/1 for flags).
+     */
+    public long getLong(MetadataKey key) {
+        return numbers[key.ordinal()];
+    }
+
+    /**
+     * Whether a non-text key holds a value set through the typed setters, rather than
+     * text (for example from {@link #fromMap}).
+     */
+    public boolean hasNumber(MetadataKey key) {
+        return key.kind.isNumeric() && has(key) && objects[key.ordinal()] == null;
+    }
+
+    public float getFloat(MetadataKey key) {
+        return Float.intBitsToFloat((int) numbers[key.ordinal()]);
+    }
+
+    public boolean getBoolean(MetadataKey key) {
+        return has(key) && numbers[key.ordinal()] != 0L;
+    }
+
+    /**
+     * The value of an {@link Kind#INSTANT} or {@link Kind#LOCAL_DATE_TIME} key; null if
+     * absent or if a text value cannot be parsed.
+     */
+    public Instant getInstant(MetadataKey key) {
+        if (!has(key)) {
+            return null;
+        }
+        Object object = objects[key.ordinal()];
+        if (object == null) {
+            return Instant.ofEpochMilli(numbers[key.ordinal()]);
+        }
+        try {
+            return key.kind == Kind.LOCAL_DATE_TIME
+                ? OffsetDateTime.parse(object.toString()).toInstant()
+                : Instant.parse(object.toString());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The value as written to the outputs, formatted on first use; null if absent.
+     */
+    public String getText(MetadataKey key) {
+        if (!has(key)) {
+            return null;
+        }
+        int id = key.ordinal();
+        String value = text[id];
+        if (value == null) {
+            value = format(key);
+            text[id] = value;
+        }
+        return value;
+    }
+
+    public String getText(MetadataKey key, String fallback) {
+        String value = getText(key);
+        return value != null ? value : fallback;
+    }
+
+    /**
+     * Looks a value up by its written name, including extras.
+     */
+    public String getText(String name) {
+        MetadataKey key = MetadataKey.byName(name);
+        if (key != null) {
+            return getText(key);
+        }
+        return extras != null ? extras.get(name) : null;
+    }
+
+    /**
+     * Entries outside the schema, in insertion order.
+     */
+    public Map<String, String> getExtras() {
+        return extras != null ? Collections.unmodifiableMap(extras) : Map.of();
+    }
+
+    /**
+     * The modpack block for the JSON sidecar; null when it was not requested.
+     */
+    public JsonSidecarContext getModpackContext() {
+        return modpackContext;
+    }
+
+    public void setModpackContext(JsonSidecarContext modpackContext) {
+        this.modpackContext = modpackContext;
+    }
+
+    /**
+     * Whether all three coordinates are present.
+     */
+    public boolean hasCoordinates() {
+        return has(MetadataKey.X) && has(MetadataKey.Y) && has(MetadataKey.Z);
+    }
+
+    /**
+     * The one-line summary used for PNG {@code Comment}/{@code Description} and the XMP
+     * sidecar description, built once.
+     */
+    public String getDescription() {
+        String value = description;
+        if (value == null) {
+            StringBuilder builder = new StringBuilder("Minecraft Screenshot");
+            if (has(MetadataKey.USERNAME)) {
+                builder.append(" - Player: ").append(getText(MetadataKey.USERNAME));
+            }
+            if (has(MetadataKey.WORLD)) {
+                builder.append(" | World: ").append(getText(MetadataKey.WORLD));
+            }
+            if (hasCoordinates()) {
+                builder.append(" | Coords: (")
+                    .append(getText(MetadataKey.X)).append(", ")
+                    .append(getText(MetadataKey.Y)).append(", ")
+                    .append(getText(MetadataKey.Z)).append(")");
+            }
+            if (has(MetadataKey.BIOME)) {
+                builder.append(" | Biome: ").append(getText(MetadataKey.BIOME));
+            }
+            value = builder.toString();
+            description = value;
+        }
+        return value;
+    }
+
+    byte[] getXmpPacket() {
+        return xmpPacket;
+    }
+
+    void setXmpPacket(byte[] xmpPacket) {
+        this.xmpPacket = xmpPacket;
+    }
+
+    /**
+     * All entries as text, schema entries first in schema order, then extras. Built once;
+     * for callers that need a plain map.
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> result = map;
+        if (result == null) {
+            Map<String, String> built = new LinkedHashMap<>();
+            for (MetadataKey key : MetadataKey.VALUES) {
+                if (has(key)) {
+                    built.put(key.keyName, getText(key));
+                }
+            }
+            if (extras != null) {
+                extras.forEach(built::putIfAbsent);
+            }
+            result = Collections.unmodifiableMap(built);
+            map = result;
+        }
+        return result;
+    }
+
+    private ScreenshotMetadata mark(MetadataKey key) {
+        int id = key.ordinal();
+        present[id >>> 6] |= 1L << id;
+        text[id] = null;
+        map = null;
+        description = null;
+        xmpPacket = null;
+        return this;
+    }
+
+    private String format(MetadataKey key) {
+        int id = key.ordinal();
+        Object object = objects[id];
+        if (object != null) {
+            // Text, or a numeric key that was filled from a map
+            return object.toString();
+        }
+        long value = numbers[id];
+        Kind kind = key.kind;
+        return switch (kind) {
+            case TEXT, INT -> Long.toString(value);
+            case BOOLEAN -> value != 0L ? "true" : "false";
+            case DECIMAL_1 -> String.format("%.1f", getFloat(key));
+            case DECIMAL_2 -> String.format("%.2f", getFloat(key));
+            case CLOCK -> formatClock(value);
+            case INSTANT -> Instant.ofEpochMilli(value).toString();
+            case LOCAL_DATE_TIME -> OffsetDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        };
+    }
+
+    /**
+     * Converts in-game time (0-23999) to 24h time
+     */
+    private static String formatClock(long timeOfDay) {
+        int hours = (int) ((timeOfDay / 1000 + 6) % 24);
+        int minutes = (int) ((timeOfDay % 1000) * 60 / 1000);
+        return String.format("%02d:%02d", hours, minutes);
+    }
+
+    private static void migrateKey(ScreenshotMetadata metadata, String legacyName, MetadataKey current) {
+        if (metadata.extras == null || metadata.has(current)) {
+            return;
+        }
+        String value = metadata.extras.get(legacyName);
+        if (value != null) {
+            metadata.setText(current, value);
+        }
+    }
+}
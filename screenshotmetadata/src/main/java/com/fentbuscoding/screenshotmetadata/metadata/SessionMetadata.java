@@ -0,0 +1,83 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+/**
+ * The entries that stay the same for a whole stay in one world and dimension: player
+ * identity, game and mod version, world or server, seed and dimension.
+ *
+ * <p>The values are built once per session, and each output format's rendering of them
+ * (UTF-8 JSON entry lines, escaped XMP text, PNG text chunk bytes) is built on first use and
+ * reused by every screenshot of the session. Writers only use a fragment while the
+ * screenshot still holds the session's value; see
+ * {@link ScreenshotMetadata#isSessionValue}.</p>
+ */
+public final class SessionMetadata {
+    private final ScreenshotMetadata values;
+    private volatile Fragments fragments;
+
+    /**
+     * @param values The session entries; must not be modified afterwards
+     */
+    public SessionMetadata(ScreenshotMetadata values) {
+        this.values = values;
+        // Format every value now so screenshots copy finished strings
+        values.asMap();
+    }
+
+    public ScreenshotMetadata getValues() {
+        return values;
+    }
+
+    /**
+     * The value of {@code key} escaped for XML, as UTF-8.
+     */
+    byte[] xml(MetadataKey key) {
+        return fragments().xml[key.ordinal()];
+    }
+
+    /**
+     * The complete JSON sidecar line for {@code key} as UTF-8, without separator.
+     */
+    byte[] jsonEntry(MetadataKey key) {
+        return fragments().json[key.ordinal()];
+    }
+
+    /**
+     * The complete iTXt chunk for {@code key}; empty if PNG text output skips the entry.
+     */
+    byte[] pngTextChunk(MetadataKey key) {
+        return fragments().pngText[key.ordinal()];
+    }
+
+    private Fragments fragments() {
+        Fragments result = fragments;
+        if (result == null) {
+            synchronized (this) {
+                result = fragments;
+                if (result == null) {
+                    result = new Fragments(values);
+                    fragments = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Fragments {
+        private final byte[][] xml = new byte[MetadataKey.VALUES.length][];
+        private final byte[][] json = new byte[MetadataKey.VALUES.length][];
+        private final byte[][] pngText = new byte[MetadataKey.VALUES.length][];
+
+        private Fragments(ScreenshotMetadata values) {
+            for (MetadataKey key : MetadataKey.VALUES) {
+                if (!values.has(key)) {
+                    continue;
+                }
+                String text = values.getText(key);
+                int id = key.ordinal();
+                xml[id] = XmpPacket.escape(text);
+                json[id] = JsonOutput.render(out -> JsonSidecarWriter.writeEntry(out, values, key));
+                pngText[id] = PngChunks.renderTextEntry(key.keyName, text);
+            }
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.fentbuscoding.screenshotmetadata.metadata;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The XMP packet for a screenshot, shared by the embedded {@code XML:com.adobe.xmp} chunk
+ * and the {@code .xmp} sidecar so both carry the same document.
+ *
+ * <p>The packet is serialized to UTF-8 once per screenshot and kept on the
+ * {@link ScreenshotMetadata}. All markup around the values is encoded once into static
+ * fragments, and values are escaped straight into the output. Minecraft properties use
+ * the {@code mc:} namespace and PascalCase names of screenshot-manager-enhanced; the
+ * Dublin Core properties use the array forms the XMP spec requires.</p>
+ */
+final class XmpPacket {
+    /** The keys read when building the packet. */
+    static final Set<MetadataKey> KEYS = Collections.unmodifiableSet(EnumSet.of(
+        MetadataKey.USERNAME, MetadataKey.WORLD_NAME, MetadataKey.WORLD, MetadataKey.DIMENSION,
+        MetadataKey.X, MetadataKey.Y, MetadataKey.Z, MetadataKey.TIMESTAMP, MetadataKey.BIOME,
+        MetadataKey.DIFFICULTY, MetadataKey.MINECRAFT_VERSION, MetadataKey.GAME_MODE,
+        MetadataKey.WEATHER, MetadataKey.SERVER_TYPE, MetadataKey.TAGS));
+
+    private static final byte[] HEADER = utf8(
+        "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+            + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+            + " <rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+            + "  <rdf:Description rdf:about=\"\"\n"
+            + "      xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n"
+            + "      xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\"\n"
+            + "      xmlns:mc=\"http://milezerosoftware.com/mc/1.0/\">\n");
+    private static final byte[] FOOTER = utf8(
+        "  </rdf:Description>\n"
+            + " </rdf:RDF>\n"
+            + "</x:xmpmeta>\n"
+            + "<?xpacket end=\"w\"?>");
+
+    // Declared first: the fragments below are escaped with them
+    private static final byte[] AMP = utf8("&amp;");
+    private static final byte[] LT = utf8("&lt;");
+    private static final byte[] GT = utf8("&gt;");
+    private static final byte[] QUOT = utf8("&quot;");
+    private static final byte[] APOS = utf8("&apos;");
+
+    private static final byte[] LI_OPEN = utf8("      <rdf:li>");
+    private static final byte[] ALT_LI_OPEN = utf8("      <rdf:li xml:lang=\"x-default\">");
+    private static final byte[] LI_CLOSE = utf8("</rdf:li>\n");
+    private static final byte[] SEPARATOR = utf8(" | ");
+    private static final byte[] COORDINATE_SEPARATOR = utf8(", ");
+
+    private static final Element TITLE = Element.array("dc:title", "rdf:Alt");
+    private static final Element DESCRIPTION = Element.array("dc:description", "rdf:Alt");
+    private static final Element CREATOR = Element.array("dc:creator", "rdf:Seq");
+    private static final Element SUBJECT = Element.array("dc:subject", "rdf:Bag");
+    private static final Element TYPE = Element.array("dc:type", "rdf:Bag");
+    private static final Element CREATOR_TOOL = Element.simple("xmp:CreatorTool");
+    private static final Element CREATE_DATE = Element.simple("xmp:CreateDate");
+    private static final Element MODIFY_DATE = Element.simple("xmp:ModifyDate");
+    private static final Element WORLD_TITLE = Element.simple("mc:WorldTitle");
+    private static final Element DIMENSION = Element.simple("mc:Dimension");
+    private static final Element BIOME = Element.simple("mc:Biome");
+    private static final Element COORDINATES = Element.simple("mc:Coordinates");
+    private static final Element X = Element.simple("mc:X");
+    private static final Element Y = Element.simple("mc:Y");
+    private static final Element Z = Element.simple("mc:Z");
+    private static final Element DIFFICULTY = Element.simple("mc:Difficulty");
+    private static final Element VERSION = Element.simple("mc:Version");
+    private static final Element GAME_MODE = Element.simple("mc:GameMode");
+    private static final Element PLAYER = Element.simple("mc:Player");
+    private static final Element WEATHER = Element.simple("mc:Weather");
+    private static final Element SERVER_TYPE = Element.simple("mc:ServerType");
+
+    private static final byte[] TITLE_PREFIX = utf8("Minecraft - ");
+    private static final byte[] SCREENSHOT_SUBJECT = utf8("Minecraft Screenshot");
+    private static final byte[] IMAGE_TYPE = utf8("Image");
+    private static final byte[] UNKNOWN = utf8("Unknown");
+    private static final byte[] UNKNOWN_PLAYER = utf8("Unknown Player");
+    private static final byte[] WORLD_LABEL = utf8("World: ");
+    private static final byte[] DIMENSION_LABEL = utf8("Dim: ");
+    private static final byte[] LOCATION_LABEL = utf8("Loc: ");
+    private static final byte[] CREATOR_TOOL_VALUE = escape("Screenshot Metadata Mod v" + ScreenshotMetadataMod.MOD_VERSION);
+
+    private static final ThreadLocal<ByteArrayOutputStream> SCRATCH =
+        ThreadLocal.withInitial(() -> new ByteArrayOutputStream(4096));
+
+    private XmpPacket() {
+    }
+
+    /**
+     * The packet for {@code metadata} as UTF-8, serialized on first use.
+     */
+    static byte[] of(ScreenshotMetadata metadata) {
+        byte[] packet = metadata.getXmpPacket();
+        if (packet == null) {
+            packet = serialize(metadata);
+            metadata.setXmpPacket(packet);
+        }
+        return packet;
+    }
+
+    /**
+     * The UTF-8 bytes of {@code text} escaped for use as XML character data.
+     */
+    static byte[] escape(String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text != null ? text.length() + 16 : 0);
+        writeEscaped(out, text);
+        return out.toByteArray();
+    }
+
+    private static byte[] serialize(ScreenshotMetadata metadata) {
+        ByteArrayOutputStream out = SCRATCH.get();
+        out.reset();
+        out.writeBytes(HEADER);
+
+        // Dublin Core
+        out.writeBytes(TITLE.open);
+        out.writeBytes(ALT_LI_OPEN);
+        out.writeBytes(TITLE_PREFIX);
+        if (metadata.has(MetadataKey.USERNAME)) {
+            writeValue(out, metadata, MetadataKey.USERNAME);
+        } else {
+            out.writeBytes(UNKNOWN_PLAYER);
+        }
+        out.writeBytes(LI_CLOSE);
+        out.writeBytes(TITLE.close);
+
+        out.writeBytes(DESCRIPTION.open);
+        out.writeBytes(ALT_LI_OPEN);
+        writeDescription(out, metadata);
+        out.writeBytes(LI_CLOSE);
+        out.writeBytes(DESCRIPTION.close);
+
+        if (isPresent(metadata, MetadataKey.USERNAME)) {
+            out.writeBytes(CREATOR.open);
+            out.writeBytes(LI_OPEN);
+            writeValue(out, metadata, MetadataKey.USERNAME);
+            out.writeBytes(LI_CLOSE);
+            out.writeBytes(CREATOR.close);
+        }
+
+        out.writeBytes(SUBJECT.open);
+        writeItem(out, SCREENSHOT_SUBJECT);
+        for (String tag : splitTags(metadata.getText(MetadataKey.TAGS))) {
+            out.writeBytes(LI_OPEN);
+            writeEscaped(out, tag);
+            out.writeBytes(LI_CLOSE);
+        }
+        out.writeBytes(SUBJECT.close);
+
+        out.writeBytes(TYPE.open);
+        writeItem(out, IMAGE_TYPE);
+        out.writeBytes(TYPE.close);
+
+        // XMP basic
+        out.writeBytes(CREATOR_TOOL.open);
+        out.writeBytes(CREATOR_TOOL_VALUE);
+        out.writeBytes(CREATOR_TOOL.close);
+        Instant timestamp = metadata.getInstant(MetadataKey.TIMESTAMP);
+        if (timestamp != null) {
+            String formattedDate = DateTimeFormatter.ISO_INSTANT.format(timestamp);
+            writeElement(out, CREATE_DATE, formattedDate);
+            writeElement(out, MODIFY_DATE, formattedDate);
+        } else if (metadata.has(MetadataKey.TIMESTAMP)) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not parse timestamp: {}", metadata.getText(MetadataKey.TIMESTAMP));
+        }
+
+        // Minecraft
+        if (isPresent(metadata, MetadataKey.WORLD_NAME)) {
+            writeElement(out, WORLD_TITLE, metadata, MetadataKey.WORLD_NAME);
+        } else {
+            writeElement(out, WORLD_TITLE, metadata, MetadataKey.WORLD);
+        }
+        writeElement(out, DIMENSION, metadata, MetadataKey.DIMENSION);
+        writeElement(out, BIOME, metadata, MetadataKey.BIOME);
+        if (metadata.hasCoordinates()) {
+            out.writeBytes(COORDINATES.open);
+            writeCoordinates(out, metadata);
+            out.writeBytes(COORDINATES.close);
+            writeElement(out, X, metadata, MetadataKey.X);
+            writeElement(out, Y, metadata, MetadataKey.Y);
+            writeElement(out, Z, metadata, MetadataKey.Z);
+        }
+        writeElement(out, DIFFICULTY, metadata, MetadataKey.DIFFICULTY);
+        writeElement(out, VERSION, metadata, MetadataKey.MINECRAFT_VERSION);
+        writeElement(out, GAME_MODE, metadata, MetadataKey.GAME_MODE);
+        writeElement(out, PLAYER, metadata, MetadataKey.USERNAME);
+        writeElement(out, WEATHER, metadata, MetadataKey.WEATHER);
+        writeElement(out, SERVER_TYPE, metadata, MetadataKey.SERVER_TYPE);
+
+        out.writeBytes(FOOTER);
+        return out.toByteArray();
+    }
+
+    private static void writeDescription(ByteArrayOutputStream out, ScreenshotMetadata metadata) {
+        out.writeBytes(WORLD_LABEL);
+        if (isPresent(metadata, MetadataKey.WORLD_NAME)) {
+            writeValue(out, metadata, MetadataKey.WORLD_NAME);
+        } else if (isPresent(metadata, MetadataKey.WORLD)) {
+            writeValue(out, metadata, MetadataKey.WORLD);
+        } else {
+            out.writeBytes(UNKNOWN);
+        }
+        out.writeBytes(SEPARATOR);
+        out.writeBytes(DIMENSION_LABEL);
+        if (isPresent(metadata, MetadataKey.DIMENSION)) {
+            writeValue(out, metadata, MetadataKey.DIMENSION);
+        } else {
+            out.writeBytes(UNKNOWN);
+        }
+        out.writeBytes(SEPARATOR);
+        out.writeBytes(LOCATION_LABEL);
+        if (metadata.hasCoordinates()) {
+            writeCoordinates(out, metadata);
+        } else {
+            out.writeBytes(UNKNOWN);
+        }
+    }
+
+    private static void writeCoordinates(ByteArrayOutputStream out, ScreenshotMetadata metadata) {
+        writeEscaped(out, metadata.getText(MetadataKey.X));
+        out.writeBytes(COORDINATE_SEPARATOR);
+        writeEscaped(out, metadata.getText(MetadataKey.Y));
+        out.writeBytes(COORDINATE_SEPARATOR);
+        writeEscaped(out, metadata.getText(MetadataKey.Z));
+    }
+
+    private static void writeItem(ByteArrayOutputStream out, byte[] value) {
+        out.writeBytes(LI_OPEN);
+        out.writeBytes(value);
+        out.writeBytes(LI_CLOSE);
+    }
+
+    /**
+     * Writes the element if {@code key} holds a non-blank value.
+     */
+    private static void writeElement(ByteArrayOutputStream out, Element element, ScreenshotMetadata metadata, MetadataKey key) {
+        if (isPresent(metadata, key)) {
+            out.writeBytes(element.open);
+            writeValue(out, metadata, key);
+            out.writeBytes(element.close);
+        }
+    }
+
+    private static void writeElement(ByteArrayOutputStream out, Element element, String value) {
+        out.writeBytes(element.open);
+        writeEscaped(out, value);
+        out.writeBytes(element.close);
+    }
+
+    /**
+     * Writes the escaped value, reusing the session's escaped text when the entry still
+     * holds the session value.
+     */
+    private static void writeValue(ByteArrayOutputStream out, ScreenshotMetadata metadata, MetadataKey key) {
+        if (metadata.isSessionValue(key)) {
+            out.writeBytes(metadata.getSession().xml(key));
+        } else {
+            writeEscaped(out, metadata.getText(key));
+        }
+    }
+
+    private static boolean isPresent(ScreenshotMetadata metadata, MetadataKey key) {
+        String value = metadata.getText(key);
+        return value != null && !value.isBlank();
+    }
+
+    private static List<String> splitTags(String raw) {
+        if (raw == null || raw.isBlank()) {
+            return List.of();
+        }
+        List<String> tags = new ArrayList<>();
+        for (String part : raw.split(",")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty() && !tags.contains(trimmed)) {
+                tags.add(trimmed);
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Escapes and UTF-8 encodes {@code text} in one pass. Control characters XML cannot
+     * represent are dropped.
+     */
+    private static void writeEscaped(ByteArrayOutputStream out, String text) {
+        if (text == null) {
+            return;
+        }
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '&' -> out.writeBytes(AMP);
+                    case '<' -> out.writeBytes(LT);
+                    case '>' -> out.writeBytes(GT);
+                    case '"' -> out.writeBytes(QUOT);
+                    case '\'' -> out.writeBytes(APOS);
+                    default -> {
+                        if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                            out.write(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            } else if (!Character.isSurrogate(c) && c < 0xFFFE) {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The encoded start and end markup of one property.
+     */
+    private static final class Element {
+        private final byte[] open;
+        private final byte[] close;
+
+        private Element(String open, String close) {
+            this.open = utf8(open);
+            this.close = utf8(close);
+        }
+
+        private static Element simple(String name) {
+            return new Element("   <" + name + ">", "</" + name + ">\n");
+        }
+
+        /**
+         * A property holding an RDF array; the items are written between open and close.
+         */
+        private static Element array(String name, String type) {
+            return new Element("   <" + name + ">\n     <" + type + ">\n", "     </" + type + ">\n   </" + name + ">\n");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.fentbuscoding.screenshotmetadata.mixin;
+
+import com.fentbuscoding.screenshotmetadata.capture.MetadataPipeline;
+import com.fentbuscoding.screenshotmetadata.capture.ModpackContextCache;
+import com.fentbuscoding.screenshotmetadata.capture.TimelapseScheduler;
+import com.fentbuscoding.screenshotmetadata.provider.WorldSession;
+import net.minecraft.client.MinecraftClient;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Drives the timelapse scheduler from the client tick and tells the modpack context
+ * cache about resource reloads, the world session about joins and disconnects, and the
+ * metadata pipeline that the client is stopping.
+ * Mixins rather than Fabric API events so they also work on builds that only ship the
+ * key binding module.
+ */
+@Mixin(MinecraftClient.class)
+public class MinecraftClientMixin {
+
+    @Inject(method = "tick()V", at = @At("TAIL"), require = 0)
+    private void onClientTick(CallbackInfo ci) {
+        TimelapseScheduler.onClientTick((MinecraftClient) (Object) this);
+    }
+
+    @Inject(method = "reloadResources()Ljava/util/concurrent/CompletableFuture;", at = @At("HEAD"), require = 0)
+    private void onReloadResources(CallbackInfoReturnable<CompletableFuture<Void>> cir) {
+        ModpackContextCache.onResourceReload();
+    }
+
+    // Matched by name only: the parameters differ between versions
+    @Inject(method = "joinWorld", at = @At("HEAD"), require = 0)
+    private void onJoinWorld(CallbackInfo ci) {
+        WorldSession.onWorldChange();
+    }
+
+    @Inject(method = "disconnect", at = @At("HEAD"), require = 0)
+    private void onDisconnect(CallbackInfo ci) {
+        WorldSession.onDisconnect();
+    }
+
+    @Inject(method = "stop()V", at = @At("HEAD"), require = 0)
+    private void onStop(CallbackInfo ci) {
+        MetadataPipeline.onClientStop();
+    }
+}
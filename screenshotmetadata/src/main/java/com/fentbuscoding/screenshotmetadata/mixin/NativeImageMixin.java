@@ -0,0 +1,51 @@
+package com.fentbuscoding.screenshotmetadata.mixin;
+
+import com.fentbuscoding.screenshotmetadata.capture.CapturedImage;
+import com.fentbuscoding.screenshotmetadata.capture.ScreenshotCaptureTracker;
+import com.fentbuscoding.screenshotmetadata.capture.SinglePassMetadataInjector;
+import com.fentbuscoding.screenshotmetadata.compat.NativeImagePixels;
+import net.minecraft.client.texture.NativeImage;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyArg;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.io.File;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Hooks the PNG encode of screenshots: takes the pixels for the hash and thumbnail, splices
+ * metadata chunks into the encoder output and signals the capture tracker once the
+ * file is on disk.
+ */
+@Mixin(NativeImage.class)
+public class NativeImageMixin {
+
+    @Inject(method = "writeTo(Ljava/nio/file/Path;)V", at = @At("HEAD"), require = 0)
+    private void beforeWriteToPath(Path path, CallbackInfo ci) {
+        NativeImage image = (NativeImage) (Object) this;
+        CapturedImage.beforeEncode(path, image.getWidth(), image.getHeight(),
+            (x, y) -> NativeImagePixels.argb(image, x, y));
+        SinglePassMetadataInjector.beginWrite(path);
+    }
+
+    @ModifyArg(method = "writeTo(Ljava/nio/file/Path;)V",
+        at = @At(value = "INVOKE",
+            target = "Lnet/minecraft/client/texture/NativeImage;write(Ljava/nio/channels/WritableByteChannel;)Z"),
+        require = 0)
+    private WritableByteChannel wrapEncoderChannel(WritableByteChannel channel) {
+        return SinglePassMetadataInjector.wrapChannel(channel);
+    }
+
+    @Inject(method = "writeTo(Ljava/nio/file/Path;)V", at = @At("RETURN"), require = 0)
+    private void afterWriteToPath(Path path, CallbackInfo ci) {
+        SinglePassMetadataInjector.endWrite();
+    }
+
+    @Inject(method = "writeTo(Ljava/io/File;)V", at = @At("TAIL"), require = 0)
+    private void onWrittenToFile(File path, CallbackInfo ci) {
+        ScreenshotCaptureTracker.onImageWritten(path);
+    }
+}
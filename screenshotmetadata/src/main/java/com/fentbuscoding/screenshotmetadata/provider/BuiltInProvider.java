@@ -0,0 +1,36 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Base for the providers shipped with the mod. They only do cheap work on the worker,
+ * so they resolve in place instead of on the isolation pool.
+ */
+abstract class BuiltInProvider implements MetadataProvider {
+    private final String id;
+    private final Set<MetadataKey> keys;
+
+    BuiltInProvider(String id, Set<MetadataKey> keys) {
+        this.id = id;
+        this.keys = keys.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(keys));
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public Set<MetadataKey> keys() {
+        return keys;
+    }
+
+    @Override
+    public boolean isIsolated() {
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.effect.StatusEffect;
+import net.minecraft.entity.effect.StatusEffectInstance;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Active status effects with their level and remaining duration.
+ */
+final class EffectsProvider extends BuiltInProvider {
+    EffectsProvider() {
+        super("screenshotmetadata:effects", EnumSet.of(MetadataKey.POTION_EFFECTS, MetadataKey.POTION_EFFECT_COUNT));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        return request.getConfig().includePotionEffects && super.isNeeded(request);
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        if (client.player == null) {
+            return null;
+        }
+        try {
+            Collection<StatusEffectInstance> effects = client.player.getStatusEffects();
+            int count = effects.size();
+            StatusEffect[] types = new StatusEffect[count];
+            int[] amplifiers = new int[count];
+            int[] durations = new int[count];
+            int i = 0;
+            for (StatusEffectInstance effect : effects) {
+                if (i >= count) {
+                    break;
+                }
+                types[i] = effect.getEffectType().value();
+                amplifiers[i] = effect.getAmplifier();
+                durations[i] = effect.getDuration();
+                i++;
+            }
+            return metadata -> addPotionEffectsMetadata(metadata, types, amplifiers, durations);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not capture potion effects", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds active potion effects to metadata
+     */
+    private static void addPotionEffectsMetadata(ScreenshotMetadata metadata, StatusEffect[] types,
+                                                 int[] amplifiers, int[] durations) {
+        int effectCount = types.length;
+        if (effectCount == 0) {
+            metadata.setText(MetadataKey.POTION_EFFECTS, "None");
+            return;
+        }
+
+        StringBuilder effectsBuilder = new StringBuilder();
+        for (int i = 0; i < effectCount; i++) {
+            if (i > 0) {
+                effectsBuilder.append(", ");
+            }
+
+            effectsBuilder.append(types[i].getName().getString());
+            int amplifier = amplifiers[i];
+            if (amplifier > 0) {
+                effectsBuilder.append(" ").append(amplifier + 1);
+            }
+            effectsBuilder.append(" (").append(durations[i]).append("t)");
+        }
+
+        metadata.setText(MetadataKey.POTION_EFFECTS, effectsBuilder.toString());
+        metadata.setLong(MetadataKey.POTION_EFFECT_COUNT, effectCount);
+    }
+}
@@ -0,0 +1,103 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.EquipmentSlot;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+
+import java.util.EnumSet;
+
+/**
+ * Held items and worn armor.
+ */
+final class EquipmentProvider extends BuiltInProvider {
+    private static final EquipmentSlot[] ARMOR_SLOTS = {
+        EquipmentSlot.HEAD,
+        EquipmentSlot.CHEST,
+        EquipmentSlot.LEGS,
+        EquipmentSlot.FEET
+    };
+    private static final MetadataKey[] ARMOR_KEYS = {
+        MetadataKey.ARMOR_HEAD,
+        MetadataKey.ARMOR_CHEST,
+        MetadataKey.ARMOR_LEGS,
+        MetadataKey.ARMOR_FEET
+    };
+
+    EquipmentProvider() {
+        super("screenshotmetadata:equipment", EnumSet.of(
+            MetadataKey.MAIN_HAND_ITEM, MetadataKey.MAIN_HAND_COUNT,
+            MetadataKey.OFF_HAND_ITEM, MetadataKey.OFF_HAND_COUNT,
+            MetadataKey.ARMOR_HEAD, MetadataKey.ARMOR_CHEST, MetadataKey.ARMOR_LEGS, MetadataKey.ARMOR_FEET));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        return request.getConfig().includeEquipment && super.isNeeded(request);
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        ClientPlayerEntity player = client.player;
+        if (player == null) {
+            return null;
+        }
+        Values values = new Values();
+        try {
+            ItemStack mainHand = player.getMainHandStack();
+            if (mainHand != null && !mainHand.isEmpty()) {
+                values.mainHandItem = mainHand.getItem();
+                values.mainHandCount = mainHand.getCount();
+            }
+
+            ItemStack offHand = player.getOffHandStack();
+            if (offHand != null && !offHand.isEmpty()) {
+                values.offHandItem = offHand.getItem();
+                values.offHandCount = offHand.getCount();
+            }
+
+            for (int i = 0; i < ARMOR_SLOTS.length; i++) {
+                ItemStack armor = player.getEquippedStack(ARMOR_SLOTS[i]);
+                if (armor != null && !armor.isEmpty()) {
+                    values.armor[i] = armor.getItem();
+                }
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not capture equipment", e);
+        }
+        return values;
+    }
+
+    private static final class Values implements Captured {
+        private Item mainHandItem;
+        private int mainHandCount;
+        private Item offHandItem;
+        private int offHandCount;
+        private final Item[] armor = new Item[ARMOR_SLOTS.length];
+
+        /**
+         * Adds held items, armor and equipment details to metadata
+         */
+        @Override
+        public void resolve(ScreenshotMetadata metadata) {
+            if (mainHandItem != null) {
+                metadata.setText(MetadataKey.MAIN_HAND_ITEM, mainHandItem.getName().getString());
+                metadata.setLong(MetadataKey.MAIN_HAND_COUNT, mainHandCount);
+            }
+            if (offHandItem != null) {
+                metadata.setText(MetadataKey.OFF_HAND_ITEM, offHandItem.getName().getString());
+                metadata.setLong(MetadataKey.OFF_HAND_COUNT, offHandCount);
+            }
+
+            for (int i = 0; i < ARMOR_KEYS.length; i++) {
+                if (armor[i] != null) {
+                    metadata.setText(ARMOR_KEYS[i], armor[i].getName().getString());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.Set;
+
+/**
+ * A source of screenshot metadata.
+ *
+ * <p>Collection runs in two steps. {@link #capture} runs on the client thread the moment
+ * a screenshot is taken and should only copy the live values it needs (numbers, registry
+ * keys, references to immutable objects). The returned {@link Captured} runs later on a
+ * metadata worker and writes the values into the {@link ScreenshotMetadata}.</p>
+ *
+ * <p>A provider only runs when an enabled output needs one of its {@link #keys()}. Both
+ * steps are timed: a capture that keeps going over {@link #captureBudgetMicros()}, or a
+ * resolve that keeps failing or going over {@link #resolveTimeoutMillis()}, gets the
+ * provider paused for a while so it cannot hold up every screenshot.</p>
+ *
+ * <p>Other mods register providers with {@link MetadataProviders#register}, or by listing
+ * an implementation under the {@code screenshotmetadata:provider} entrypoint in their
+ * {@code fabric.mod.json}. Entries outside the schema are written with
+ * {@link ScreenshotMetadata#putExtra}; such providers should override
+ * {@link #isNeeded} to check {@link MetadataRequest#acceptsExtras()}.</p>
+ */
+public interface MetadataProvider {
+    long DEFAULT_CAPTURE_BUDGET_MICROS = 1_000L;
+    long DEFAULT_RESOLVE_TIMEOUT_MILLIS = 250L;
+
+    /**
+     * Unique id used in logs, e.g. {@code "mymod:camera"}.
+     */
+    String id();
+
+    /**
+     * The schema keys this provider can write.
+     */
+    Set<MetadataKey> keys();
+
+    /**
+     * Whether this provider has to run for a screenshot. By default it runs when any of its
+     * keys is needed by an enabled output.
+     */
+    default boolean isNeeded(MetadataRequest request) {
+        return request.needsAny(keys());
+    }
+
+    /**
+     * How long {@link #capture} may take on the client thread, in microseconds.
+     */
+    default long captureBudgetMicros() {
+        return DEFAULT_CAPTURE_BUDGET_MICROS;
+    }
+
+    /**
+     * How long the worker waits for {@link Captured#resolve}, in milliseconds.
+     */
+    default long resolveTimeoutMillis() {
+        return DEFAULT_RESOLVE_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Whether {@link Captured#resolve} runs on a separate thread so its timeout can be
+     * enforced. Third-party providers always are; the built-in ones resolve in place.
+     */
+    default boolean isIsolated() {
+        return true;
+    }
+
+    /**
+     * Copies the state this provider needs. Runs on the client thread.
+     *
+     * @return The work left for the worker, or null if there is nothing to write
+     */
+    Captured capture(MinecraftClient client, MetadataRequest request);
+
+    /**
+     * The worker-side half of a provider run.
+     */
+    @FunctionalInterface
+    interface Captured {
+        /**
+         * Writes the captured values. Runs on a metadata worker.
+         */
+        void resolve(ScreenshotMetadata metadata) throws Exception;
+    }
+}
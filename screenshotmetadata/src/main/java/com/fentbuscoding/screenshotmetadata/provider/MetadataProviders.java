@@ -0,0 +1,276 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.entrypoint.EntrypointContainer;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of {@link MetadataProvider}s and the code that runs them for a screenshot.
+ *
+ * <p>Providers run in registration order, built-ins first, and only when
+ * {@link MetadataProvider#isNeeded} says an enabled output wants their keys. Each run is
+ * timed against the provider's budget. A provider that goes over budget, times out or
+ * throws {@value #MAX_STRIKES} times in a row is skipped for a minute; a clean run
+ * resets the count.</p>
+ */
+public final class MetadataProviders {
+    public static final String ENTRYPOINT = "screenshotmetadata:provider";
+
+    private static final int MAX_STRIKES = 3;
+    private static final long SUSPEND_MILLIS = 60_000L;
+    private static final int MAX_ISOLATED_THREADS = 4;
+
+    private static final List<Entry> PROVIDERS = new CopyOnWriteArrayList<>(List.of(
+        new Entry(new SessionProvider()),
+        new Entry(new PlayerProvider()),
+        new Entry(new WorldProvider()),
+        new Entry(new WeatherProvider()),
+        new Entry(new EquipmentProvider()),
+        new Entry(new EffectsProvider()),
+        new Entry(new PerformanceProvider()),
+        new Entry(new ModpackProvider())
+    ));
+
+    // Third-party resolves run here so a stuck provider costs a pool thread, not a metadata worker
+    private static final ThreadPoolExecutor ISOLATION_POOL = new ThreadPoolExecutor(
+        0, MAX_ISOLATED_THREADS, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Screenshot Metadata Provider");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private MetadataProviders() {
+    }
+
+    /**
+     * Adds a provider after the ones already registered.
+     *
+     * @return false if the provider is null or its id is already taken
+     */
+    public static boolean register(MetadataProvider provider) {
+        if (provider == null || provider.id() == null) {
+            ScreenshotMetadataMod.LOGGER.warn("Ignoring metadata provider without an id");
+            return false;
+        }
+        synchronized (PROVIDERS) {
+            for (Entry entry : PROVIDERS) {
+                if (entry.provider.id().equals(provider.id())) {
+                    ScreenshotMetadataMod.LOGGER.warn("Metadata provider {} is already registered", provider.id());
+                    return false;
+                }
+            }
+            PROVIDERS.add(new Entry(provider));
+        }
+        ScreenshotMetadataMod.LOGGER.debug("Registered metadata provider {} ({} keys)", provider.id(), provider.keys().size());
+        return true;
+    }
+
+    /**
+     * Registers the providers other mods list under the {@value #ENTRYPOINT} entrypoint.
+     * Called once from mod initialization.
+     */
+    public static void loadEntrypoints() {
+        try {
+            for (EntrypointContainer<MetadataProvider> container
+                : FabricLoader.getInstance().getEntrypointContainers(ENTRYPOINT, MetadataProvider.class)) {
+                String modId = container.getProvider().getMetadata().getId();
+                try {
+                    register(container.getEntrypoint());
+                } catch (Exception | LinkageError e) {
+                    ScreenshotMetadataMod.LOGGER.error("Could not load metadata provider from {}", modId, e);
+                }
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Could not load metadata provider entrypoints", e);
+        }
+    }
+
+    /**
+     * Runs the capture step of every provider the request needs. Must run on the client
+     * thread.
+     */
+    public static Captures capture(MinecraftClient client, MetadataRequest request) {
+        Captures captures = new Captures();
+        long now = System.currentTimeMillis();
+        for (Entry entry : PROVIDERS) {
+            if (entry.isSuspended(now)) {
+                continue;
+            }
+            MetadataProvider provider = entry.provider;
+            try {
+                if (!provider.isNeeded(request)) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                MetadataProvider.Captured captured = provider.capture(client, request);
+                long micros = (System.nanoTime() - start) / 1_000L;
+                boolean overBudget = micros > provider.captureBudgetMicros();
+                if (overBudget) {
+                    entry.strike("capture took " + micros + " us, budget " + provider.captureBudgetMicros() + " us");
+                }
+                if (captured != null) {
+                    captures.runs.add(new Run(entry, captured, overBudget));
+                }
+            } catch (Exception | LinkageError e) {
+                ScreenshotMetadataMod.LOGGER.debug("Metadata provider {} failed to capture", provider.id(), e);
+                entry.strike("capture failed: " + e);
+            }
+        }
+        return captures;
+    }
+
+    /**
+     * Runs the resolve step of every captured provider into {@code metadata}. Runs on a
+     * metadata worker. Isolated providers write into their own instance, which is merged
+     * in only if they finish within their timeout.
+     */
+    public static void resolve(Captures captures, ScreenshotMetadata metadata) {
+        int count = captures.runs.size();
+        ScreenshotMetadata[] isolated = new ScreenshotMetadata[count];
+        List<Future<?>> futures = new ArrayList<>(count);
+
+        // Start the isolated providers first so they run alongside the built-ins
+        for (int i = 0; i < count; i++) {
+            Run run = captures.runs.get(i);
+            Future<?> future = null;
+            if (run.entry.provider.isIsolated()) {
+                ScreenshotMetadata target = new ScreenshotMetadata();
+                MetadataProvider.Captured captured = run.captured;
+                try {
+                    future = ISOLATION_POOL.submit(() -> {
+                        captured.resolve(target);
+                        return null;
+                    });
+                    isolated[i] = target;
+                } catch (RejectedExecutionException e) {
+                    ScreenshotMetadataMod.LOGGER.debug("Skipping metadata provider {}, all provider threads are busy",
+                        run.entry.provider.id());
+                }
+            }
+            futures.add(future);
+        }
+
+        for (Run run : captures.runs) {
+            if (!run.entry.provider.isIsolated()) {
+                resolveInPlace(run, metadata);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Future<?> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            Run run = captures.runs.get(i);
+            Entry entry = run.entry;
+            long timeout = entry.provider.resolveTimeoutMillis();
+            try {
+                future.get(timeout, TimeUnit.MILLISECONDS);
+                metadata.putAll(isolated[i]);
+                run.succeed();
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                entry.strike("resolve timed out after " + timeout + " ms");
+            } catch (ExecutionException e) {
+                ScreenshotMetadataMod.LOGGER.debug("Metadata provider {} failed to resolve", entry.provider.id(), e.getCause());
+                entry.strike("resolve failed: " + e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void resolveInPlace(Run run, ScreenshotMetadata metadata) {
+        MetadataProvider provider = run.entry.provider;
+        try {
+            long start = System.nanoTime();
+            run.captured.resolve(metadata);
+            long millis = (System.nanoTime() - start) / 1_000_000L;
+            if (millis > provider.resolveTimeoutMillis()) {
+                run.entry.strike("resolve took " + millis + " ms, timeout " + provider.resolveTimeoutMillis() + " ms");
+            } else {
+                run.succeed();
+            }
+        } catch (Exception | LinkageError e) {
+            ScreenshotMetadataMod.LOGGER.debug("Metadata provider {} failed to resolve", provider.id(), e);
+            run.entry.strike("resolve failed: " + e);
+        }
+    }
+
+    /**
+     * The capture results for one screenshot, in provider order.
+     */
+    public static final class Captures {
+        private final List<Run> runs = new ArrayList<>();
+
+        private Captures() {
+        }
+
+        public int size() {
+            return runs.size();
+        }
+    }
+
+    private static final class Run {
+        private final Entry entry;
+        private final MetadataProvider.Captured captured;
+        private final boolean overBudget;
+
+        private Run(Entry entry, MetadataProvider.Captured captured, boolean overBudget) {
+            this.entry = entry;
+            this.captured = captured;
+            this.overBudget = overBudget;
+        }
+
+        /**
+         * Resets the strike count, unless the capture half of this run was over budget.
+         */
+        private void succeed() {
+            if (!overBudget) {
+                entry.strikes.set(0);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final MetadataProvider provider;
+        private final AtomicInteger strikes = new AtomicInteger();
+        private volatile long suspendedUntil;
+
+        private Entry(MetadataProvider provider) {
+            this.provider = provider;
+        }
+
+        private boolean isSuspended(long now) {
+            return suspendedUntil != 0L && now < suspendedUntil;
+        }
+
+        private void strike(String reason) {
+            int count = strikes.incrementAndGet();
+            if (count < MAX_STRIKES) {
+                ScreenshotMetadataMod.LOGGER.debug("Metadata provider {}: {}", provider.id(), reason);
+                return;
+            }
+            strikes.set(0);
+            suspendedUntil = System.currentTimeMillis() + SUSPEND_MILLIS;
+            ScreenshotMetadataMod.LOGGER.warn("Metadata provider {} paused for {} s after {} problems in a row (last: {})",
+                provider.id(), SUSPEND_MILLIS / 1_000L, MAX_STRIKES, reason);
+        }
+    }
+}
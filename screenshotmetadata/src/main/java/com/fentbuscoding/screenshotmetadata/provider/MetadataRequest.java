@@ -0,0 +1,96 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.PngXmpWriter;
+import com.fentbuscoding.screenshotmetadata.metadata.XmpSidecarWriter;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * What the outputs enabled for one screenshot need: the schema keys they read, whether
+ * they also write entries outside the schema, and whether the JSON sidecar wants the
+ * modpack context. Providers use it to decide whether to run and what to copy.
+ */
+public final class MetadataRequest {
+    /** Keys used by the screenshot rename template. */
+    private static final Set<MetadataKey> RENAME_TEMPLATE_KEYS = Collections.unmodifiableSet(EnumSet.of(
+        MetadataKey.DIMENSION, MetadataKey.BIOME, MetadataKey.X, MetadataKey.Y, MetadataKey.Z,
+        MetadataKey.WORLD_NAME, MetadataKey.USERNAME));
+
+    private final ScreenshotMetadataConfig.Snapshot config;
+    private final EnumSet<MetadataKey> keys;
+    private final boolean extras;
+    private final boolean modpackContext;
+
+    private MetadataRequest(ScreenshotMetadataConfig.Snapshot config, EnumSet<MetadataKey> keys, boolean extras,
+                            boolean modpackContext) {
+        this.config = config;
+        this.keys = keys;
+        this.extras = extras;
+        this.modpackContext = modpackContext;
+    }
+
+    /**
+     * The request for a regular screenshot, from the outputs enabled in {@code config}.
+     */
+    public static MetadataRequest forScreenshot(ScreenshotMetadataConfig.Snapshot config) {
+        EnumSet<MetadataKey> keys = EnumSet.noneOf(MetadataKey.class);
+        boolean everything = config.writePngMetadata || config.writeJsonSidecar || config.writeCatalog;
+        if (everything) {
+            keys.addAll(EnumSet.allOf(MetadataKey.class));
+        } else {
+            if (config.writeEmbeddedXmp) {
+                keys.addAll(PngXmpWriter.KEYS);
+            }
+            if (config.writeXmpSidecar) {
+                keys.addAll(XmpSidecarWriter.KEYS);
+            }
+            if (config.renameScreenshots) {
+                keys.addAll(RENAME_TEMPLATE_KEYS);
+            }
+        }
+        return new MetadataRequest(config, keys, everything,
+            (config.writeJsonSidecar || config.writeCatalog) && config.includeModpackContext);
+    }
+
+    /**
+     * The request for a timelapse frame, whose only output is the sequence stream.
+     */
+    public static MetadataRequest forTimelapse(ScreenshotMetadataConfig.Snapshot config) {
+        return new MetadataRequest(config, EnumSet.allOf(MetadataKey.class), true, false);
+    }
+
+    public ScreenshotMetadataConfig.Snapshot getConfig() {
+        return config;
+    }
+
+    public boolean needs(MetadataKey key) {
+        return keys.contains(key);
+    }
+
+    public boolean needsAny(Set<MetadataKey> candidates) {
+        for (MetadataKey key : candidates) {
+            if (keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an enabled output writes every entry, including ones outside the schema.
+     */
+    public boolean acceptsExtras() {
+        return extras;
+    }
+
+    /**
+     * Whether the JSON sidecar's modpack block is wanted.
+     */
+    public boolean needsModpackContext() {
+        return modpackContext;
+    }
+}
@@ -0,0 +1,29 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.capture.ModpackContextCache;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * The JSON sidecar's modpack block, shared through {@link ModpackContextCache}.
+ */
+final class ModpackProvider extends BuiltInProvider {
+    ModpackProvider() {
+        super("screenshotmetadata:modpack", EnumSet.noneOf(MetadataKey.class));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        return request.needsModpackContext();
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        // Resource packs must be read here (cached until a resource reload); the rest is built by the worker
+        List<String> packs = ModpackContextCache.resourcePacks(client);
+        return metadata -> metadata.setModpackContext(ModpackContextCache.get(packs));
+    }
+}
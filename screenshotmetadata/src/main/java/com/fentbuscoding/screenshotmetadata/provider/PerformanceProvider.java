@@ -0,0 +1,45 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.EnumSet;
+
+/**
+ * Render and simulation distance at the time of the capture.
+ */
+final class PerformanceProvider extends BuiltInProvider {
+    PerformanceProvider() {
+        super("screenshotmetadata:performance", EnumSet.of(
+            MetadataKey.CAPTURE_TIME_MS, MetadataKey.RENDER_DISTANCE, MetadataKey.SIMULATION_DISTANCE));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        return request.getConfig().includePerformanceMetrics && super.isNeeded(request);
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        int renderDistance = -1;
+        int simulationDistance = -1;
+        if (client.options != null) {
+            renderDistance = client.options.getViewDistance().getValue();
+            if (client.options.getSimulationDistance() != null) {
+                simulationDistance = client.options.getSimulationDistance().getValue();
+            }
+        }
+        int capturedRender = renderDistance;
+        int capturedSimulation = simulationDistance;
+        return metadata -> {
+            // The core keys are resolved first, so the capture timestamp is already there
+            metadata.setLong(MetadataKey.CAPTURE_TIME_MS, metadata.getLong(MetadataKey.TIMESTAMP));
+            if (capturedRender >= 0) {
+                metadata.setLong(MetadataKey.RENDER_DISTANCE, capturedRender);
+            }
+            if (capturedSimulation >= 0) {
+                metadata.setLong(MetadataKey.SIMULATION_DISTANCE, capturedSimulation);
+            }
+        };
+    }
+}
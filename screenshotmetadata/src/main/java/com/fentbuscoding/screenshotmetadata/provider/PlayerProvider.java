@@ -0,0 +1,209 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.compat.ClientCompat;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.world.GameMode;
+
+import java.util.EnumSet;
+
+/**
+ * Player position and facing, game mode, health and hunger.
+ */
+final class PlayerProvider extends BuiltInProvider {
+    private static final EnumSet<MetadataKey> POSITION_KEYS = EnumSet.of(
+        MetadataKey.COORDINATES_OBFUSCATED, MetadataKey.X, MetadataKey.Y, MetadataKey.Z,
+        MetadataKey.YAW, MetadataKey.PITCH, MetadataKey.FACING);
+    private static final EnumSet<MetadataKey> VITALS_KEYS = EnumSet.of(
+        MetadataKey.HEALTH, MetadataKey.MAX_HEALTH, MetadataKey.HUNGER_LEVEL, MetadataKey.SATURATION);
+
+    PlayerProvider() {
+        super("screenshotmetadata:player", union(EnumSet.of(MetadataKey.GAME_MODE), POSITION_KEYS, VITALS_KEYS));
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        ScreenshotMetadataConfig.Snapshot config = request.getConfig();
+        Values values = new Values();
+
+        ClientPlayerEntity player = client.player;
+
+        // Player coordinates
+        if (config.includeCoordinates && player != null && request.needsAny(POSITION_KEYS)) {
+            int x = (int) player.getX();
+            int y = (int) player.getY();
+            int z = (int) player.getZ();
+            if (config.privacyMode) {
+                x = roundToNearest(x, 100);
+                y = roundToNearest(y, 100);
+                z = roundToNearest(z, 100);
+                values.coordinatesObfuscated = true;
+            }
+            values.hasCoordinates = true;
+            values.x = x;
+            values.y = y;
+            values.z = z;
+            values.yaw = player.getYaw();
+            values.pitch = player.getPitch();
+        }
+
+        // Player status
+        if (config.includePlayerStatus) {
+            if (request.needs(MetadataKey.GAME_MODE)) {
+                values.gameMode = captureGameMode(client);
+            }
+            if (player != null && request.needsAny(VITALS_KEYS)) {
+                values.hasVitals = true;
+                values.health = player.getHealth();
+                values.maxHealth = player.getMaxHealth();
+                values.foodLevel = player.getHungerManager().getFoodLevel();
+                values.saturation = player.getHungerManager().getSaturationLevel();
+            }
+        }
+        return values;
+    }
+
+    private static final class Values implements Captured {
+        private boolean hasCoordinates;
+        private boolean coordinatesObfuscated;
+        private int x;
+        private int y;
+        private int z;
+        private float yaw;
+        private float pitch;
+        private GameMode gameMode;
+        private boolean hasVitals;
+        private float health;
+        private float maxHealth;
+        private int foodLevel;
+        private float saturation;
+
+        @Override
+        public void resolve(ScreenshotMetadata metadata) {
+            if (hasCoordinates) {
+                if (coordinatesObfuscated) {
+                    metadata.setBoolean(MetadataKey.COORDINATES_OBFUSCATED, true);
+                }
+                metadata.setLong(MetadataKey.X, x);
+                metadata.setLong(MetadataKey.Y, y);
+                metadata.setLong(MetadataKey.Z, z);
+                metadata.setFloat(MetadataKey.YAW, yaw);
+                metadata.setFloat(MetadataKey.PITCH, pitch);
+                metadata.setText(MetadataKey.FACING, getFacingDirection(yaw));
+            }
+
+            String mode = normalizeGameMode(gameMode);
+            if (mode != null && !mode.isBlank()) {
+                metadata.setText(MetadataKey.GAME_MODE, mode);
+            }
+
+            // Player Health and Hunger
+            if (hasVitals) {
+                metadata.setFloat(MetadataKey.HEALTH, health);
+                metadata.setFloat(MetadataKey.MAX_HEALTH, maxHealth);
+                metadata.setLong(MetadataKey.HUNGER_LEVEL, foodLevel);
+                metadata.setFloat(MetadataKey.SATURATION, saturation);
+            }
+        }
+    }
+
+    /**
+     * Reads the current game mode when available.
+     * Goes through {@link ClientCompat}, which is compiled per Minecraft version.
+     */
+    private static GameMode captureGameMode(MinecraftClient client) {
+        try {
+            if (client == null || client.interactionManager == null) {
+                return null;
+            }
+            return ClientCompat.currentGameMode(client.interactionManager);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not capture game mode", e);
+            return null;
+        }
+    }
+
+    private static String normalizeGameMode(GameMode mode) {
+        if (mode == null) {
+            return null;
+        }
+
+        String translated = ClientCompat.gameModeTranslatedName(mode);
+        if (translated != null) {
+            return translated;
+        }
+
+        String id = ClientCompat.gameModeId(mode);
+        if (id != null) {
+            return formatDisplayName(id);
+        }
+
+        return formatDisplayName(mode.name());
+    }
+
+    private static String formatDisplayName(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String normalized = value.trim().replace('-', '_').replace(' ', '_').toLowerCase();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+
+        String[] words = normalized.split("_+");
+        StringBuilder result = new StringBuilder();
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(Character.toUpperCase(word.charAt(0)));
+            if (word.length() > 1) {
+                result.append(word.substring(1));
+            }
+        }
+
+        return result.length() == 0 ? null : result.toString();
+    }
+
+    /**
+     * Converts yaw to a readable facing direction
+     */
+    private static String getFacingDirection(float yaw) {
+        int index = Math.floorMod(Math.round(yaw / 45f), 8);
+        return switch (index) {
+            case 0 -> "South";
+            case 1 -> "Southwest";
+            case 2 -> "West";
+            case 3 -> "Northwest";
+            case 4 -> "North";
+            case 5 -> "Northeast";
+            case 6 -> "East";
+            case 7 -> "Southeast";
+            default -> "Unknown";
+        };
+    }
+
+    private static int roundToNearest(int value, int step) {
+        if (step <= 0) {
+            return value;
+        }
+        return Math.round(value / (float) step) * step;
+    }
+
+    @SafeVarargs
+    private static EnumSet<MetadataKey> union(EnumSet<MetadataKey>... sets) {
+        EnumSet<MetadataKey> result = EnumSet.noneOf(MetadataKey.class);
+        for (EnumSet<MetadataKey> set : sets) {
+            result.addAll(set);
+        }
+        return result;
+    }
+}
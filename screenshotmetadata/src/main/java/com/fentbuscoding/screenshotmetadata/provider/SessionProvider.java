@@ -0,0 +1,34 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.SessionMetadata;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.EnumSet;
+
+/**
+ * Player identity, versions, world or server and dimension, copied from the
+ * {@link WorldSession} block instead of being read for every screenshot.
+ */
+final class SessionProvider extends BuiltInProvider {
+    SessionProvider() {
+        super("screenshotmetadata:session", EnumSet.of(
+            MetadataKey.USERNAME, MetadataKey.PLAYER_UUID,
+            MetadataKey.MINECRAFT_VERSION, MetadataKey.MOD_VERSION, MetadataKey.MOD_ID,
+            MetadataKey.WORLD, MetadataKey.DIMENSION_ID, MetadataKey.DIMENSION,
+            MetadataKey.WORLD_NAME, MetadataKey.WORLD_SEED, MetadataKey.WORLD_SEED_HASHED,
+            MetadataKey.SERVER_TYPE, MetadataKey.SERVER_NAME, MetadataKey.SERVER_ADDRESS));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        // The block is copied as a whole, so there is nothing to save by skipping it
+        return true;
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        SessionMetadata session = WorldSession.get(client, request.getConfig());
+        return metadata -> metadata.putSession(session);
+    }
+}
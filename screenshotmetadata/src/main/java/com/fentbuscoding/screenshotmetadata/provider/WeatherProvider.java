@@ -0,0 +1,55 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+
+import java.util.EnumSet;
+
+/**
+ * Rain and thunder state of the current world.
+ */
+final class WeatherProvider extends BuiltInProvider {
+    WeatherProvider() {
+        super("screenshotmetadata:weather", EnumSet.of(
+            MetadataKey.WEATHER, MetadataKey.IS_RAINING, MetadataKey.IS_THUNDERING,
+            MetadataKey.RAIN_GRADIENT, MetadataKey.THUNDER_GRADIENT));
+    }
+
+    @Override
+    public boolean isNeeded(MetadataRequest request) {
+        return request.getConfig().includeWeatherInfo && super.isNeeded(request);
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        if (client.world == null || client.player == null) {
+            return null;
+        }
+        try {
+            boolean raining = client.world.isRaining();
+            boolean thundering = client.world.isThundering();
+            float rainGradient = client.world.getRainGradient(1.0f);
+            float thunderGradient = client.world.getThunderGradient(1.0f);
+            return metadata -> addWeatherMetadata(metadata, raining, thundering, rainGradient, thunderGradient);
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not capture weather", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds weather details to metadata
+     */
+    private static void addWeatherMetadata(ScreenshotMetadata metadata, boolean raining, boolean thundering,
+                                           float rainGradient, float thunderGradient) {
+        String weather = thundering ? "Thunder" : (raining ? "Rain" : "Clear");
+
+        metadata.setText(MetadataKey.WEATHER, weather);
+        metadata.setBoolean(MetadataKey.IS_RAINING, raining);
+        metadata.setBoolean(MetadataKey.IS_THUNDERING, thundering);
+        metadata.setFloat(MetadataKey.RAIN_GRADIENT, rainGradient);
+        metadata.setFloat(MetadataKey.THUNDER_GRADIENT, thunderGradient);
+    }
+}
@@ -0,0 +1,110 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.world.Difficulty;
+import net.minecraft.world.biome.Biome;
+
+import java.util.EnumSet;
+
+/**
+ * Biome, time of day and difficulty where the player stands.
+ */
+final class WorldProvider extends BuiltInProvider {
+    private static final EnumSet<MetadataKey> BIOME_KEYS = EnumSet.of(MetadataKey.BIOME, MetadataKey.BIOME_ID);
+
+    WorldProvider() {
+        super("screenshotmetadata:world", EnumSet.of(
+            MetadataKey.BIOME, MetadataKey.BIOME_ID,
+            MetadataKey.TIME_OF_DAY_TICKS, MetadataKey.TIME_OF_DAY,
+            MetadataKey.DIFFICULTY));
+    }
+
+    @Override
+    public Captured capture(MinecraftClient client, MetadataRequest request) {
+        ScreenshotMetadataConfig.Snapshot config = request.getConfig();
+        Values values = new Values();
+
+        // Biome and time of day
+        if (client.world != null && client.player != null) {
+            values.inWorld = true;
+            if (config.includeBiomeInfo && request.needsAny(BIOME_KEYS)) {
+                values.hasBiome = true;
+                try {
+                    RegistryEntry<Biome> biomeEntry = client.world.getBiome(client.player.getBlockPos());
+                    values.biomeKey = biomeEntry.getKey().orElse(null);
+                } catch (Exception e) {
+                    ScreenshotMetadataMod.LOGGER.debug("Could not capture biome", e);
+                }
+            }
+            values.timeOfDay = client.world.getTimeOfDay() % 24000L;
+        }
+
+        // Difficulty is reported with the player status
+        if (config.includePlayerStatus && client.world != null && request.needs(MetadataKey.DIFFICULTY)) {
+            try {
+                values.difficulty = client.world.getDifficulty();
+            } catch (Exception e) {
+                ScreenshotMetadataMod.LOGGER.debug("Could not get difficulty", e);
+            }
+        }
+        return values;
+    }
+
+    private static final class Values implements Captured {
+        private boolean inWorld;
+        private RegistryKey<Biome> biomeKey;
+        private boolean hasBiome;
+        private long timeOfDay;
+        private Difficulty difficulty;
+
+        @Override
+        public void resolve(ScreenshotMetadata metadata) {
+            if (inWorld) {
+                if (hasBiome) {
+                    if (biomeKey != null) {
+                        metadata.setText(MetadataKey.BIOME, formatBiomeName(biomeKey.getValue().getPath()));
+                        metadata.setText(MetadataKey.BIOME_ID, biomeKey.getValue());
+                    } else {
+                        metadata.setText(MetadataKey.BIOME, "Unknown");
+                        metadata.setText(MetadataKey.BIOME_ID, "Unknown");
+                    }
+                }
+
+                metadata.setLong(MetadataKey.TIME_OF_DAY_TICKS, timeOfDay);
+                metadata.setLong(MetadataKey.TIME_OF_DAY, timeOfDay);
+            }
+
+            if (difficulty != null) {
+                metadata.setText(MetadataKey.DIFFICULTY, difficulty.getName());
+            }
+        }
+    }
+
+    /**
+     * Formats biome name from snake_case to Title Case
+     */
+    static String formatBiomeName(String biomeName) {
+        if (biomeName == null || biomeName.isEmpty()) {
+            return "Unknown";
+        }
+
+        String[] words = biomeName.replace("_", " ").split(" ");
+        StringBuilder titleCase = new StringBuilder();
+
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                titleCase.append(Character.toUpperCase(word.charAt(0)))
+                         .append(word.substring(1).toLowerCase())
+                         .append(" ");
+            }
+        }
+
+        return titleCase.toString().trim();
+    }
+}
@@ -0,0 +1,186 @@
+package com.fentbuscoding.screenshotmetadata.provider;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+import com.fentbuscoding.screenshotmetadata.config.ScreenshotMetadataConfig;
+import com.fentbuscoding.screenshotmetadata.metadata.MetadataKey;
+import com.fentbuscoding.screenshotmetadata.metadata.ScreenshotMetadata;
+import com.fentbuscoding.screenshotmetadata.metadata.SessionMetadata;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.world.ClientWorld;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps the {@link SessionMetadata} for the world the player is in.
+ *
+ * <p>The block is built on the first screenshot after joining a world or changing
+ * dimension (the client gets a new world object for both) and dropped on disconnect.
+ * It is also rebuilt when the privacy settings it depends on change. All access happens
+ * on the client thread.</p>
+ */
+public final class WorldSession {
+    private static volatile Session current;
+
+    private WorldSession() {
+    }
+
+    /**
+     * Drops the session block. Called when the client joins a world or changes dimension.
+     */
+    public static void onWorldChange() {
+        current = null;
+    }
+
+    /**
+     * Drops the session block. Called when the client disconnects.
+     */
+    public static void onDisconnect() {
+        if (current != null) {
+            current = null;
+            ScreenshotMetadataMod.LOGGER.debug("Disconnected, session metadata cleared");
+        }
+    }
+
+    /**
+     * The session block for the current world, built if needed. Must run on the client thread.
+     */
+    static SessionMetadata get(MinecraftClient client, ScreenshotMetadataConfig.Snapshot config) {
+        Session session = current;
+        UUID playerUuid = client.player != null ? client.player.getUuid() : null;
+        if (session != null && session.matches(client.world, playerUuid, config)) {
+            return session.metadata;
+        }
+        SessionMetadata metadata = build(client, playerUuid, config);
+        if (client.world != null) {
+            current = new Session(client.world, playerUuid, config, metadata);
+            ScreenshotMetadataMod.LOGGER.debug("Built session metadata for {}",
+                metadata.getValues().getText(MetadataKey.DIMENSION_ID));
+        }
+        return metadata;
+    }
+
+    /**
+     * The session values (player, world, server, dimension) for the world the player is in.
+     * Must run on the client thread.
+     */
+    public static ScreenshotMetadata currentValues(MinecraftClient client) {
+        return get(client, ScreenshotMetadataConfig.get()).getValues();
+    }
+
+    private static SessionMetadata build(MinecraftClient client, UUID playerUuid,
+                                         ScreenshotMetadataConfig.Snapshot config) {
+        ScreenshotMetadata values = new ScreenshotMetadata();
+        try {
+            // Player information
+            if (client.getSession() != null) {
+                values.setText(MetadataKey.USERNAME, client.getSession().getUsername());
+            }
+            values.setText(MetadataKey.PLAYER_UUID, playerUuid);
+
+            // Game version info
+            values.setText(MetadataKey.MINECRAFT_VERSION, client.getGameVersion());
+            values.setText(MetadataKey.MOD_VERSION, ScreenshotMetadataMod.MOD_VERSION);
+            values.setText(MetadataKey.MOD_ID, ScreenshotMetadataMod.MOD_ID);
+
+            // Dimension
+            if (client.world != null) {
+                String worldKey = client.world.getRegistryKey().getValue().toString();
+                values.setText(MetadataKey.WORLD, worldKey);
+                values.setText(MetadataKey.DIMENSION_ID, worldKey);
+                values.setText(MetadataKey.DIMENSION, formatDimensionName(worldKey));
+            }
+
+            // Server / world info
+            if (client.isInSingleplayer()) {
+                if (client.getServer() != null && client.getServer().getSaveProperties() != null) {
+                    values.setText(MetadataKey.WORLD_NAME, client.getServer().getSaveProperties().getLevelName());
+                }
+                if (config.includeWorldSeed
+                    && client.getServer() != null && client.getServer().getOverworld() != null) {
+                    long seed = client.getServer().getOverworld().getSeed();
+                    if (config.privacyMode) {
+                        values.setText(MetadataKey.WORLD_SEED, hashSeed(seed));
+                        values.setBoolean(MetadataKey.WORLD_SEED_HASHED, true);
+                    } else {
+                        values.setText(MetadataKey.WORLD_SEED, Long.toString(seed));
+                    }
+                }
+                values.setText(MetadataKey.SERVER_TYPE, "Singleplayer");
+            } else if (client.getCurrentServerEntry() != null) {
+                values.setText(MetadataKey.SERVER_TYPE, "Multiplayer");
+                values.setText(MetadataKey.SERVER_NAME, client.getCurrentServerEntry().name);
+                String serverAddress = client.getCurrentServerEntry().address;
+                if (!config.privacyMode
+                    && serverAddress != null
+                    && !serverAddress.toLowerCase().contains("realms")) {
+                    values.setText(MetadataKey.SERVER_ADDRESS, serverAddress);
+                }
+            }
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.error("Error building session metadata", e);
+        }
+        return new SessionMetadata(values);
+    }
+
+    /**
+     * Formats dimension id to a friendly name
+     */
+    private static String formatDimensionName(String dimensionId) {
+        if (dimensionId == null || dimensionId.isEmpty()) {
+            return "Unknown";
+        }
+        switch (dimensionId) {
+            case "minecraft:overworld":
+                return "Overworld";
+            case "minecraft:the_nether":
+                return "Nether";
+            case "minecraft:the_end":
+                return "The End";
+            default:
+                String path = dimensionId.contains(":") ? dimensionId.split(":", 2)[1] : dimensionId;
+                return WorldProvider.formatBiomeName(path);
+        }
+    }
+
+    private static String hashSeed(long seed) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Long.toString(seed).getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            ScreenshotMetadataMod.LOGGER.debug("Could not hash world seed", e);
+            return "unknown";
+        }
+    }
+
+    private static final class Session {
+        // Weak so a missed disconnect does not keep the old world alive
+        private final WeakReference<ClientWorld> world;
+        private final UUID playerUuid;
+        private final boolean privacyMode;
+        private final boolean includeWorldSeed;
+        private final SessionMetadata metadata;
+
+        private Session(ClientWorld world, UUID playerUuid, ScreenshotMetadataConfig.Snapshot config,
+                        SessionMetadata metadata) {
+            this.world = new WeakReference<>(world);
+            this.playerUuid = playerUuid;
+            this.privacyMode = config.privacyMode;
+            this.includeWorldSeed = config.includeWorldSeed;
+            this.metadata = metadata;
+        }
+
+        private boolean matches(ClientWorld currentWorld, UUID currentPlayer,
+                                ScreenshotMetadataConfig.Snapshot config) {
+            return currentWorld != null
+                && world.get() == currentWorld
+                && Objects.equals(playerUuid, currentPlayer)
+                && privacyMode == config.privacyMode
+                && includeWorldSeed == config.includeWorldSeed;
+        }
+    }
+}
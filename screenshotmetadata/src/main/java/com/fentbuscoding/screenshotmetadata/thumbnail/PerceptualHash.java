@@ -0,0 +1,105 @@
+package com.fentbuscoding.screenshotmetadata.thumbnail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * 64-bit difference hash (dHash) of an image. The image is reduced to a 9x8 grid of
+ * brightness averages and each bit says whether a cell is brighter than its right-hand
+ * neighbour, so near-identical screenshots differ in only a few bits however they were
+ * scaled or compressed. Compare hashes with {@link #distance}.
+ */
+public final class PerceptualHash {
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // Source pixels read per grid cell and axis, at least, when the source is sampled
+    private static final int SAMPLES_PER_AXIS = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hashes ARGB pixels, row-major. Large images are sampled on a regular grid.
+     */
+    public static long of(int[] argb, int width, int height) {
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("Image is empty or smaller than " + width + "x" + height);
+        }
+        int step = Math.max(1, Math.min(width / GRID_WIDTH, height / GRID_HEIGHT) / SAMPLES_PER_AXIS);
+        long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int y = 0; y < height; y += step) {
+            int row = (int) ((long) y * GRID_HEIGHT / height) * GRID_WIDTH;
+            int offset = y * width;
+            for (int x = 0; x < width; x += step) {
+                int pixel = argb[offset + x];
+                int cell = row + (int) ((long) x * GRID_WIDTH / width);
+                // Rec. 601 luma, scaled by 1000
+                sums[cell] += 299L * ((pixel >> 16) & 0xFF) + 587L * ((pixel >> 8) & 0xFF) + 114L * (pixel & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0L;
+        for (int row = 0; row < GRID_HEIGHT; row++) {
+            for (int column = 0; column < GRID_WIDTH - 1; column++) {
+                int cell = row * GRID_WIDTH + column;
+                // Compare averages without dividing: a/n < b/m  <=>  a*m < b*n
+                long left = sums[cell] * Math.max(1, counts[cell + 1]);
+                long right = sums[cell + 1] * Math.max(1, counts[cell]);
+                hash = hash << 1 | (left < right ? 1L : 0L);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes a thumbnail; empty thumbnails have no hash.
+     */
+    public static long of(Thumbnail thumbnail) {
+        if (thumbnail.isEmpty()) {
+            throw new IllegalArgumentException("Thumbnail has no pixels");
+        }
+        return of(thumbnail.pixels(), thumbnail.getWidth(), thumbnail.getHeight());
+    }
+
+    /**
+     * Hashes a screenshot file, decoding only as many pixels as the hash samples.
+     */
+    public static long read(Path screenshot) throws IOException {
+        return ThumbnailDecoder.hash(screenshot);
+    }
+
+    /**
+     * Number of differing bits, from 0 (same image) to 64.
+     */
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    /**
+     * The hash as 16 lower-case hex digits, the form stored in metadata.
+     */
+    public static String toHex(long hash) {
+        return String.format(Locale.ROOT, "%016x", hash);
+    }
+
+    /**
+     * Parses a hash written by {@link #toHex}; null if {@code text} is not one.
+     */
+    public static Long parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.length() != 16) {
+            return null;
+        }
+        try {
+            return Long.parseUnsignedLong(trimmed, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.fentbuscoding.screenshotmetadata.thumbnail;
+
+import java.util.Arrays;
+
+/**
+ * A small ARGB preview of a screenshot with the screenshot's aspect ratio. Immutable.
+ */
+public final class Thumbnail {
+    /** Bounds of the thumbnails shown by the screenshot browser. */
+    public static final int MAX_WIDTH = 48;
+    public static final int MAX_HEIGHT = 27;
+
+    /** Stands in for a screenshot that could not be decoded, so it is not retried. */
+    static final Thumbnail UNAVAILABLE = new Thumbnail(0, 0, new int[0]);
+
+    // Rough per-object overhead, so the cache bound also covers many tiny entries
+    private static final int OVERHEAD_BYTES = 64;
+    // Source pixels read per thumbnail pixel and axis, at least, when the source is sampled
+    private static final int SAMPLES_PER_AXIS = 4;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private Thumbnail(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Shrinks an image to fit {@link #MAX_WIDTH} by {@link #MAX_HEIGHT}.
+     *
+     * @see #downsample(int[], int, int, int, int)
+     */
+    public static Thumbnail downsample(int[] argb, int width, int height) {
+        return downsample(argb, width, height, MAX_WIDTH, MAX_HEIGHT);
+    }
+
+    /**
+     * Shrinks an image with a box filter: every thumbnail pixel is the average of the block
+     * of source pixels it covers. When blocks are large only every n-th row and column is
+     * read, still at least {@value #SAMPLES_PER_AXIS} per block and axis, so a 4K frame
+     * costs a few milliseconds.
+     *
+     * @param argb Source pixels, row-major
+     */
+    public static Thumbnail downsample(int[] argb, int width, int height, int maxWidth, int maxHeight) {
+        if (width <= 0 || height <= 0 || maxWidth <= 0 || maxHeight <= 0 || argb.length < width * height) {
+            return UNAVAILABLE;
+        }
+        int targetWidth = maxWidth;
+        int targetHeight = (int) Math.round((double) height * maxWidth / width);
+        if (targetHeight > maxHeight) {
+            targetHeight = maxHeight;
+            targetWidth = (int) Math.round((double) width * maxHeight / height);
+        }
+        targetWidth = Math.max(1, Math.min(targetWidth, width));
+        targetHeight = Math.max(1, Math.min(targetHeight, height));
+        int step = Math.max(1, Math.min(width / targetWidth, height / targetHeight) / SAMPLES_PER_AXIS);
+
+        int[] pixels = new int[targetWidth * targetHeight];
+        long[] sums = new long[targetWidth * 4];
+        int[] counts = new int[targetWidth];
+        int[] columnOf = new int[(width + step - 1) / step];
+        for (int i = 0; i < columnOf.length; i++) {
+            columnOf[i] = (int) ((long) i * step * targetWidth / width);
+        }
+        int sourceY = 0;
+        for (int row = 0; row < targetHeight; row++) {
+            int endY = (int) ((long) (row + 1) * height / targetHeight);
+            Arrays.fill(sums, 0L);
+            Arrays.fill(counts, 0);
+            for (; sourceY < endY; sourceY += step) {
+                int offset = sourceY * width;
+                for (int i = 0; i < columnOf.length; i++) {
+                    int pixel = argb[offset + i * step];
+                    int column = columnOf[i];
+                    int slot = column * 4;
+                    sums[slot] += pixel >>> 24;
+                    sums[slot + 1] += (pixel >> 16) & 0xFF;
+                    sums[slot + 2] += (pixel >> 8) & 0xFF;
+                    sums[slot + 3] += pixel & 0xFF;
+                    counts[column]++;
+                }
+            }
+            for (int column = 0; column < targetWidth; column++) {
+                long count = Math.max(1, counts[column]);
+                int slot = column * 4;
+                pixels[row * targetWidth + column] = (int) (sums[slot] / count) << 24
+                    | (int) (sums[slot + 1] / count) << 16
+                    | (int) (sums[slot + 2] / count) << 8
+                    | (int) (sums[slot + 3] / count);
+            }
+        }
+        return new Thumbnail(targetWidth, targetHeight, pixels);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Whether the screenshot could not be decoded; such a thumbnail has no pixels.
+     */
+    public boolean isEmpty() {
+        return pixels.length == 0;
+    }
+
+    /**
+     * The ARGB color at (x, y).
+     */
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    int[] pixels() {
+        return pixels;
+    }
+
+    /**
+     * Approximate heap footprint, used to bound the cache.
+     */
+    long getByteSize() {
+        return OVERHEAD_BYTES + pixels.length * 4L;
+    }
+}
@@ -0,0 +1,132 @@
+package com.fentbuscoding.screenshotmetadata.thumbnail;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Thumbnails decoded in the background and kept in a least-recently-used cache bounded by
+ * bytes rather than entries, so memory stays flat however many screenshots are browsed.
+ *
+ * <p>Callers say which files they want, most important first, with {@link #request}; each
+ * call replaces the previous wish list, so files that scrolled out of view before a worker
+ * got to them are never decoded.</p>
+ */
+public final class ThumbnailCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Path, Thumbnail> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final ArrayDeque<Path> queue = new ArrayDeque<>();
+    private final Set<Path> inFlight = new HashSet<>();
+    private final Thread[] workers;
+    private long bytes;
+    private boolean closed;
+
+    public ThumbnailCache(long maxBytes, int threads) {
+        this.maxBytes = Math.max(1L, maxBytes);
+        this.workers = new Thread[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++) {
+            Thread worker = new Thread(this::runWorker, "Screenshot Metadata Thumbnails");
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * The thumbnail of {@code file} if it has been decoded, else null. Check
+     * {@link Thumbnail#isEmpty()} for files that could not be decoded.
+     */
+    public synchronized Thumbnail get(Path file) {
+        return entries.get(file);
+    }
+
+    /**
+     * Replaces the files waiting to be decoded with {@code files}, in that order. Files
+     * already cached or being decoded are skipped.
+     */
+    public synchronized void request(List<Path> files) {
+        if (closed) {
+            return;
+        }
+        queue.clear();
+        for (Path file : files) {
+            if (!entries.containsKey(file) && !inFlight.contains(file)) {
+                queue.add(file);
+            }
+        }
+        if (!queue.isEmpty()) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stops the workers and drops every cached thumbnail.
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        entries.clear();
+        bytes = 0L;
+        notifyAll();
+    }
+
+    private void runWorker() {
+        while (true) {
+            Path file;
+            synchronized (this) {
+                while (!closed && queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                file = queue.poll();
+                inFlight.add(file);
+            }
+
+            Thumbnail thumbnail;
+            try {
+                thumbnail = ThumbnailDecoder.decode(file);
+            } catch (IOException | RuntimeException e) {
+                ScreenshotMetadataMod.LOGGER.debug("Could not decode thumbnail of {}: {}", file.getFileName(), e.getMessage());
+                thumbnail = Thumbnail.UNAVAILABLE;
+            }
+            store(file, thumbnail);
+        }
+    }
+
+    private synchronized void store(Path file, Thumbnail thumbnail) {
+        inFlight.remove(file);
+        if (closed) {
+            return;
+        }
+        Thumbnail previous = entries.put(file, thumbnail);
+        if (previous != null) {
+            bytes -= previous.getByteSize();
+        }
+        bytes += thumbnail.getByteSize();
+        Iterator<Map.Entry<Path, Thumbnail>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Path, Thumbnail> entry = eldest.next();
+            if (entry.getKey().equals(file)) {
+                continue;
+            }
+            bytes -= entry.getValue().getByteSize();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.fentbuscoding.screenshotmetadata.thumbnail;
+
+import com.fentbuscoding.screenshotmetadata.ScreenshotMetadataMod;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decodes a screenshot file into a {@link Thumbnail}, from the thumbnail saved at capture
+ * time when there is one.
+ */
+final class ThumbnailDecoder {
+    // Decode at a few times the thumbnail size so the box filter still has pixels to average
+    private static final int OVERSAMPLE = 4;
+    // Enough samples per hash cell to average out noise and dithering
+    private static final int HASH_WIDTH = 9 * 16;
+    private static final int HASH_HEIGHT = 8 * 16;
+
+    private ThumbnailDecoder() {
+    }
+
+    static Thumbnail decode(Path screenshot) throws IOException {
+        Path stored = ThumbnailStore.pathFor(screenshot);
+        if (Files.isRegularFile(stored)) {
+            try {
+                return decodeImage(stored);
+            } catch (IOException e) {
+                ScreenshotMetadataMod.LOGGER.debug("Could not read saved thumbnail {}: {}", stored.getFileName(), e.getMessage());
+            }
+        }
+        return decodeImage(screenshot);
+    }
+
+    /**
+     * The {@link PerceptualHash} of a screenshot, always from the screenshot itself so it
+     * matches the hash taken at capture time.
+     */
+    static long hash(Path screenshot) throws IOException {
+        BufferedImage image = readSubsampled(screenshot, HASH_WIDTH, HASH_HEIGHT);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return PerceptualHash.of(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
+
+    private static Thumbnail decodeImage(Path file) throws IOException {
+        BufferedImage image = readSubsampled(file, Thumbnail.MAX_WIDTH * OVERSAMPLE, Thumbnail.MAX_HEIGHT * OVERSAMPLE);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return Thumbnail.downsample(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+    }
+
+    /**
+     * Reads only every n-th row and column of the image, so the decoded raster stays just
+     * above the given size however large the screenshot is.
+     */
+    private static BufferedImage readSubsampled(Path file, int minWidth, int minHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                throw new IOException("Cannot open " + file.getFileName());
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, Math.min(width / minWidth, height / minHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
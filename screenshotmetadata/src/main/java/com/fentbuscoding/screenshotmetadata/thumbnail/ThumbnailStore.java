@@ -0,0 +1,46 @@
+package com.fentbuscoding.screenshotmetadata.thumbnail;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Thumbnails saved at capture time, as small PNGs under a {@code thumbnails} folder next
+ * to the screenshots, with the screenshot's file name.
+ */
+public final class ThumbnailStore {
+    private static final String DIRECTORY = "thumbnails";
+
+    private ThumbnailStore() {
+    }
+
+    /**
+     * Where the thumbnail of {@code screenshot} is kept.
+     */
+    public static Path pathFor(Path screenshot) {
+        return screenshot.resolveSibling(DIRECTORY).resolve(screenshot.getFileName());
+    }
+
+    /**
+     * Writes the thumbnail to a temp file and moves it into place, so readers never see a
+     * partial file.
+     */
+    public static void write(Path screenshot, Thumbnail thumbnail) throws IOException {
+        Path file = pathFor(screenshot);
+        Files.createDirectories(file.getParent());
+        BufferedImage image = new BufferedImage(thumbnail.getWidth(), thumbnail.getHeight(), BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, thumbnail.getWidth(), thumbnail.getHeight(), thumbnail.pixels(), 0, thumbnail.getWidth());
+        Path tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+        if (!ImageIO.write(image, "png", tempPath.toFile())) {
+            throw new IOException("No PNG encoder available");
+        }
+        try {
+            Files.move(tempPath, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException atomicFailure) {
+            Files.move(tempPath, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.resource.ResourcePackManager;
+import net.minecraft.text.Text;
+import net.minecraft.world.GameMode;
+
+import java.util.Collection;
+
+/**
+ * Client API calls whose names can differ between Minecraft versions, for Minecraft 1.21.1.
+ * Compiled per profile, so Loom remaps the calls; looking these up by name at runtime
+ * would never match outside the development environment.
+ */
+public final class ClientCompat {
+    private ClientCompat() {
+    }
+
+    /**
+     * The player's game mode from the interaction manager, or null.
+     */
+    public static GameMode currentGameMode(ClientPlayerInteractionManager interactionManager) {
+        return interactionManager.getCurrentGameMode();
+    }
+
+    /**
+     * The translated name of a game mode ("Survival Mode"), or null.
+     */
+    public static String gameModeTranslatedName(GameMode mode) {
+        Text name = mode.getTranslatableName();
+        return name != null ? name.getString() : null;
+    }
+
+    /**
+     * The serialized id of a game mode ("survival").
+     */
+    public static String gameModeId(GameMode mode) {
+        return mode.asString();
+    }
+
+    /**
+     * The ids of the enabled resource packs.
+     */
+    public static Collection<String> enabledResourcePackIds(ResourcePackManager packManager) {
+        return packManager.getEnabledIds();
+    }
+}
@@ -0,0 +1,20 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import net.minecraft.client.texture.NativeImage;
+
+/**
+ * Pixel reads from a {@link NativeImage}, for Minecraft 1.21.1 where images store and
+ * return ABGR. Compiled per profile, so Loom remaps the calls.
+ */
+public final class NativeImagePixels {
+    private NativeImagePixels() {
+    }
+
+    /**
+     * The pixel at (x, y) as ARGB.
+     */
+    public static int argb(NativeImage image, int x, int y) {
+        int abgr = image.getColor(x, y);
+        return (abgr & 0xFF00FF00) | ((abgr >> 16) & 0xFF) | ((abgr & 0xFF) << 16);
+    }
+}
@@ -0,0 +1,19 @@
+package com.fentbuscoding.screenshotmetadata.compat;
+
+import net.minecraft.client.texture.NativeImage;
+
+/**
+ * Pixel reads from a {@link NativeImage}, for Minecraft 1.21.2 and later where images
+ * hand out ARGB directly. Compiled per profile, so Loom remaps the calls.
+ */
+public final class NativeImagePixels {
+    private NativeImagePixels() {
+    }
+
+    /**
+     * The pixel at (x, y) as ARGB.
+     */
+    public static int argb(NativeImage image, int x, int y) {
+        return image.getColorArgb(x, y);
+    }
+}